@@ -0,0 +1,304 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.commons.io.FileUtils;
+import org.nuxeo.common.utils.Path;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * External merge sort of the lines of a CSV file with a bounded memory.
+ * <p>
+ * Lines are sorted in memory by runs of at most {@code maxLinesInMemory}
+ * lines spilled to temporary files, which are then merged. Each sorted line
+ * gets its original line number appended as an extra last column, see
+ * {@link #getLineNumber(String[])}.
+ *
+ * @since 5.9.2
+ */
+public class CSVExternalSorter {
+
+    protected final Comparator<String[]> comparator;
+
+    protected final int maxLinesInMemory;
+
+    /**
+     * @param comparator the comparator of the lines, including their line
+     *            number column
+     */
+    public CSVExternalSorter(Comparator<String[]> comparator,
+            int maxLinesInMemory) {
+        this.comparator = comparator;
+        this.maxLinesInMemory = Math.max(1, maxLinesInMemory);
+    }
+
+    /**
+     * Returns the original line number of a sorted line.
+     */
+    public static long getLineNumber(String[] line) {
+        return Long.parseLong(line[line.length - 1]);
+    }
+
+    /**
+     * Returns the original line of a sorted line, without its line number.
+     */
+    public static String[] getLine(String[] line) {
+        return Arrays.copyOf(line, line.length - 1);
+    }
+
+    protected static CSVWriter newWriter(File file) throws IOException {
+        // escape with backslashes, the default escape character of the reader
+        return new CSVWriter(new FileWriter(file),
+                CSVWriter.DEFAULT_SEPARATOR, CSVWriter.DEFAULT_QUOTE_CHARACTER,
+                '\\');
+    }
+
+    /**
+     * Sorts the remaining lines of the given reader, the first one having the
+     * given line number.
+     *
+     * @param header the header written at the beginning of the sorted file,
+     *            may be {@code null}
+     * @return a temporary file holding the sorted lines, to be deleted by the
+     *         caller
+     */
+    public File sort(CSVReader csvReader, String[] header,
+            long firstLineNumber) throws IOException {
+        List<File> runs = new ArrayList<File>();
+        try {
+            List<String[]> lines = new ArrayList<String[]>();
+            long lineNumber = firstLineNumber;
+            String[] line;
+            while ((line = csvReader.readNext()) != null) {
+                String[] numbered = Arrays.copyOf(line, line.length + 1);
+                numbered[line.length] = Long.toString(lineNumber++);
+                lines.add(numbered);
+                if (lines.size() >= maxLinesInMemory) {
+                    runs.add(writeRun(lines, null));
+                    lines.clear();
+                }
+            }
+            if (runs.isEmpty()) {
+                // everything fits in memory
+                return writeRun(lines, header);
+            }
+            if (!lines.isEmpty()) {
+                runs.add(writeRun(lines, null));
+                lines = null;
+            }
+            return merge(runs, header);
+        } finally {
+            for (File run : runs) {
+                FileUtils.deleteQuietly(run);
+            }
+        }
+    }
+
+    protected File writeRun(List<String[]> lines, String[] header)
+            throws IOException {
+        Collections.sort(lines, comparator);
+        File file = File.createTempFile("csvsort", ".csv");
+        CSVWriter writer = newWriter(file);
+        try {
+            if (header != null) {
+                writer.writeNext(header);
+            }
+            for (String[] line : lines) {
+                writer.writeNext(line);
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    protected static class RunCursor {
+
+        protected final CSVReader reader;
+
+        protected String[] line;
+
+        protected RunCursor(CSVReader reader) {
+            this.reader = reader;
+        }
+
+        protected boolean next() throws IOException {
+            line = reader.readNext();
+            return line != null;
+        }
+    }
+
+    protected File merge(List<File> runs, String[] header) throws IOException {
+        PriorityQueue<RunCursor> queue = new PriorityQueue<RunCursor>(
+                runs.size(), new Comparator<RunCursor>() {
+                    @Override
+                    public int compare(RunCursor o1, RunCursor o2) {
+                        return comparator.compare(o1.line, o2.line);
+                    }
+                });
+        List<RunCursor> cursors = new ArrayList<RunCursor>(runs.size());
+        File file = File.createTempFile("csvsort", ".csv");
+        CSVWriter writer = newWriter(file);
+        try {
+            for (File run : runs) {
+                RunCursor cursor = new RunCursor(new CSVReader(new FileReader(
+                        run)));
+                cursors.add(cursor);
+                if (cursor.next()) {
+                    queue.add(cursor);
+                }
+            }
+            if (header != null) {
+                writer.writeNext(header);
+            }
+            RunCursor cursor;
+            while ((cursor = queue.poll()) != null) {
+                writer.writeNext(cursor.line);
+                if (cursor.next()) {
+                    queue.add(cursor);
+                }
+            }
+        } finally {
+            writer.close();
+            for (RunCursor c : cursors) {
+                c.reader.close();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Orders lines so that parents come before their children: lines are
+     * grouped by the first segment of their name (i.e. by subtree), then
+     * sorted by path depth, keeping the file order for a same depth.
+     */
+    public static class PathDepthComparator implements Comparator<String[]> {
+
+        protected final int nameIndex;
+
+        public PathDepthComparator(int nameIndex) {
+            this.nameIndex = nameIndex;
+        }
+
+        @Override
+        public int compare(String[] line1, String[] line2) {
+            String[] segments1 = getSegments(line1);
+            String[] segments2 = getSegments(line2);
+            int cmp = getFirstSegment(segments1).compareTo(
+                    getFirstSegment(segments2));
+            if (cmp != 0) {
+                return cmp;
+            }
+            cmp = segments1.length - segments2.length;
+            if (cmp != 0) {
+                return cmp;
+            }
+            long lineNumber1 = getLineNumber(line1);
+            long lineNumber2 = getLineNumber(line2);
+            return lineNumber1 < lineNumber2 ? -1
+                    : (lineNumber1 == lineNumber2 ? 0 : 1);
+        }
+
+        protected String[] getSegments(String[] line) {
+            // the last column is the line number
+            if (nameIndex >= line.length - 1) {
+                return new String[0];
+            }
+            return new Path(line[nameIndex].trim()).segments();
+        }
+
+        protected static String getFirstSegment(String[] segments) {
+            return segments.length == 0 ? "" : segments[0];
+        }
+    }
+
+    /**
+     * Orders lines by name, keeping the file order for a same name. The names
+     * are compared segment by segment, {@code '/'} sorting before any other
+     * character, so that parents come right before their children:
+     * {@code a}, {@code a/b}, {@code a-b}.
+     *
+     * @since 5.9.2
+     */
+    public static class NameComparator implements Comparator<String[]> {
+
+        protected final int nameIndex;
+
+        public NameComparator(int nameIndex) {
+            this.nameIndex = nameIndex;
+        }
+
+        @Override
+        public int compare(String[] line1, String[] line2) {
+            int cmp = compareNames(getName(line1, nameIndex),
+                    getName(line2, nameIndex));
+            if (cmp != 0) {
+                return cmp;
+            }
+            long lineNumber1 = getLineNumber(line1);
+            long lineNumber2 = getLineNumber(line2);
+            return lineNumber1 < lineNumber2 ? -1
+                    : (lineNumber1 == lineNumber2 ? 0 : 1);
+        }
+
+        /**
+         * Compares two names segment by segment.
+         */
+        public static int compareNames(String name1, String name2) {
+            int length = Math.min(name1.length(), name2.length());
+            for (int i = 0; i < length; i++) {
+                char c1 = name1.charAt(i);
+                char c2 = name2.charAt(i);
+                if (c1 != c2) {
+                    if (c1 == '/') {
+                        return -1;
+                    } else if (c2 == '/') {
+                        return 1;
+                    }
+                    return c1 - c2;
+                }
+            }
+            return name1.length() - name2.length();
+        }
+
+        /**
+         * Returns the trimmed name of a sorted line, empty if it has none.
+         */
+        public static String getName(String[] line, int nameIndex) {
+            // the last column is the line number
+            if (nameIndex >= line.length - 1) {
+                return "";
+            }
+            return line[nameIndex].trim();
+        }
+    }
+
+}
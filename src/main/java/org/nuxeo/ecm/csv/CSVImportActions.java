@@ -20,10 +20,13 @@ package org.nuxeo.ecm.csv;
 import static org.nuxeo.ecm.csv.CSVImportLog.Status;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 
+import javax.faces.context.FacesContext;
+
 import org.apache.commons.io.FilenameUtils;
 import org.jboss.seam.ScopeType;
 import org.jboss.seam.annotations.In;
@@ -31,8 +34,10 @@ import org.jboss.seam.annotations.Install;
 import org.jboss.seam.annotations.Name;
 import org.jboss.seam.annotations.Observer;
 import org.jboss.seam.annotations.Scope;
+import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.platform.ui.web.api.NavigationContext;
+import org.nuxeo.ecm.platform.ui.web.util.ComponentUtils;
 import org.nuxeo.ecm.webapp.helpers.EventNames;
 import org.nuxeo.runtime.api.Framework;
 import org.richfaces.event.UploadEvent;
@@ -63,6 +68,13 @@ public class CSVImportActions implements Serializable {
 
     protected String csvImportId;
 
+    /**
+     * @since 5.9.2
+     */
+    public static final int LOGS_PAGE_SIZE = 100;
+
+    protected long logsOffset;
+
     public boolean getNotifyUserByEmail() {
         return notifyUserByEmail;
     }
@@ -113,10 +125,59 @@ public class CSVImportActions implements Serializable {
             return Collections.emptyList();
         }
         CSVImporter csvImporter = Framework.getLocalService(CSVImporter.class);
-        return csvImporter.getImportLogs(csvImportId, Status.SKIPPED,
+        return csvImporter.getImportLogs(csvImportId, new Status[] {
+                Status.SKIPPED, Status.ERROR }, logsOffset, LOGS_PAGE_SIZE);
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public long getSkippedAndErrorLogsCount() {
+        if (csvImportId == null) {
+            return 0;
+        }
+        CSVImporter csvImporter = Framework.getLocalService(CSVImporter.class);
+        return csvImporter.getImportLogCount(csvImportId, Status.SKIPPED,
                 Status.ERROR);
     }
 
+    /**
+     * @since 5.9.2
+     */
+    public long getLogsOffset() {
+        return logsOffset;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public boolean getHasPreviousLogs() {
+        return logsOffset > 0;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public boolean getHasNextLogs() {
+        return logsOffset + LOGS_PAGE_SIZE < getSkippedAndErrorLogsCount();
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public void previousLogs() {
+        logsOffset = Math.max(0, logsOffset - LOGS_PAGE_SIZE);
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public void nextLogs() {
+        if (getHasNextLogs()) {
+            logsOffset += LOGS_PAGE_SIZE;
+        }
+    }
+
     public CSVImportResult getImportResult() {
         if (csvImportId == null) {
             return null;
@@ -125,11 +186,59 @@ public class CSVImportActions implements Serializable {
         return csvImporter.getImportResult(csvImportId);
     }
 
+    /**
+     * Downloads the report of the skipped and error lines.
+     *
+     * @since 5.9.2
+     */
+    public String downloadReport() throws IOException {
+        if (csvImportId == null) {
+            return null;
+        }
+        Blob report = CSVImportReportOperation.getReport(csvImportId);
+        if (report == null) {
+            return null;
+        }
+        return ComponentUtils.download(FacesContext.getCurrentInstance(),
+                report, report.getFilename());
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public void cancelImport() {
+        if (csvImportId != null) {
+            CSVImporter csvImporter = Framework.getLocalService(CSVImporter.class);
+            csvImporter.cancelImport(csvImportId);
+        }
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public void pauseImport() {
+        if (csvImportId != null) {
+            CSVImporter csvImporter = Framework.getLocalService(CSVImporter.class);
+            csvImporter.pauseImport(csvImportId);
+        }
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public void resumeImport() {
+        if (csvImportId != null) {
+            CSVImporter csvImporter = Framework.getLocalService(CSVImporter.class);
+            csvImporter.resumeImport(csvImportId);
+        }
+    }
+
     @Observer(EventNames.NAVIGATE_TO_DOCUMENT)
     public void resetState() {
         csvFile = null;
         csvFileName = null;
         csvImportId = null;
         notifyUserByEmail = false;
+        logsOffset = 0;
     }
 }
@@ -0,0 +1,237 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lines imported in the current transaction of an import, kept as read so
+ * that they can be imported again if the transaction fails to commit.
+ * <p>
+ * The logs of the lines are kept too, and only stored once the transaction is
+ * committed: the stored logs are the ones of the lines actually persisted.
+ * A line rolled back alone is kept with its error logs, which replace its
+ * import when the other lines are imported again. In bulk mode or with
+ * deferred indexing, the ids of the imported documents are kept the same way
+ * as the logs, as well as the fingerprints of the imported lines and the
+ * number of unchanged lines of a delta import.
+ * <p>
+ * The paths of the documents imported in the transaction are kept too, to be
+ * removed from the paths of the imported documents if it is rolled back.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportBatch {
+
+    protected final String[] header;
+
+    protected final List<String[]> lines;
+
+    protected long[] lineNumbers;
+
+    protected final List<CSVImportLog> logs = new ArrayList<CSVImportLog>();
+
+    protected final List<String> documentIds = new ArrayList<String>();
+
+    protected final List<String> importedPaths = new ArrayList<String>();
+
+    protected final List<String> fingerprintPaths = new ArrayList<String>();
+
+    protected long[] fingerprints = new long[16];
+
+    protected long unchangedLineCount;
+
+    /**
+     * Error logs of the failed lines, {@code null} for the other ones.
+     */
+    protected final List<List<CSVImportLog>> failures;
+
+    /**
+     * Index in the logs of the first log of the last line.
+     */
+    protected int lastLineFirstLog;
+
+    public CSVImportBatch(String[] header, int expectedSize) {
+        this.header = header;
+        lines = new ArrayList<String[]>(expectedSize);
+        failures = new ArrayList<List<CSVImportLog>>(expectedSize);
+        lineNumbers = new long[Math.max(16, expectedSize)];
+    }
+
+    public String[] getHeader() {
+        return header;
+    }
+
+    public void add(long lineNumber, String[] line) {
+        int size = lines.size();
+        if (size == lineNumbers.length) {
+            lineNumbers = Arrays.copyOf(lineNumbers, size << 1);
+        }
+        lineNumbers[size] = lineNumber;
+        lines.add(line);
+        failures.add(null);
+        lastLineFirstLog = logs.size();
+    }
+
+    public int size() {
+        return lines.size();
+    }
+
+    public String[] getLine(int i) {
+        return lines.get(i);
+    }
+
+    public long getLineNumber(int i) {
+        return lineNumbers[i];
+    }
+
+    /**
+     * Marks a line as failed, so that it is not imported again.
+     *
+     * @param errors the logs of the line, added in its place when the lines
+     *            are imported again
+     */
+    public void setFailed(int i, List<CSVImportLog> errors) {
+        failures.set(i, errors);
+    }
+
+    /**
+     * Returns the logs of a failed line, or {@code null} if the line did not
+     * fail.
+     */
+    public List<CSVImportLog> getFailureLogs(int i) {
+        return failures.get(i);
+    }
+
+    public void addLog(CSVImportLog importLog) {
+        logs.add(importLog);
+    }
+
+    /**
+     * Returns the logs of the lines imported since the last call to
+     * {@link #clearResults()}.
+     */
+    public List<CSVImportLog> getLogs() {
+        return logs;
+    }
+
+    public void addDocumentId(String id) {
+        documentIds.add(id);
+    }
+
+    /**
+     * Returns the ids of the documents imported since the last call to
+     * {@link #clearResults()}.
+     */
+    public List<String> getDocumentIds() {
+        return documentIds;
+    }
+
+    /**
+     * Keeps the path of a document first imported by a line of the batch.
+     */
+    public void addImportedPath(String path) {
+        importedPaths.add(path);
+    }
+
+    /**
+     * Returns the paths of the documents first imported since the last call
+     * to {@link #clearResults()}.
+     */
+    public List<String> getImportedPaths() {
+        return importedPaths;
+    }
+
+    /**
+     * Keeps the fingerprint of an imported line of a delta import.
+     */
+    public void addFingerprint(String path, long fingerprint) {
+        int count = fingerprintPaths.size();
+        if (count == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, count << 1);
+        }
+        fingerprints[count] = fingerprint;
+        fingerprintPaths.add(path);
+    }
+
+    /**
+     * Returns the number of fingerprints kept since the last call to
+     * {@link #clearResults()}.
+     */
+    public int getFingerprintCount() {
+        return fingerprintPaths.size();
+    }
+
+    public String getFingerprintPath(int i) {
+        return fingerprintPaths.get(i);
+    }
+
+    public long getFingerprint(int i) {
+        return fingerprints[i];
+    }
+
+    /**
+     * Counts a line unchanged since the previous import.
+     */
+    public void addUnchangedLine() {
+        unchangedLineCount++;
+    }
+
+    /**
+     * Returns the number of unchanged lines since the last call to
+     * {@link #clearResults()}.
+     */
+    public long getUnchangedLineCount() {
+        return unchangedLineCount;
+    }
+
+    /**
+     * Forgets the logs, document ids, paths, fingerprints and unchanged lines
+     * of the lines imported so far.
+     */
+    public void clearResults() {
+        logs.clear();
+        documentIds.clear();
+        importedPaths.clear();
+        fingerprintPaths.clear();
+        unchangedLineCount = 0;
+    }
+
+    /**
+     * Removes and returns the logs added since the last line was added.
+     */
+    public List<CSVImportLog> removeLastLineLogs() {
+        List<CSVImportLog> lineLogs = logs.subList(lastLineFirstLog,
+                logs.size());
+        List<CSVImportLog> removed = new ArrayList<CSVImportLog>(lineLogs);
+        lineLogs.clear();
+        return removed;
+    }
+
+    /**
+     * Forgets the lines and their logs, once committed.
+     */
+    public void clear() {
+        lines.clear();
+        failures.clear();
+        clearResults();
+    }
+
+}
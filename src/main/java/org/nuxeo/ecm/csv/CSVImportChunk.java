@@ -0,0 +1,217 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.nuxeo.common.utils.Path;
+import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.PathRef;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * The lines of some created subtrees of a CSV file, imported by a
+ * {@link CSVImporterChunkWork}.
+ * <p>
+ * The lines are partitioned by the topmost document they may create: the
+ * child of the deepest existing parent on their path, see
+ * {@link #getChunkKey}. A document, its missing parents, its children and its
+ * duplicates are thus always imported by the same chunk, in file order, while
+ * the documents of an existing folder are spread over all the chunks. Each
+ * chunk is written to its own
+ * file in the {@code chunks} directory of
+ * {@link CSVImportLogStore#getRootDirectory()}, the line number being
+ * appended as the last column.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportChunk implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final String CHUNKS_DIRECTORY = "chunks";
+
+    protected static final String SUFFIX = ".csv";
+
+    /**
+     * Maximum number of chunks of an import, bounding the number of files
+     * written at the same time while partitioning.
+     */
+    public static final int MAX_CHUNKS = 256;
+
+    protected final int index;
+
+    protected final File file;
+
+    protected final long lineCount;
+
+    public CSVImportChunk(int index, File file, long lineCount) {
+        this.index = index;
+        this.file = file;
+        this.lineCount = lineCount;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the file of the lines of the chunk, without header, the last
+     * column being the line number.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the directory of the chunk files of the given import.
+     */
+    public static File getDirectory(String importId) {
+        File dir = new File(CSVImportLogStore.getRootDirectory(),
+                CHUNKS_DIRECTORY);
+        return new File(dir, DigestUtils.md5Hex(importId));
+    }
+
+    /**
+     * Partitions the lines following the header of the given CSV file in at
+     * most {@code count} chunks written to the given directory. Chunks
+     * without lines are left out.
+     *
+     * @param lineNumberColumn {@code true} if the last column of the file
+     *            already is the line number
+     * @param session the session checking which parents exist
+     * @param parentPath the path the lines are imported in
+     */
+    public static List<CSVImportChunk> partition(File csvFile,
+            boolean lineNumberColumn, int nameIndex, int count, File dir,
+            CoreSession session, String parentPath) throws IOException,
+            ClientException {
+        FileUtils.forceMkdir(dir);
+        Map<String, Boolean> existingPaths = new HashMap<String, Boolean>();
+        File[] files = new File[count];
+        CSVWriter[] writers = new CSVWriter[count];
+        long[] lineCounts = new long[count];
+        CSVReader csvReader = new CSVReader(new FileReader(csvFile));
+        try {
+            // header
+            if (csvReader.readNext() == null) {
+                return new ArrayList<CSVImportChunk>();
+            }
+            long lineNumber = 0;
+            String[] line;
+            while ((line = csvReader.readNext()) != null) {
+                lineNumber++;
+                String[] numbered = line;
+                if (!lineNumberColumn) {
+                    numbered = Arrays.copyOf(line, line.length + 1);
+                    numbered[line.length] = Long.toString(lineNumber);
+                }
+                int i = getChunkIndex(numbered, nameIndex, count, session,
+                        parentPath, existingPaths);
+                if (writers[i] == null) {
+                    files[i] = new File(dir, i + SUFFIX);
+                    writers[i] = CSVExternalSorter.newWriter(files[i]);
+                }
+                writers[i].writeNext(numbered);
+                lineCounts[i]++;
+            }
+        } finally {
+            csvReader.close();
+            for (CSVWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        List<CSVImportChunk> chunks = new ArrayList<CSVImportChunk>();
+        for (int i = 0; i < count; i++) {
+            if (files[i] != null) {
+                chunks.add(new CSVImportChunk(chunks.size(), files[i],
+                        lineCounts[i]));
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns the chunk of a line from the hash of its chunk key.
+     */
+    protected static int getChunkIndex(String[] line, int nameIndex,
+            int count, CoreSession session, String parentPath,
+            Map<String, Boolean> existingPaths) throws ClientException {
+        // the last column is the line number
+        if (nameIndex >= line.length - 1) {
+            return 0;
+        }
+        String key = getChunkKey(line[nameIndex].trim(), session, parentPath,
+                existingPaths);
+        return (key.hashCode() & Integer.MAX_VALUE) % count;
+    }
+
+    /**
+     * Returns the name, relative to the parent path, of the topmost document
+     * a line may create: the line's own document if its parent exists, else
+     * the child of its deepest existing ancestor.
+     *
+     * @param existingPaths the ancestors already checked, and whether they
+     *            exist
+     */
+    protected static String getChunkKey(String name, CoreSession session,
+            String parentPath, Map<String, Boolean> existingPaths)
+            throws ClientException {
+        Path path = new Path(name);
+        int segmentCount = path.segmentCount();
+        for (int depth = segmentCount - 1; depth > 0; depth--) {
+            String ancestor = new Path(parentPath).append(
+                    path.uptoSegment(depth)).toString();
+            Boolean exists = existingPaths.get(ancestor);
+            if (exists == null) {
+                exists = Boolean.valueOf(session.exists(new PathRef(ancestor)));
+                existingPaths.put(ancestor, exists);
+            }
+            if (exists.booleanValue()) {
+                return path.uptoSegment(depth + 1).toString();
+            }
+        }
+        return segmentCount == 0 ? "" : path.segment(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%d, %s, %d lines)",
+                getClass().getSimpleName(), Integer.valueOf(index),
+                file.getName(), Long.valueOf(lineCount));
+    }
+}
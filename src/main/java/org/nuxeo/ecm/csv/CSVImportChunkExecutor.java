@@ -0,0 +1,284 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Runs the chunks of the distributed imports of this node having
+ * {@link CSVImporterOptions#localChunks()}, outside of the
+ * {@link org.nuxeo.ecm.core.work.api.WorkManager WorkManager}.
+ * <p>
+ * Chunks mostly wait for the database, so they run on threads created on
+ * demand and reclaimed when idle rather than on a fixed queue, the number of
+ * chunks writing at the same time among all the imports being bounded by
+ * {@value #MAX_CONCURRENT_WRITES_PROPERTY}. It defaults to half the
+ * repository connection pool, leaving the other half to the rest of the
+ * server. Chunks beyond this bound wait in a queue, started in order as
+ * running chunks finish, so that submitting them never blocks.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportChunkExecutor {
+
+    private static final Log log = LogFactory.getLog(CSVImportChunkExecutor.class);
+
+    public static final String MAX_CONCURRENT_WRITES_PROPERTY = "nuxeo.csv.importer.maxConcurrentWrites";
+
+    protected static final String VCS_MAX_POOL_SIZE_PROPERTY = "nuxeo.vcs.max-pool-size";
+
+    protected static final int DEFAULT_VCS_MAX_POOL_SIZE = 20;
+
+    /**
+     * Time given to the running chunks to finish when shutting down, in
+     * seconds.
+     */
+    protected static final long SHUTDOWN_TIMEOUT = 10;
+
+    protected static final CSVImportChunkExecutor INSTANCE = new CSVImportChunkExecutor();
+
+    protected final Queue<Task> pending = new ArrayDeque<Task>();
+
+    protected int running;
+
+    protected ExecutorService executor;
+
+    public static CSVImportChunkExecutor getInstance() {
+        return INSTANCE;
+    }
+
+    public static int getMaxConcurrentWrites() {
+        String value = Framework.getProperty(MAX_CONCURRENT_WRITES_PROPERTY);
+        if (value != null) {
+            try {
+                return Math.max(1, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                log.warn(String.format("Invalid value '%s' of %s, ignored",
+                        value, MAX_CONCURRENT_WRITES_PROPERTY));
+            }
+        }
+        value = Framework.getProperty(VCS_MAX_POOL_SIZE_PROPERTY);
+        int poolSize = DEFAULT_VCS_MAX_POOL_SIZE;
+        if (value != null) {
+            try {
+                poolSize = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn(String.format("Invalid value '%s' of %s, using %d",
+                        value, VCS_MAX_POOL_SIZE_PROPERTY,
+                        Integer.valueOf(DEFAULT_VCS_MAX_POOL_SIZE)));
+            }
+        }
+        return Math.max(1, poolSize / 2);
+    }
+
+    protected ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+                protected final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "csvImporterChunk-"
+                            + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Queues the given works, started as soon as the number of running
+     * chunks allows it.
+     *
+     * @return the execution of the works, to wait for them or cancel them
+     */
+    public synchronized Execution execute(List<? extends Work> works) {
+        Execution execution = new Execution(this, works.size());
+        for (Work work : works) {
+            pending.add(new Task(work, execution));
+        }
+        startPending();
+        return execution;
+    }
+
+    protected synchronized void startPending() {
+        int max = getMaxConcurrentWrites();
+        while (running < max && !pending.isEmpty()) {
+            Task task = pending.poll();
+            try {
+                getExecutor().execute(task);
+                running++;
+            } catch (RejectedExecutionException e) {
+                log.error("Unable to start " + task.work, e);
+                task.execution.done.countDown();
+            }
+        }
+    }
+
+    protected synchronized void taskDone() {
+        running--;
+        startPending();
+    }
+
+    /**
+     * Removes the works of the given execution not started yet.
+     */
+    protected synchronized void cancel(Execution execution) {
+        for (Iterator<Task> it = pending.iterator(); it.hasNext();) {
+            Task task = it.next();
+            if (task.execution == execution) {
+                it.remove();
+                execution.done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Drops the works not started yet and waits for the running ones, for the
+     * shutdown of the server.
+     */
+    public void shutdown() throws InterruptedException {
+        ExecutorService shutdownExecutor;
+        synchronized (this) {
+            for (Task task : pending) {
+                task.execution.done.countDown();
+            }
+            pending.clear();
+            shutdownExecutor = executor;
+            executor = null;
+        }
+        if (shutdownExecutor == null) {
+            return;
+        }
+        shutdownExecutor.shutdown();
+        if (!shutdownExecutor.awaitTermination(SHUTDOWN_TIMEOUT,
+                TimeUnit.SECONDS)) {
+            log.warn("Chunks of CSV imports still running, interrupting them");
+            shutdownExecutor.shutdownNow();
+        }
+    }
+
+    protected class Task implements Runnable {
+
+        protected final Work work;
+
+        protected final Execution execution;
+
+        protected Task(Work work, Execution execution) {
+            this.work = work;
+            this.execution = execution;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // runs the work in its own transaction
+                work.run();
+            } catch (RuntimeException e) {
+                log.error("Error while importing " + work, e);
+            } finally {
+                taskDone();
+                execution.done.countDown();
+            }
+        }
+    }
+
+    /**
+     * The works queued by a call to {@link CSVImportChunkExecutor#execute}.
+     */
+    public static class Execution {
+
+        protected final CSVImportChunkExecutor executor;
+
+        protected final int count;
+
+        protected final CountDownLatch done;
+
+        protected Execution(CSVImportChunkExecutor executor, int count) {
+            this.executor = executor;
+            this.count = count;
+            done = new CountDownLatch(count);
+        }
+
+        /**
+         * Waits at most the given time for the works to be done.
+         *
+         * @return {@code true} if all the works are done
+         */
+        public boolean await(long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return done.await(timeout, unit);
+        }
+
+        /**
+         * Waits for the running works after a {@link #cancel()}, whatever the
+         * interruptions of the calling thread.
+         */
+        public void awaitUninterruptibly() {
+            boolean interrupted = false;
+            try {
+                for (;;) {
+                    try {
+                        done.await();
+                        return;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        public int getDoneCount() {
+            return count - (int) done.getCount();
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Drops the works not started yet, the running ones going on.
+         */
+        public void cancel() {
+            executor.cancel(this);
+        }
+    }
+
+}
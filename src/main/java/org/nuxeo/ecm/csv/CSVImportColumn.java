@@ -0,0 +1,398 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import static org.nuxeo.ecm.csv.Constants.CSV_NAME_COL;
+import static org.nuxeo.ecm.csv.Constants.CSV_TYPE_COL;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.commons.io.FilenameUtils;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
+import org.nuxeo.ecm.core.schema.DocumentType;
+import org.nuxeo.ecm.core.schema.types.ComplexType;
+import org.nuxeo.ecm.core.schema.types.Field;
+import org.nuxeo.ecm.core.schema.types.ListType;
+import org.nuxeo.ecm.core.schema.types.SimpleTypeImpl;
+import org.nuxeo.ecm.core.schema.types.Type;
+import org.nuxeo.ecm.core.schema.types.primitives.BooleanType;
+import org.nuxeo.ecm.core.schema.types.primitives.DateType;
+import org.nuxeo.ecm.core.schema.types.primitives.DoubleType;
+import org.nuxeo.ecm.core.schema.types.primitives.IntegerType;
+import org.nuxeo.ecm.core.schema.types.primitives.LongType;
+import org.nuxeo.ecm.core.schema.types.primitives.StringType;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Conversion plan of a column of the CSV file for a document type, resolved
+ * once per header and type so that converting a cell only switches on its
+ * kind.
+ * <p>
+ * A column targets a field of the type ({@code dc:title}) or a sub-field of a
+ * complex field ({@code addr:address/city}). Complex fields and lists of
+ * complex values are read from JSON cells, parsed by a streaming parser:
+ * <code>{"city": "Paris"}</code> and <code>[{"city": "Paris"}]</code>.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportColumn {
+
+    public static final String BLOBS_FOLDER_PROPERTY = "nuxeo.csv.blobs.folder";
+
+    public enum Kind {
+        STRING, INTEGER, LONG, DOUBLE, BOOLEAN, DATE,
+        /** A blob read from the {@value #BLOBS_FOLDER_PROPERTY} directory. */
+        CONTENT,
+        /** A list of strings separated by the list separator. */
+        ARRAY,
+        /** A JSON object. */
+        COMPLEX,
+        /**
+         * A JSON array of objects, or a list of strings separated by the list
+         * separator.
+         */
+        COMPLEX_LIST
+    }
+
+    protected static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    protected final int index;
+
+    protected final String header;
+
+    protected final Type type;
+
+    protected final Kind kind;
+
+    /**
+     * Directory of the blobs of a {@link Kind#CONTENT} column.
+     */
+    protected final String blobsFolder;
+
+    protected CSVImportColumn(int index, String header, Type type, Kind kind,
+            String blobsFolder) {
+        this.index = index;
+        this.header = header;
+        this.type = type;
+        this.kind = kind;
+        this.blobsFolder = blobsFolder;
+    }
+
+    /**
+     * Resolves the projection of a header for a document type: the columns
+     * targeting a supported field of the type, in header order, so that the
+     * other cells of a line of that type are never read.
+     */
+    public static CSVImportColumn[] getColumns(DocumentType docType,
+            String[] header) {
+        List<CSVImportColumn> columns = new ArrayList<CSVImportColumn>(
+                header.length);
+        for (int col = 0; col < header.length; col++) {
+            CSVImportColumn column = create(docType, col, header[col]);
+            if (column != null) {
+                columns.add(column);
+            }
+        }
+        return columns.toArray(new CSVImportColumn[columns.size()]);
+    }
+
+    /**
+     * Resolves a column for a document type.
+     *
+     * @param index the index of the column in the header
+     * @return the column, or {@code null} if it does not target a supported
+     *         field of the type
+     */
+    public static CSVImportColumn create(DocumentType docType, int index,
+            String header) {
+        if (CSV_NAME_COL.equals(header) || CSV_TYPE_COL.equals(header)) {
+            return null;
+        }
+        String[] segments = header.split("/");
+        Field field = getField(docType, segments[0]);
+        for (int i = 1; i < segments.length && field != null; i++) {
+            Type type = field.getType();
+            field = type.isComplexType() ? ((ComplexType) type).getField(segments[i])
+                    : null;
+        }
+        if (field == null) {
+            return null;
+        }
+        Kind kind = getKind(field.getType());
+        if (kind == null) {
+            return null;
+        }
+        String blobsFolder = kind == Kind.CONTENT ? Framework.getProperty(BLOBS_FOLDER_PROPERTY)
+                : null;
+        return new CSVImportColumn(index, header, field.getType(), kind,
+                blobsFolder);
+    }
+
+    protected static Field getField(DocumentType docType, String name) {
+        if (docType.hasField(name)) {
+            return docType.getField(name);
+        }
+        // field of a schema without prefix
+        int i = name.indexOf(':');
+        if (i != -1 && docType.hasField(name.substring(i + 1))) {
+            return docType.getField(name.substring(i + 1));
+        }
+        return null;
+    }
+
+    /**
+     * Returns the kind of a type, or {@code null} if not supported.
+     */
+    protected static Kind getKind(Type type) {
+        if (type.isComplexType()) {
+            return CSVImporterWork.CONTENT_FILED_TYPE_NAME.equals(type.getName()) ? Kind.CONTENT
+                    : Kind.COMPLEX;
+        }
+        if (type.isListType()) {
+            return ((ListType) type).getFieldType().isSimpleType() ? Kind.ARRAY
+                    : Kind.COMPLEX_LIST;
+        }
+        if (type instanceof SimpleTypeImpl) {
+            type = type.getSuperType();
+        }
+        if (type instanceof StringType) {
+            return Kind.STRING;
+        } else if (type instanceof IntegerType) {
+            return Kind.INTEGER;
+        } else if (type instanceof LongType) {
+            return Kind.LONG;
+        } else if (type instanceof DoubleType) {
+            return Kind.DOUBLE;
+        } else if (type instanceof BooleanType) {
+            return Kind.BOOLEAN;
+        } else if (type instanceof DateType) {
+            return Kind.DATE;
+        }
+        return null;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the trimmed cell of the column in a line, {@code null} if
+     * blank or missing.
+     */
+    public String getValue(String[] line) {
+        if (index >= line.length) {
+            return null;
+        }
+        String value = line[index];
+        if (value.isEmpty()) {
+            return null;
+        }
+        // no copy unless there are spaces to remove
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Returns the header of the column, the property xpath of its values.
+     */
+    public String getHeader() {
+        return header;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Converts a trimmed, non blank, cell of the column.
+     *
+     * @throws FileNotFoundException if the file of a {@link Kind#CONTENT}
+     *             column does not exist
+     */
+    public Serializable convert(String value, DateFormat dateFormat,
+            String listSeparatorRegex) throws ParseException, IOException {
+        switch (kind) {
+        case ARRAY:
+            return value.split(listSeparatorRegex);
+        case COMPLEX:
+            return parseJson(value, dateFormat);
+        case COMPLEX_LIST:
+            if (value.startsWith("[")) {
+                return parseJson(value, dateFormat);
+            }
+            return (Serializable) Arrays.asList(value.split(listSeparatorRegex));
+        case CONTENT:
+            return readBlob(value);
+        default:
+            return convertScalar(kind, value, dateFormat);
+        }
+    }
+
+    /**
+     * Converts a trimmed, non blank, cell of the column into a slot of a row,
+     * numbers and booleans without boxing.
+     *
+     * @throws FileNotFoundException if the file of a {@link Kind#CONTENT}
+     *             column does not exist
+     */
+    public void convert(String value, CSVImportRow row, int slot,
+            DateFormat dateFormat, String listSeparatorRegex)
+            throws ParseException, IOException {
+        switch (kind) {
+        case INTEGER:
+            row.setLong(slot, Integer.parseInt(value));
+            break;
+        case LONG:
+            row.setLong(slot, Long.parseLong(value));
+            break;
+        case DOUBLE:
+            row.setDouble(slot, Double.parseDouble(value));
+            break;
+        case BOOLEAN:
+            row.setBoolean(slot, Boolean.parseBoolean(value));
+            break;
+        default:
+            row.setObject(slot, convert(value, dateFormat, listSeparatorRegex));
+        }
+    }
+
+    /**
+     * Returns the blob of a file of the blobs folder.
+     */
+    protected FileBlob readBlob(String value) throws FileNotFoundException {
+        String path = FilenameUtils.normalize(blobsFolder + "/" + value);
+        File file = path == null ? null : new File(path);
+        if (file == null || !file.exists()) {
+            throw new FileNotFoundException(value);
+        }
+        FileBlob blob = new FileBlob(file);
+        blob.setFilename(file.getName());
+        return blob;
+    }
+
+    protected static Serializable convertScalar(Kind kind, String value,
+            DateFormat dateFormat) throws ParseException {
+        switch (kind) {
+        case INTEGER:
+            return Integer.valueOf(value);
+        case LONG:
+            return Long.valueOf(value);
+        case DOUBLE:
+            return Double.valueOf(value);
+        case BOOLEAN:
+            return Boolean.valueOf(value);
+        case DATE:
+            return dateFormat.parse(value);
+        default:
+            return value;
+        }
+    }
+
+    protected Serializable parseJson(String value, DateFormat dateFormat)
+            throws ParseException, IOException {
+        JsonParser parser = JSON_FACTORY.createJsonParser(value);
+        try {
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.START_OBJECT
+                    && token != JsonToken.START_ARRAY) {
+                throw new JsonParseException("Expected a JSON object or array",
+                        parser.getCurrentLocation());
+            }
+            Serializable result = readJson(parser, type, dateFormat);
+            if (parser.nextToken() != null) {
+                throw new JsonParseException("Unexpected content after "
+                        + token, parser.getCurrentLocation());
+            }
+            return result;
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Reads the JSON value at the current token of the parser.
+     */
+    protected static Serializable readJson(JsonParser parser, Type type,
+            DateFormat dateFormat) throws ParseException, IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (type.isComplexType()) {
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonParseException("Expected a JSON object for "
+                        + type.getName(), parser.getCurrentLocation());
+            }
+            ComplexType complexType = (ComplexType) type;
+            HashMap<String, Serializable> map = new HashMap<String, Serializable>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                Field field = complexType.getField(name);
+                if (field == null) {
+                    throw new JsonParseException(String.format(
+                            "Field '%s' does not exist on %s", name,
+                            type.getName()), parser.getCurrentLocation());
+                }
+                parser.nextToken();
+                map.put(field.getName().getLocalName(),
+                        readJson(parser, field.getType(), dateFormat));
+            }
+            return map;
+        }
+        if (type.isListType()) {
+            if (token != JsonToken.START_ARRAY) {
+                throw new JsonParseException("Expected a JSON array for "
+                        + type.getName(), parser.getCurrentLocation());
+            }
+            Type itemType = ((ListType) type).getFieldType();
+            ArrayList<Serializable> list = new ArrayList<Serializable>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                list.add(readJson(parser, itemType, dateFormat));
+            }
+            return list;
+        }
+        if (!token.isScalarValue()) {
+            throw new JsonParseException("Expected a JSON value for "
+                    + type.getName(), parser.getCurrentLocation());
+        }
+        Kind kind = getKind(type);
+        if (kind == null) {
+            throw new JsonParseException("Unsupported type " + type.getName(),
+                    parser.getCurrentLocation());
+        }
+        return convertScalar(kind, parser.getText(), dateFormat);
+    }
+
+}
@@ -0,0 +1,330 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Cancel and pause requests of an import, checked by the import work between
+ * lines.
+ * <p>
+ * The requests are also written as marker files in the {@value #CONTROLS_DIRECTORY}
+ * directory of {@link CSVImportLogStore#getRootDirectory()}, read again at
+ * most every {@link #REFRESH_INTERVAL}, so that the chunks of a distributed
+ * import running on other nodes see them, see {@link #refresh()}. The
+ * throttle and the delta of an import are kept per node.
+ * <p>
+ * A paused import ends its work, freeing its thread and the slot of its lane,
+ * the control keeping the work going on from the same point, resubmitted once
+ * the import is resumed or cancelled, see {@link #suspend(CSVImporterWork)}.
+ * The suspended work is kept on the node of the import, which is the one
+ * able to resume it.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportControl {
+
+    private static final Log log = LogFactory.getLog(CSVImportControl.class);
+
+    public static final String CONTROLS_DIRECTORY = "controls";
+
+    protected static final String CANCELLED_SUFFIX = ".cancelled";
+
+    protected static final String PAUSED_SUFFIX = ".paused";
+
+    /**
+     * Interval in milliseconds between two reads of the marker files.
+     */
+    protected static final long REFRESH_INTERVAL = 1000;
+
+    protected static final ConcurrentMap<String, CSVImportControl> CONTROLS = new ConcurrentHashMap<String, CSVImportControl>();
+
+    protected final String importId;
+
+    protected volatile boolean cancelled;
+
+    protected volatile boolean paused;
+
+    protected volatile long nextRefreshTime;
+
+    protected long runId;
+
+    protected CSVImportThrottle throttle;
+
+    protected CSVImportDelta delta;
+
+    protected CSVImporterWork suspendedWork;
+
+    protected CSVImportControl(String importId) {
+        this.importId = importId;
+    }
+
+    /**
+     * Returns the control of the given import, creating it if needed.
+     */
+    public static CSVImportControl get(String importId) {
+        CSVImportControl control = CONTROLS.get(importId);
+        if (control == null) {
+            control = new CSVImportControl(importId);
+            CSVImportControl previous = CONTROLS.putIfAbsent(importId, control);
+            if (previous != null) {
+                control = previous;
+            }
+        }
+        return control;
+    }
+
+    /**
+     * Returns the control of the given import, or {@code null} if nothing was
+     * ever requested.
+     */
+    public static CSVImportControl peek(String importId) {
+        return CONTROLS.get(importId);
+    }
+
+    public static void remove(String importId) {
+        CONTROLS.remove(importId);
+    }
+
+    /**
+     * Removes the control of the given import and its marker files, for a new
+     * run of the import.
+     */
+    public static void clear(String importId) {
+        remove(importId);
+        FileUtils.deleteQuietly(getMarkerFile(importId, CANCELLED_SUFFIX));
+        FileUtils.deleteQuietly(getMarkerFile(importId, PAUSED_SUFFIX));
+    }
+
+    protected static File getMarkerFile(String importId, String suffix) {
+        return new File(new File(CSVImportLogStore.getRootDirectory(),
+                CONTROLS_DIRECTORY), DigestUtils.md5Hex(importId) + suffix);
+    }
+
+    protected void writeMarker(String suffix) {
+        File file = getMarkerFile(importId, suffix);
+        try {
+            FileUtils.forceMkdir(file.getParentFile());
+            file.createNewFile();
+        } catch (IOException e) {
+            log.error("Unable to write the control file " + file, e);
+        }
+    }
+
+    /**
+     * Starts a new run of the import on this node, dropping the throttle,
+     * the delta and the requests of a previous run if the given run id is a
+     * new one.
+     *
+     * @param runId the id of the run, shared by the chunks of a distributed
+     *            import
+     */
+    public synchronized void startRun(long runId) {
+        if (this.runId == runId) {
+            return;
+        }
+        this.runId = runId;
+        throttle = null;
+        delta = null;
+        cancelled = false;
+        paused = false;
+        nextRefreshTime = 0;
+        refresh();
+    }
+
+    /**
+     * Reads the requests made from other nodes, unless already done less
+     * than {@link #REFRESH_INTERVAL} ago.
+     */
+    public void refresh() {
+        long now = System.currentTimeMillis();
+        if (now < nextRefreshTime) {
+            return;
+        }
+        synchronized (this) {
+            if (now < nextRefreshTime) {
+                return;
+            }
+            nextRefreshTime = now + REFRESH_INTERVAL;
+            boolean wasPaused = paused;
+            if (!cancelled
+                    && getMarkerFile(importId, CANCELLED_SUFFIX).exists()) {
+                cancelled = true;
+            }
+            paused = getMarkerFile(importId, PAUSED_SUFFIX).exists();
+            if (cancelled || wasPaused != paused) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the throttle of the current run of the import on this node,
+     * created from the given options the first time, see
+     * {@link #startRun(long)}.
+     */
+    public synchronized CSVImportThrottle getThrottle(
+            CSVImporterOptions options) {
+        if (throttle == null) {
+            throttle = new CSVImportThrottle(options);
+        }
+        return throttle;
+    }
+
+    /**
+     * Returns the line fingerprints of a delta import, loaded the first time
+     * from the given file.
+     */
+    public synchronized CSVImportDelta getDelta(File file, String[] header,
+            CSVImporterOptions options, long expectedSize) {
+        if (delta == null) {
+            delta = CSVImportDelta.load(file, header, options, expectedSize);
+        }
+        return delta;
+    }
+
+    /**
+     * Removes the line fingerprints of a delta import once it is done.
+     *
+     * @return the fingerprints, or {@code null} if none were loaded
+     */
+    public synchronized CSVImportDelta removeDelta() {
+        CSVImportDelta removed = delta;
+        delta = null;
+        return removed;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Returns {@code true} if the import has to stop or pause.
+     */
+    public boolean isInterrupted() {
+        return cancelled || paused;
+    }
+
+    public synchronized void cancel() {
+        cancelled = true;
+        writeMarker(CANCELLED_SUFFIX);
+        notifyAll();
+    }
+
+    public synchronized void pause() {
+        paused = true;
+        writeMarker(PAUSED_SUFFIX);
+        notifyAll();
+    }
+
+    /**
+     * Resumes the import.
+     *
+     * @return the work going on with the import if it was suspended, to be
+     *         resubmitted, or {@code null}
+     */
+    public synchronized CSVImporterWork resume() {
+        paused = false;
+        FileUtils.deleteQuietly(getMarkerFile(importId, PAUSED_SUFFIX));
+        notifyAll();
+        return takeSuspendedWork();
+    }
+
+    /**
+     * Cancels a suspended import.
+     *
+     * @return the work ending the import, to be resubmitted, or {@code null}
+     *         if the import is not suspended
+     */
+    public synchronized CSVImporterWork cancelSuspended() {
+        if (suspendedWork == null) {
+            return null;
+        }
+        cancel();
+        return takeSuspendedWork();
+    }
+
+    /**
+     * Keeps the work going on with the import while it is paused.
+     *
+     * @return {@code false} if the import is no longer paused, the current
+     *         work then going on
+     */
+    public synchronized boolean suspend(CSVImporterWork work) {
+        if (!paused || cancelled) {
+            return false;
+        }
+        suspendedWork = work;
+        return true;
+    }
+
+    public synchronized boolean isSuspended() {
+        return suspendedWork != null;
+    }
+
+    protected CSVImporterWork takeSuspendedWork() {
+        CSVImporterWork work = suspendedWork;
+        suspendedWork = null;
+        return work;
+    }
+
+    /**
+     * Wakes up the distributed import waiting for its chunks, a chunk of this
+     * node being done. The chunks done are counted from their log stores,
+     * see {@link CSVImportLogStore#isCompleted()}.
+     */
+    public synchronized void chunkDone() {
+        notifyAll();
+    }
+
+    /**
+     * Waits at most {@code timeout} milliseconds for a chunk of the
+     * distributed import to be done on this node.
+     */
+    public synchronized void awaitChunkDone(long timeout)
+            throws InterruptedException {
+        wait(timeout);
+    }
+
+    /**
+     * Waits while the import is paused.
+     *
+     * @return {@code true} if the import was cancelled
+     */
+    public synchronized boolean awaitResume() throws InterruptedException {
+        while (paused && !cancelled) {
+            wait(REFRESH_INTERVAL);
+            // resumed or cancelled from another node
+            refresh();
+        }
+        return cancelled;
+    }
+
+}
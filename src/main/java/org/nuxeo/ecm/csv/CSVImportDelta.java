@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Line fingerprints of the previous and current imports of a same source, for
+ * an import with {@link CSVImporterOptions#deltaImport()}.
+ * <p>
+ * The source is identified by repository, parent path and CSV file name, the
+ * fingerprints being saved in the {@code fingerprints} directory of
+ * {@link CSVImportLogStore#getRootDirectory()}. The fingerprints of a previous
+ * import are ignored if the header of the CSV file or the conversion options
+ * changed.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportDelta {
+
+    private static final Log log = LogFactory.getLog(CSVImportDelta.class);
+
+    protected static final String FINGERPRINTS_DIRECTORY = "fingerprints";
+
+    protected final File file;
+
+    protected final long configuration;
+
+    protected final CSVImportFingerprints previous;
+
+    protected final CSVImportFingerprints current;
+
+    protected CSVImportDelta(File file, long configuration,
+            CSVImportFingerprints previous, long expectedSize) {
+        this.file = file;
+        this.configuration = configuration;
+        this.previous = previous;
+        current = new CSVImportFingerprints(previous == null ? expectedSize
+                : previous.size());
+    }
+
+    public static File getFile(String repositoryName, String parentPath,
+            String csvFileName) {
+        File dir = new File(CSVImportLogStore.getRootDirectory(),
+                FINGERPRINTS_DIRECTORY);
+        return new File(dir, DigestUtils.md5Hex(repositoryName + ':'
+                + parentPath + ':' + csvFileName) + ".dat");
+    }
+
+    /**
+     * Loads the fingerprints of the previous import of a source.
+     *
+     * @param header the header of the CSV file
+     * @param expectedSize the expected number of lines
+     */
+    public static CSVImportDelta load(File file, String[] header,
+            CSVImporterOptions options, long expectedSize) {
+        long configuration = CSVImportFingerprints.fingerprint(new String[] {
+                Long.toString(CSVImportFingerprints.fingerprint(header)),
+                options.getDateFormat(), options.getListSeparatorRegex() });
+        CSVImportFingerprints previous = null;
+        try {
+            previous = CSVImportFingerprints.load(file, configuration);
+        } catch (IOException e) {
+            log.warn("Unable to read the line fingerprints of " + file
+                    + ", importing all the lines", e);
+        }
+        return new CSVImportDelta(file, configuration, previous, expectedSize);
+    }
+
+    /**
+     * Checks whether a line is the same as in the previous import, in which
+     * case it is kept for the next import.
+     */
+    public synchronized boolean isUnchanged(String path, long fingerprint) {
+        if (previous == null || previous.get(path) != fingerprint) {
+            return false;
+        }
+        current.put(path, fingerprint);
+        return true;
+    }
+
+    /**
+     * Records a line successfully imported, once committed.
+     */
+    public synchronized void record(String path, long fingerprint) {
+        current.put(path, fingerprint);
+    }
+
+    /**
+     * Saves the fingerprints of the lines of this import for the next one.
+     */
+    public synchronized void save() throws IOException {
+        FileUtils.forceMkdir(file.getParentFile());
+        current.save(file, configuration);
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Fingerprints of the lines of a CSV file, by fingerprint of the path of
+ * their document, in an open addressing table of primitive longs.
+ * <p>
+ * A line fingerprint is never {@code 0}, which marks the free slots.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportFingerprints {
+
+    protected static final int FILE_VERSION = 1;
+
+    protected static final float LOAD_FACTOR = 0.7f;
+
+    protected long[] keys;
+
+    protected long[] values;
+
+    protected int size;
+
+    /**
+     * @param expectedSize the expected number of lines, the table grows if
+     *            needed
+     */
+    public CSVImportFingerprints(long expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize / LOAD_FACTOR && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new long[capacity];
+    }
+
+    /**
+     * Computes a 64-bit fingerprint of the values of a line, never {@code 0}.
+     */
+    public static long fingerprint(String[] line) {
+        // FNV-1a followed by a MurmurHash3 finalizer, as for paths
+        long h = 0xcbf29ce484222325L;
+        for (String value : line) {
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            // separates the values, so that "ab","c" differs from "a","bc"
+            h ^= 0x1f;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Returns the fingerprint of the line of the given path, or {@code 0} if
+     * there is none.
+     */
+    public long get(String path) {
+        long key = CSVImportPathSet.fingerprint(path);
+        int mask = keys.length - 1;
+        for (int i = (int) key & mask;; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == 0) {
+                return 0;
+            }
+            if (k == key) {
+                return values[i];
+            }
+        }
+    }
+
+    public void put(String path, long fingerprint) {
+        if (size + 1 > keys.length * LOAD_FACTOR) {
+            rehash(keys.length << 1);
+        }
+        if (insert(keys, values, CSVImportPathSet.fingerprint(path),
+                fingerprint)) {
+            size++;
+        }
+    }
+
+    /**
+     * @return {@code true} if the key was not already in the table
+     */
+    protected static boolean insert(long[] keys, long[] values, long key,
+            long value) {
+        int mask = keys.length - 1;
+        for (int i = (int) key & mask;; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == 0 || k == key) {
+                keys[i] = key;
+                values[i] = value;
+                return k == 0;
+            }
+        }
+    }
+
+    protected void rehash(int capacity) {
+        long[] newKeys = new long[capacity];
+        long[] newValues = new long[capacity];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                insert(newKeys, newValues, keys[i], values[i]);
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Loads fingerprints saved with the given configuration fingerprint.
+     *
+     * @return the fingerprints, or {@code null} if the file does not exist or
+     *         was saved with another configuration
+     */
+    public static CSVImportFingerprints load(File file, long configuration)
+            throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            if (in.readInt() != FILE_VERSION || in.readLong() != configuration) {
+                return null;
+            }
+            int size = in.readInt();
+            CSVImportFingerprints fingerprints = new CSVImportFingerprints(
+                    size);
+            for (int i = 0; i < size; i++) {
+                long key = in.readLong();
+                long value = in.readLong();
+                insert(fingerprints.keys, fingerprints.values, key, value);
+            }
+            fingerprints.size = size;
+            return fingerprints;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Saves the fingerprints, replacing the given file only once they are
+     * all written.
+     */
+    public void save(File file, long configuration) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)));
+        try {
+            out.writeInt(FILE_VERSION);
+            out.writeLong(configuration);
+            out.writeInt(size);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    out.writeLong(keys[i]);
+                    out.writeLong(values[i]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
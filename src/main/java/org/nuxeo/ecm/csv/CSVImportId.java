@@ -36,6 +36,8 @@ public class CSVImportId {
 
     private static final Log log = LogFactory.getLog(CSVImportId.class);
 
+    protected static final String CSV_IMPORT_SEPARATOR = ":csvImport:";
+
     private CSVImportId() {
         // utility class
     }
@@ -46,7 +48,32 @@ public class CSVImportId {
 
     public static String create(String repositoryName, String path,
             String csvBlobDigest) {
-        return repositoryName + ':' + path + ":csvImport:" + csvBlobDigest;
+        return repositoryName + ':' + path + CSV_IMPORT_SEPARATOR
+                + csvBlobDigest;
+    }
+
+    /**
+     * Returns the repository name of an import id, or {@code null} if the id
+     * is malformed.
+     *
+     * @since 5.9.2
+     */
+    public static String getRepositoryName(String id) {
+        int i = id.indexOf(':');
+        return i == -1 || i > id.lastIndexOf(CSV_IMPORT_SEPARATOR) ? null
+                : id.substring(0, i);
+    }
+
+    /**
+     * Returns the path of the document into which an import id imports, or
+     * {@code null} if the id is malformed.
+     *
+     * @since 5.9.2
+     */
+    public static String getPath(String id) {
+        int i = id.indexOf(':');
+        int j = id.lastIndexOf(CSV_IMPORT_SEPARATOR);
+        return i == -1 || i > j ? null : id.substring(i + 1, j);
     }
 
     protected static String computeDigest(File file) {
@@ -0,0 +1,131 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Append-only file of the ids of the documents imported by a work, for
+ * {@link CSVImporterOptions#deferredIndexing()}, so that the ids of a large
+ * import are not held in memory until they are indexed.
+ * <p>
+ * The files are in the {@code indexing} directory of
+ * {@link CSVImportLogStore#getRootDirectory()}.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportIdFile {
+
+    protected static final String INDEXING_DIRECTORY = "indexing";
+
+    protected static final String SUFFIX = ".ids";
+
+    protected final File file;
+
+    protected DataOutputStream out;
+
+    protected long size;
+
+    public CSVImportIdFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the file of the ids of the given work.
+     */
+    public static File getFile(String workId) {
+        return getFile(workId, 0);
+    }
+
+    /**
+     * Returns the file of the ids of the given work, for the given index of
+     * the files already handed over to indexing.
+     */
+    public static File getFile(String workId, int index) {
+        File dir = new File(CSVImportLogStore.getRootDirectory(),
+                INDEXING_DIRECTORY);
+        String name = DigestUtils.md5Hex(workId);
+        return new File(dir, index == 0 ? name + SUFFIX : name + '-' + index
+                + SUFFIX);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void add(String id) throws IOException {
+        if (out == null) {
+            FileUtils.forceMkdir(file.getParentFile());
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file, true)));
+        }
+        out.writeUTF(id);
+        size++;
+    }
+
+    /**
+     * Returns the number of ids added since this file was opened.
+     */
+    public long size() {
+        return size;
+    }
+
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    public static DataInputStream open(File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(
+                file)));
+    }
+
+    /**
+     * Reads the next page of ids.
+     *
+     * @param ids the list receiving the ids, cleared first
+     * @return {@code false} if there were no more ids
+     */
+    public static boolean read(DataInputStream in, List<String> ids,
+            int pageSize) throws IOException {
+        ids.clear();
+        try {
+            while (ids.size() < pageSize) {
+                ids.add(in.readUTF());
+            }
+        } catch (EOFException e) {
+            // no more ids
+        }
+        return !ids.isEmpty();
+    }
+
+}
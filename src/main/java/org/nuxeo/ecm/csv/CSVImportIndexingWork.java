@@ -0,0 +1,173 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.automation.AutomationService;
+import org.nuxeo.ecm.automation.OperationContext;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.event.EventService;
+import org.nuxeo.ecm.core.event.impl.EventContextImpl;
+import org.nuxeo.ecm.core.work.AbstractWork;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Work task reindexing at once the documents of an import with
+ * {@link CSVImporterOptions#deferredIndexing()}, read from
+ * {@link CSVImportIdFile}s deleted once done.
+ * <p>
+ * The ids are read by pages, each one in its own transaction. The documents
+ * of each page are given to the automation chain of the
+ * {@value #INDEXING_CHAIN_PROPERTY} property, reindexing them in bulk, then a
+ * {@value #INDEX_DOCUMENTS_EVENT} event is fired for the other listeners.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportIndexingWork extends AbstractWork {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Log log = LogFactory.getLog(CSVImportIndexingWork.class);
+
+    public static final String CATEGORY_CSV_IMPORTER_INDEXING = "csvImporterIndexing";
+
+    /**
+     * Event fired for each page of ids, with the
+     * {@link CSVImporterWork#IMPORT_ID_PROPERTY} and
+     * {@link CSVImporterWork#DOCUMENT_IDS_PROPERTY} properties.
+     */
+    public static final String INDEX_DOCUMENTS_EVENT = "csvImportIndexDocuments";
+
+    /**
+     * Automation chain or operation reindexing the documents of a page, given
+     * as input, for instance the one of the search backend. None by default.
+     */
+    public static final String INDEXING_CHAIN_PROPERTY = "nuxeo.csv.importer.indexingChain";
+
+    public static final String PAGE_SIZE_PROPERTY = "nuxeo.csv.importer.indexingPageSize";
+
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    protected String importId;
+
+    protected ArrayList<String> filePaths;
+
+    public CSVImportIndexingWork(String repositoryName, String importId,
+            List<File> files) {
+        super(importId + ":indexing:" + UUID.randomUUID());
+        setDocument(repositoryName, null);
+        this.importId = importId;
+        filePaths = new ArrayList<String>(files.size());
+        for (File file : files) {
+            filePaths.add(file.getPath());
+        }
+    }
+
+    @Override
+    public String getCategory() {
+        return CATEGORY_CSV_IMPORTER_INDEXING;
+    }
+
+    @Override
+    public String getTitle() {
+        return String.format("Indexing of CSV import %s", importId);
+    }
+
+    @Override
+    public void work() throws Exception {
+        setStatus("Indexing");
+        initSession();
+        int pageSize = getPageSize();
+        try {
+            List<String> ids = new ArrayList<String>(pageSize);
+            for (String filePath : filePaths) {
+                File file = new File(filePath);
+                if (!file.isFile()) {
+                    continue;
+                }
+                DataInputStream in = CSVImportIdFile.open(file);
+                try {
+                    while (CSVImportIdFile.read(in, ids, pageSize)) {
+                        indexDocuments(ids);
+                        commitOrRollbackTransaction();
+                        startTransaction();
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            for (String filePath : filePaths) {
+                FileUtils.deleteQuietly(new File(filePath));
+            }
+        }
+        setStatus(null);
+    }
+
+    protected int getPageSize() {
+        String value = Framework.getProperty(PAGE_SIZE_PROPERTY);
+        if (value == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn(String.format("Invalid value '%s' of %s, using %d",
+                    value, PAGE_SIZE_PROPERTY,
+                    Integer.valueOf(DEFAULT_PAGE_SIZE)));
+            return DEFAULT_PAGE_SIZE;
+        }
+    }
+
+    /**
+     * Reindexes a page of documents with the chain of the
+     * {@link #INDEXING_CHAIN_PROPERTY} property, if any, then fires an
+     * {@link #INDEX_DOCUMENTS_EVENT} event.
+     */
+    protected void indexDocuments(List<String> ids) throws Exception {
+        String chainId = Framework.getProperty(INDEXING_CHAIN_PROPERTY);
+        if (!StringUtils.isBlank(chainId)) {
+            DocumentRef[] refs = new DocumentRef[ids.size()];
+            for (int i = 0; i < refs.length; i++) {
+                refs[i] = new IdRef(ids.get(i));
+            }
+            OperationContext opCtx = new OperationContext(session);
+            opCtx.setInput(session.getDocuments(refs));
+            Framework.getLocalService(AutomationService.class).run(opCtx,
+                    chainId.trim());
+        }
+        EventContextImpl ctx = new EventContextImpl(session,
+                session.getPrincipal());
+        ctx.setProperty(CSVImporterWork.IMPORT_ID_PROPERTY, importId);
+        ctx.setProperty(CSVImporterWork.DOCUMENT_IDS_PROPERTY,
+                new ArrayList<String>(ids));
+        Framework.getLocalService(EventService.class).fireEvent(
+                ctx.newEvent(INDEX_DOCUMENTS_EVENT));
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.ClientRuntimeException;
+import org.nuxeo.ecm.core.api.impl.blob.StringBlob;
+
+/**
+ * Helper class writing the JSON results of the CSV import operations.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportJson {
+
+    public static final String MIME_TYPE = "application/json";
+
+    protected static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private CSVImportJson() {
+        // utility class
+    }
+
+    public static Blob toBlob(CharSequence json) {
+        return new StringBlob(json.toString(), MIME_TYPE, "UTF-8");
+    }
+
+    public static String importId(String id) {
+        StringWriter writer = new StringWriter();
+        try {
+            JsonGenerator jg = JSON_FACTORY.createJsonGenerator(writer);
+            jg.writeStartObject();
+            jg.writeStringField("id", id);
+            jg.writeEndObject();
+            jg.close();
+        } catch (IOException e) {
+            throw new ClientRuntimeException(e);
+        }
+        return writer.toString();
+    }
+
+    public static String importStatus(String id, CSVImportStatus status,
+            CSVImportResult result) {
+        StringWriter writer = new StringWriter();
+        try {
+            JsonGenerator jg = JSON_FACTORY.createJsonGenerator(writer);
+            jg.writeStartObject();
+            jg.writeStringField("id", id);
+            jg.writeStringField("state", status == null ? null
+                    : status.getState().name());
+            if (status != null) {
+                jg.writeNumberField("positionInQueue",
+                        status.getPositionInQueue());
+                jg.writeNumberField("queueSize", status.getQueueSize());
+            }
+            if (result != null) {
+                jg.writeNumberField("totalLineCount",
+                        result.getTotalLineCount());
+                jg.writeNumberField("successLineCount",
+                        result.getSuccessLineCount());
+                jg.writeNumberField("skippedLineCount",
+                        result.getSkippedLineCount());
+                jg.writeNumberField("errorLineCount",
+                        result.getErrorLineCount());
+                jg.writeNumberField("unchangedLineCount",
+                        result.getUnchangedLineCount());
+            }
+            jg.writeEndObject();
+            jg.close();
+        } catch (IOException e) {
+            throw new ClientRuntimeException(e);
+        }
+        return writer.toString();
+    }
+
+    public static String importLogs(String id, long total,
+            List<CSVImportLog> importLogs) {
+        StringWriter writer = new StringWriter();
+        try {
+            JsonGenerator jg = JSON_FACTORY.createJsonGenerator(writer);
+            jg.writeStartObject();
+            jg.writeStringField("id", id);
+            jg.writeNumberField("total", total);
+            jg.writeArrayFieldStart("logs");
+            for (CSVImportLog importLog : importLogs) {
+                jg.writeStartObject();
+                jg.writeNumberField("line", importLog.getLine());
+                jg.writeStringField("status", importLog.getStatus().name());
+                jg.writeStringField("message", importLog.getMessage());
+                jg.writeEndObject();
+            }
+            jg.writeEndArray();
+            jg.writeEndObject();
+            jg.close();
+        } catch (IOException e) {
+            throw new ClientRuntimeException(e);
+        }
+        return writer.toString();
+    }
+
+}
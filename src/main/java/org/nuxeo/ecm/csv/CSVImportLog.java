@@ -44,15 +44,43 @@ public class CSVImportLog implements Serializable {
 
     protected final String[] params;
 
+    protected final boolean templated;
+
+    protected transient String formattedMessage;
+
     public CSVImportLog(long line, Status status, String message,
             String localizedMessage, String... params) {
+        this(line, status, message, false, localizedMessage, params);
+    }
+
+    /**
+     * @param templated whether {@code message} is a template formatted with
+     *            {@code params}
+     * @since 5.9.2
+     */
+    protected CSVImportLog(long line, Status status, String message,
+            boolean templated, String localizedMessage, String... params) {
         this.line = line;
         this.status = status;
         this.message = message;
+        this.templated = templated;
         this.localizedMessage = localizedMessage;
         this.params = params;
     }
 
+    /**
+     * Creates an import log whose message is a
+     * {@link String#format(String, Object...)} template of {@code params},
+     * only formatted when {@link #getMessage()} is called.
+     *
+     * @since 5.9.2
+     */
+    public static CSVImportLog fromTemplate(long line, Status status,
+            String messageTemplate, String localizedMessage, String... params) {
+        return new CSVImportLog(line, status, messageTemplate, true,
+                localizedMessage, params);
+    }
+
     public long getLine() {
         return line;
     }
@@ -62,9 +90,35 @@ public class CSVImportLog implements Serializable {
     }
 
     public String getMessage() {
+        if (!templated || params == null || params.length == 0) {
+            return message;
+        }
+        // transient field so may become null
+        if (formattedMessage == null) {
+            formattedMessage = String.format(message, (Object[]) params);
+        }
+        return formattedMessage;
+    }
+
+    /**
+     * Returns the raw message, a template when {@link #isTemplated()}.
+     *
+     * @since 5.9.2
+     */
+    public String getMessageTemplate() {
         return message;
     }
 
+    /**
+     * Returns whether the message is a template formatted with the
+     * parameters.
+     *
+     * @since 5.9.2
+     */
+    public boolean isTemplated() {
+        return templated;
+    }
+
     public String getLocalizedMessage() {
         return localizedMessage;
     }
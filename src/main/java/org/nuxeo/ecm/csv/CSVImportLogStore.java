@@ -0,0 +1,1180 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.common.Environment;
+import org.nuxeo.ecm.csv.CSVImportLog.Status;
+import org.nuxeo.runtime.api.Framework;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * Durable storage of the logs of an import, in a directory of the Nuxeo data
+ * directory.
+ * <p>
+ * The directory holds:
+ * <ul>
+ * <li>{@code logs.dat}: the log records, appended in import order,</li>
+ * <li>{@code <STATUS>.idx}: for each status, the line number and record
+ * offset of its logs as fixed-size entries sorted by line number, so that a
+ * page of logs of some statuses in a line range is read without scanning the
+ * records,</li>
+ * <li>{@code <STATUS>.runs}: the positions of the entries starting a new
+ * sorted run of the index, the logs of a sorted or distributed import not
+ * coming in line order; the runs are merged when the store is closed, see
+ * {@link #mergeRuns(Status)}, and a page read meanwhile merges them on the
+ * fly,</li>
+ * <li>{@code unchanged}: the number of lines unchanged since the previous
+ * import, which have no log,</li>
+ * <li>{@code completed}: written when the import is done,</li>
+ * <li>{@code report.csv.gz}: the skipped and error lines, see
+ * {@link #getReport()}.</li>
+ * </ul>
+ * A store is written by a single work at a time, the works of a paused
+ * import reopening it in turn, then only read. An index entry is only
+ * written once its record is flushed, so that a reader of a running import
+ * never finds an entry without its record.
+ * <p>
+ * Stores of imports completed or abandoned for more than
+ * {@value #LOG_TTL_PROPERTY} seconds are deleted by {@link #purge(Set)},
+ * along with the fingerprints of the sources not imported for
+ * {@value #FINGERPRINTS_TTL_PROPERTY} seconds.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportLogStore {
+
+    private static final Log log = LogFactory.getLog(CSVImportLogStore.class);
+
+    /**
+     * Directory of the import log stores, defaults to {@code csvimport} in
+     * the Nuxeo data directory.
+     */
+    public static final String LOG_DIRECTORY_PROPERTY = "nuxeo.csv.importer.logDirectory";
+
+    public static final String LOG_TTL_PROPERTY = "nuxeo.csv.importer.logTTL";
+
+    public static final long DEFAULT_LOG_TTL = TimeUnit.DAYS.toSeconds(7);
+
+    public static final String FINGERPRINTS_TTL_PROPERTY = "nuxeo.csv.importer.fingerprintsTTL";
+
+    public static final long DEFAULT_FINGERPRINTS_TTL = TimeUnit.DAYS.toSeconds(30);
+
+    /**
+     * Minimum interval between two purges of the root directory.
+     */
+    protected static final long PURGE_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    protected static final AtomicLong NEXT_PURGE_TIME = new AtomicLong();
+
+    protected static final String LOGS_FILE = "logs.dat";
+
+    protected static final String INDEX_SUFFIX = ".idx";
+
+    protected static final String RUNS_SUFFIX = ".runs";
+
+    protected static final String COMPLETED_FILE = "completed";
+
+    protected static final String UNCHANGED_FILE = "unchanged";
+
+    protected static final String REPORT_FILE = "report.csv.gz";
+
+    /**
+     * Number of logs read at once when writing the report.
+     */
+    protected static final int REPORT_PAGE_SIZE = 1000;
+
+    /**
+     * Size of an index entry: line number and record offset.
+     */
+    protected static final int INDEX_ENTRY_SIZE = 16;
+
+    /**
+     * Number of index entries read at once by a cursor.
+     */
+    protected static final int INDEX_BUFFER_ENTRIES = 256;
+
+    /**
+     * Initial size of the buffer of the records read for a page of logs,
+     * grown for larger records.
+     */
+    protected static final int LOGS_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Number of index entries kept in memory until their records are
+     * flushed.
+     */
+    protected static final int MAX_PENDING_ENTRIES = 1024;
+
+    /**
+     * Maximum number of runs of an index merged at once, bounding the
+     * buffers of the merge.
+     */
+    protected static final int MAX_MERGED_RUNS = 64;
+
+    protected static final Status[] ALL_STATUSES = Status.values();
+
+    protected final File directory;
+
+    // writer state
+
+    protected DataOutputStream logsOut;
+
+    protected long logsOffset;
+
+    protected DataOutputStream[] indexOuts;
+
+    /**
+     * Line numbers and record offsets of the index entries not written yet,
+     * per status.
+     */
+    protected long[][] pendingLines;
+
+    protected long[][] pendingOffsets;
+
+    protected int[] pendingCounts;
+
+    protected int pendingCount;
+
+    /**
+     * Number of entries and last line written to each index.
+     */
+    protected long[] indexCounts;
+
+    protected long[] lastLines;
+
+    protected long unchangedCount;
+
+    protected boolean unchangedCountChanged;
+
+    protected CSVImportLogStore(File directory) {
+        this.directory = directory;
+    }
+
+    public static File getRootDirectory() {
+        String dir = Framework.getProperty(LOG_DIRECTORY_PROPERTY);
+        if (dir != null) {
+            return new File(dir);
+        }
+        return new File(Environment.getDefault().getData(), "csvimport");
+    }
+
+    protected static File getDirectory(String importId) {
+        return new File(getRootDirectory(), DigestUtils.md5Hex(importId));
+    }
+
+    /**
+     * Creates an empty store for the given import, replacing a previous one.
+     */
+    public static CSVImportLogStore create(String importId)
+            throws IOException {
+        File dir = getDirectory(importId);
+        FileUtils.deleteDirectory(dir);
+        FileUtils.forceMkdir(dir);
+        return new CSVImportLogStore(dir);
+    }
+
+    /**
+     * Returns the store of the given import, or {@code null} if there is
+     * none.
+     */
+    public static CSVImportLogStore open(String importId) {
+        File dir = getDirectory(importId);
+        return dir.isDirectory() ? new CSVImportLogStore(dir) : null;
+    }
+
+    public static void delete(String importId) {
+        FileUtils.deleteQuietly(getDirectory(importId));
+    }
+
+    protected File getIndexFile(Status status) {
+        return new File(directory, status.name() + INDEX_SUFFIX);
+    }
+
+    protected File getRunsFile(Status status) {
+        return new File(directory, status.name() + RUNS_SUFFIX);
+    }
+
+    public boolean isCompleted() {
+        return new File(directory, COMPLETED_FILE).exists();
+    }
+
+    public long getCount(Status status) {
+        return getIndexFile(status).length() / INDEX_ENTRY_SIZE;
+    }
+
+    /**
+     * Returns the number of logs of the given statuses, all if empty.
+     */
+    public long getCount(Status... statuses) {
+        if (statuses == null || statuses.length == 0) {
+            statuses = ALL_STATUSES;
+        }
+        long count = 0;
+        for (Status status : statuses) {
+            count += getCount(status);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of lines unchanged since the previous import.
+     */
+    public long getUnchangedCount() throws IOException {
+        File file = new File(directory, UNCHANGED_FILE);
+        if (!file.exists()) {
+            return 0;
+        }
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            return in.readLong();
+        } catch (EOFException e) {
+            // being written
+            return 0;
+        } finally {
+            in.close();
+        }
+    }
+
+    public CSVImportResult getResult() throws IOException {
+        long success = getCount(Status.SUCCESS);
+        long skipped = getCount(Status.SKIPPED);
+        long error = getCount(Status.ERROR);
+        long unchanged = getUnchangedCount();
+        return new CSVImportResult(success + skipped + error + unchanged,
+                success, skipped, error, unchanged);
+    }
+
+    // ----- writing -----
+
+    protected void openWriters() throws IOException {
+        logsOut = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(new File(directory, LOGS_FILE), true)));
+        logsOffset = new File(directory, LOGS_FILE).length();
+        indexOuts = new DataOutputStream[ALL_STATUSES.length];
+        pendingLines = new long[ALL_STATUSES.length][16];
+        pendingOffsets = new long[ALL_STATUSES.length][16];
+        pendingCounts = new int[ALL_STATUSES.length];
+        pendingCount = 0;
+        indexCounts = new long[ALL_STATUSES.length];
+        lastLines = new long[ALL_STATUSES.length];
+        unchangedCount = getUnchangedCount();
+        for (Status status : ALL_STATUSES) {
+            // a store reopened by a resumed import goes on after its entries
+            File indexFile = getIndexFile(status);
+            indexCounts[status.ordinal()] = indexFile.length()
+                    / INDEX_ENTRY_SIZE;
+            lastLines[status.ordinal()] = getLastLine(indexFile);
+            indexOuts[status.ordinal()] = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(
+                            getIndexFile(status), true)));
+        }
+    }
+
+    /**
+     * Returns the line number of the last entry of an index file.
+     */
+    protected static long getLastLine(File indexFile) throws IOException {
+        long count = indexFile.length() / INDEX_ENTRY_SIZE;
+        if (count == 0) {
+            return 0;
+        }
+        RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+        try {
+            file.seek((count - 1) * INDEX_ENTRY_SIZE);
+            return file.readLong();
+        } finally {
+            file.close();
+        }
+    }
+
+    public synchronized void append(CSVImportLog importLog) throws IOException {
+        if (logsOut == null) {
+            openWriters();
+        }
+        int i = importLog.getStatus().ordinal();
+        int count = pendingCounts[i];
+        if (count == pendingLines[i].length) {
+            pendingLines[i] = Arrays.copyOf(pendingLines[i], count * 2);
+            pendingOffsets[i] = Arrays.copyOf(pendingOffsets[i], count * 2);
+        }
+        pendingLines[i][count] = importLog.getLine();
+        pendingOffsets[i][count] = logsOffset;
+        pendingCounts[i] = count + 1;
+        logsOffset += writeRecord(logsOut, importLog);
+        if (++pendingCount >= MAX_PENDING_ENTRIES) {
+            writePendingEntries();
+        }
+    }
+
+    /**
+     * Counts lines unchanged since the previous import, which have no log.
+     */
+    public synchronized void addUnchanged(long count) throws IOException {
+        if (logsOut == null) {
+            openWriters();
+        }
+        unchangedCount += count;
+        unchangedCountChanged = true;
+    }
+
+    /**
+     * Flushes the records, then writes the index entries pointing to them,
+     * sorted by line number. Entries coming before the last written one
+     * start a new run of the index, recorded before they are written.
+     */
+    protected void writePendingEntries() throws IOException {
+        logsOut.flush();
+        for (int i = 0; i < ALL_STATUSES.length; i++) {
+            int count = pendingCounts[i];
+            if (count == 0) {
+                continue;
+            }
+            long[] lines = pendingLines[i];
+            long[] offsets = pendingOffsets[i];
+            if (!isSorted(lines, count)) {
+                // logs of a sorted import or of retried lines
+                mergeSort(lines, offsets, new long[count], new long[count],
+                        0, count);
+            }
+            if (indexCounts[i] > 0 && lines[0] < lastLines[i]) {
+                appendRunStart(getRunsFile(ALL_STATUSES[i]), indexCounts[i]);
+            }
+            DataOutputStream out = indexOuts[i];
+            for (int j = 0; j < count; j++) {
+                out.writeLong(lines[j]);
+                out.writeLong(offsets[j]);
+            }
+            out.flush();
+            indexCounts[i] += count;
+            lastLines[i] = lines[count - 1];
+            pendingCounts[i] = 0;
+        }
+        pendingCount = 0;
+        if (unchangedCountChanged) {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(
+                    new File(directory, UNCHANGED_FILE)));
+            try {
+                out.writeLong(unchangedCount);
+            } finally {
+                out.close();
+            }
+            unchangedCountChanged = false;
+        }
+    }
+
+    protected static boolean isSorted(long[] lines, int count) {
+        for (int i = 1; i < count; i++) {
+            if (lines[i] < lines[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected static void appendRunStart(File runsFile, long position)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(
+                runsFile, true));
+        try {
+            out.writeLong(position);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Appends all the logs of another store, in their import order, also
+     * counting them in the given registry entry if not {@code null}.
+     */
+    public void appendAll(CSVImportLogStore other, CSVImportRegistry.Entry entry)
+            throws IOException {
+        long otherUnchangedCount = other.getUnchangedCount();
+        if (otherUnchangedCount > 0) {
+            addUnchanged(otherUnchangedCount);
+            if (entry != null) {
+                entry.addUnchanged(otherUnchangedCount);
+            }
+        }
+        File logsFile = new File(other.directory, LOGS_FILE);
+        if (!logsFile.exists()) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(logsFile)));
+        try {
+            for (;;) {
+                CSVImportLog importLog;
+                try {
+                    importLog = readRecord(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                append(importLog);
+                if (entry != null) {
+                    entry.add(importLog);
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Makes the logs appended so far durable.
+     */
+    public synchronized void flush() throws IOException {
+        if (logsOut == null) {
+            return;
+        }
+        writePendingEntries();
+    }
+
+    /**
+     * Closes the writers, merging the runs of the indexes if needed.
+     *
+     * @param completed whether the import is done
+     */
+    public synchronized void close(boolean completed) throws IOException {
+        if (logsOut != null) {
+            try {
+                writePendingEntries();
+                logsOut.close();
+                for (DataOutputStream out : indexOuts) {
+                    out.close();
+                }
+                for (Status status : ALL_STATUSES) {
+                    mergeRuns(status);
+                }
+            } finally {
+                logsOut = null;
+                indexOuts = null;
+                pendingLines = null;
+                pendingOffsets = null;
+            }
+        }
+        if (completed) {
+            new File(directory, COMPLETED_FILE).createNewFile();
+        }
+    }
+
+    protected static int writeRecord(DataOutput out, CSVImportLog importLog)
+            throws IOException {
+        int size = 8 + 1 + 1;
+        out.writeLong(importLog.getLine());
+        out.writeByte(importLog.getStatus().ordinal());
+        out.writeBoolean(importLog.isTemplated());
+        size += writeString(out, importLog.getMessageTemplate());
+        size += writeString(out, importLog.getLocalizedMessage());
+        Object[] params = importLog.getLocalizedMessageParams();
+        int count = params == null ? 0 : params.length;
+        out.writeShort(count);
+        size += 2;
+        for (int i = 0; i < count; i++) {
+            size += writeString(out, (String) params[i]);
+        }
+        return size;
+    }
+
+    protected static CSVImportLog readRecord(DataInput in) throws IOException {
+        long line = in.readLong();
+        Status status = ALL_STATUSES[in.readByte()];
+        boolean templated = in.readBoolean();
+        String message = readString(in);
+        String localizedMessage = readString(in);
+        String[] params = new String[in.readShort()];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = readString(in);
+        }
+        if (templated) {
+            return CSVImportLog.fromTemplate(line, status, message,
+                    localizedMessage, params);
+        }
+        return new CSVImportLog(line, status, message, localizedMessage,
+                params);
+    }
+
+    protected static int writeString(DataOutput out, String s)
+            throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return 4;
+        }
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return 4 + bytes.length;
+    }
+
+    protected static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Merges the sorted runs of an index, by groups of at most
+     * {@link #MAX_MERGED_RUNS} runs until one is left, keeping the record
+     * order for a same line. The merged index replaces the previous one
+     * once complete, so that pages read meanwhile stay sorted.
+     */
+    protected void mergeRuns(Status status) throws IOException {
+        File runsFile = getRunsFile(status);
+        if (!runsFile.exists()) {
+            return;
+        }
+        File indexFile = getIndexFile(status);
+        long count = indexFile.length() / INDEX_ENTRY_SIZE;
+        long[] runs = getRuns(readRunStarts(runsFile), count);
+        File source = indexFile;
+        try {
+            while (runs.length > 1) {
+                File target = File.createTempFile(indexFile.getName(),
+                        ".tmp", directory);
+                long[] targetRuns = new long[(runs.length
+                        + MAX_MERGED_RUNS - 1)
+                        / MAX_MERGED_RUNS];
+                RandomAccessFile in = new RandomAccessFile(source, "r");
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(target)));
+                try {
+                    long written = 0;
+                    for (int i = 0; i < runs.length; i += MAX_MERGED_RUNS) {
+                        targetRuns[i / MAX_MERGED_RUNS] = written;
+                        List<IndexCursor> cursors = new ArrayList<IndexCursor>();
+                        for (int j = i; j < Math.min(i + MAX_MERGED_RUNS,
+                                runs.length); j++) {
+                            cursors.add(new IndexCursor(in, runs[j],
+                                    j + 1 < runs.length ? runs[j + 1] : count));
+                        }
+                        written += merge(cursors, out);
+                    }
+                } finally {
+                    in.close();
+                    out.close();
+                }
+                if (source != indexFile) {
+                    source.delete();
+                }
+                source = target;
+                runs = targetRuns;
+            }
+            if (source != indexFile && !source.renameTo(indexFile)) {
+                // not replacing an existing file on some platforms
+                indexFile.delete();
+                if (!source.renameTo(indexFile)) {
+                    throw new IOException("Unable to write the index "
+                            + indexFile);
+                }
+            }
+        } finally {
+            if (source != indexFile) {
+                source.delete();
+            }
+        }
+        runsFile.delete();
+    }
+
+    /**
+     * Writes the entries of the given sorted runs in line order, the first
+     * run coming first for a same line.
+     *
+     * @return the number of entries written
+     */
+    protected static long merge(List<IndexCursor> cursors, DataOutput out)
+            throws IOException {
+        PriorityQueue<IndexCursor> queue = new PriorityQueue<IndexCursor>(
+                cursors.size(), new Comparator<IndexCursor>() {
+                    @Override
+                    public int compare(IndexCursor c1, IndexCursor c2) {
+                        if (c1.line != c2.line) {
+                            return c1.line < c2.line ? -1 : 1;
+                        }
+                        return c1.start < c2.start ? -1
+                                : (c1.start == c2.start ? 0 : 1);
+                    }
+                });
+        for (IndexCursor cursor : cursors) {
+            if (cursor.read()) {
+                queue.add(cursor);
+            }
+        }
+        long written = 0;
+        IndexCursor cursor;
+        while ((cursor = queue.poll()) != null) {
+            out.writeLong(cursor.line);
+            out.writeLong(cursor.offset);
+            written++;
+            cursor.position++;
+            if (cursor.read()) {
+                queue.add(cursor);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Reads the positions of the entries starting a new run of an index.
+     */
+    protected static long[] readRunStarts(File runsFile) throws IOException {
+        long[] starts = new long[(int) (runsFile.length() / 8)];
+        if (starts.length == 0) {
+            return starts;
+        }
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(runsFile)));
+        } catch (FileNotFoundException e) {
+            // the runs were just merged
+            return new long[0];
+        }
+        try {
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = in.readLong();
+            }
+        } finally {
+            in.close();
+        }
+        return starts;
+    }
+
+    /**
+     * Returns the positions of the first entries of the non-empty runs among
+     * the given number of entries.
+     */
+    protected static long[] getRuns(long[] starts, long count) {
+        long[] runs = new long[starts.length + 1];
+        int n = 0;
+        if (count > 0) {
+            runs[n++] = 0;
+        }
+        for (long start : starts) {
+            if (start > runs[Math.max(0, n - 1)] && start < count) {
+                runs[n++] = start;
+            }
+        }
+        return Arrays.copyOf(runs, n);
+    }
+
+    protected static void mergeSort(long[] lines, long[] offsets,
+            long[] tmpLines, long[] tmpOffsets, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(lines, offsets, tmpLines, tmpOffsets, from, mid);
+        mergeSort(lines, offsets, tmpLines, tmpOffsets, mid, to);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && lines[i] <= lines[j])) {
+                tmpLines[k] = lines[i];
+                tmpOffsets[k] = offsets[i++];
+            } else {
+                tmpLines[k] = lines[j];
+                tmpOffsets[k] = offsets[j++];
+            }
+        }
+        System.arraycopy(tmpLines, from, lines, from, to - from);
+        System.arraycopy(tmpOffsets, from, offsets, from, to - from);
+    }
+
+    // ----- reading -----
+
+    /**
+     * Cursor on the entries of a sorted run of an index, read by pages of
+     * {@link #INDEX_BUFFER_ENTRIES} entries.
+     */
+    protected static class IndexCursor {
+
+        protected final RandomAccessFile file;
+
+        protected final long start;
+
+        protected final long end;
+
+        protected long position;
+
+        protected long line;
+
+        protected long offset;
+
+        protected ByteBuffer buffer;
+
+        protected long bufferPosition;
+
+        protected int bufferCount;
+
+        /**
+         * @param file the index file, shared by the cursors of its runs
+         * @param start the position of the first entry of the run
+         * @param end the position following the last entry of the run
+         */
+        protected IndexCursor(RandomAccessFile file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            position = start;
+        }
+
+        protected long readLine(long index) throws IOException {
+            file.seek(index * INDEX_ENTRY_SIZE);
+            return file.readLong();
+        }
+
+        /**
+         * Returns the position of the first entry with a line greater than or
+         * equal to the given one.
+         */
+        protected long find(long line) throws IOException {
+            long low = start;
+            long high = end;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (readLine(mid) < line) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        protected long getLastLine() throws IOException {
+            return readLine(end - 1);
+        }
+
+        /**
+         * Reads the entry at the current position.
+         *
+         * @return {@code false} if there are no more entries
+         */
+        protected boolean read() throws IOException {
+            if (position >= end) {
+                return false;
+            }
+            if (position < bufferPosition
+                    || position >= bufferPosition + bufferCount) {
+                fillBuffer();
+            }
+            int i = (int) (position - bufferPosition) * INDEX_ENTRY_SIZE;
+            line = buffer.getLong(i);
+            offset = buffer.getLong(i + 8);
+            return true;
+        }
+
+        protected void fillBuffer() throws IOException {
+            if (buffer == null) {
+                buffer = ByteBuffer.allocate(INDEX_BUFFER_ENTRIES
+                        * INDEX_ENTRY_SIZE);
+            }
+            bufferPosition = position;
+            bufferCount = (int) Math.min(INDEX_BUFFER_ENTRIES, end
+                    - position);
+            file.seek(position * INDEX_ENTRY_SIZE);
+            file.readFully(buffer.array(), 0, bufferCount * INDEX_ENTRY_SIZE);
+        }
+    }
+
+    /**
+     * Opens the file of the index of the given status, adding a cursor on
+     * each of its runs.
+     */
+    protected RandomAccessFile openIndex(Status status,
+            List<IndexCursor> cursors) throws IOException {
+        File indexFile = getIndexFile(status);
+        // counted first: the runs of these entries are already recorded, and
+        // any range of an index merged meanwhile is sorted
+        long count = indexFile.length() / INDEX_ENTRY_SIZE;
+        long[] runs = getRuns(readRunStarts(getRunsFile(status)), count);
+        RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+        for (int i = 0; i < runs.length; i++) {
+            cursors.add(new IndexCursor(file, runs[i],
+                    i + 1 < runs.length ? runs[i + 1] : count));
+        }
+        return file;
+    }
+
+    /**
+     * Reader of the records of the logs file through a buffer, the records of
+     * a page of logs mostly being close to each other.
+     */
+    protected static class LogsReader {
+
+        protected final RandomAccessFile file;
+
+        protected byte[] buffer = new byte[LOGS_BUFFER_SIZE];
+
+        protected long bufferOffset;
+
+        protected int bufferLength;
+
+        protected LogsReader(File file) throws IOException {
+            this.file = new RandomAccessFile(file, "r");
+        }
+
+        /**
+         * Reads the record at the given offset.
+         *
+         * @throws EOFException if the record is not entirely written
+         */
+        protected CSVImportLog read(long offset) throws IOException {
+            for (;;) {
+                if (offset >= bufferOffset
+                        && offset < bufferOffset + bufferLength) {
+                    int start = (int) (offset - bufferOffset);
+                    try {
+                        return readRecord(new DataInputStream(
+                                new ByteArrayInputStream(buffer, start,
+                                        bufferLength - start)));
+                    } catch (EOFException e) {
+                        if (start == 0) {
+                            if (bufferLength < buffer.length) {
+                                // end of the file
+                                throw e;
+                            }
+                            // record larger than the buffer
+                            buffer = new byte[buffer.length * 2];
+                        }
+                    }
+                }
+                fillBuffer(offset);
+            }
+        }
+
+        protected void fillBuffer(long offset) throws IOException {
+            file.seek(offset);
+            bufferOffset = offset;
+            bufferLength = 0;
+            int n;
+            while (bufferLength < buffer.length
+                    && (n = file.read(buffer, bufferLength, buffer.length
+                            - bufferLength)) > 0) {
+                bufferLength += n;
+            }
+            if (bufferLength == 0) {
+                throw new EOFException();
+            }
+        }
+
+        protected void close() {
+            IOUtils.closeQuietly(file);
+        }
+    }
+
+    /**
+     * Returns a page of logs, ordered by line number.
+     *
+     * @param statuses the statuses of the logs, all if empty
+     * @param fromLine the first line, inclusive
+     * @param toLine the last line, inclusive
+     * @param offset the number of matching logs to skip
+     * @param limit the maximum number of logs, {@code -1} for no limit
+     */
+    public List<CSVImportLog> getLogs(Status[] statuses, long fromLine,
+            long toLine, long offset, int limit) throws IOException {
+        if (statuses == null || statuses.length == 0) {
+            statuses = ALL_STATUSES;
+        }
+        List<IndexCursor> cursors = new ArrayList<IndexCursor>(
+                statuses.length);
+        List<RandomAccessFile> indexFiles = new ArrayList<RandomAccessFile>(
+                statuses.length);
+        LogsReader logs = null;
+        try {
+            for (Status status : statuses) {
+                if (getIndexFile(status).length() > 0) {
+                    indexFiles.add(openIndex(status, cursors));
+                }
+            }
+            for (IndexCursor cursor : cursors) {
+                cursor.position = cursor.find(fromLine);
+            }
+            if (cursors.size() == 1) {
+                // skip directly in the index
+                cursors.get(0).position += offset;
+                offset = 0;
+            } else if (offset > 0) {
+                offset = skip(cursors, fromLine, toLine, offset);
+            }
+            List<CSVImportLog> importLogs = new ArrayList<CSVImportLog>();
+            File logsFile = new File(directory, LOGS_FILE);
+            if (!logsFile.exists()) {
+                return importLogs;
+            }
+            logs = new LogsReader(logsFile);
+            while (limit < 0 || importLogs.size() < limit) {
+                // next entry in line order among the indexes
+                IndexCursor next = null;
+                for (IndexCursor cursor : cursors) {
+                    if (cursor.read() && cursor.line <= toLine
+                            && (next == null || cursor.line < next.line)) {
+                        next = cursor;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                next.position++;
+                if (offset > 0) {
+                    offset--;
+                    continue;
+                }
+                try {
+                    importLogs.add(logs.read(next.offset));
+                } catch (EOFException e) {
+                    // record not entirely written by an interrupted import
+                    break;
+                }
+            }
+            return importLogs;
+        } finally {
+            for (RandomAccessFile indexFile : indexFiles) {
+                IOUtils.closeQuietly(indexFile);
+            }
+            if (logs != null) {
+                logs.close();
+            }
+        }
+    }
+
+    /**
+     * Moves the cursors, positioned on {@code fromLine}, to the greatest line
+     * having at most {@code offset} matching logs before it, found by binary
+     * search on the line number.
+     *
+     * @return the number of logs still to skip, all on that line
+     */
+    protected static long skip(List<IndexCursor> cursors, long fromLine,
+            long toLine, long offset) throws IOException {
+        long maxLine = fromLine;
+        for (IndexCursor cursor : cursors) {
+            if (cursor.end > cursor.start) {
+                maxLine = Math.max(maxLine, cursor.getLastLine());
+            }
+        }
+        long low = fromLine;
+        long high = Math.min(maxLine, toLine);
+        while (low < high) {
+            long mid = low + (high - low + 1) / 2;
+            if (countBefore(cursors, mid) <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        long skipped = 0;
+        for (IndexCursor cursor : cursors) {
+            long position = cursor.find(low);
+            skipped += position - cursor.position;
+            cursor.position = position;
+        }
+        return offset - skipped;
+    }
+
+    /**
+     * Returns the number of entries between the cursor positions and the
+     * given line, excluded.
+     */
+    protected static long countBefore(List<IndexCursor> cursors, long line)
+            throws IOException {
+        long count = 0;
+        for (IndexCursor cursor : cursors) {
+            count += cursor.find(line) - cursor.position;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the gzipped CSV report of the skipped and error lines of a
+     * completed import, written the first time page by page.
+     * <p>
+     * Concurrent first downloads, possibly through different store instances
+     * or nodes, each write their own temporary file then rename it.
+     */
+    public File getReport() throws IOException {
+        File file = new File(directory, REPORT_FILE);
+        if (file.exists()) {
+            return file;
+        }
+        Status[] statuses = new Status[] { Status.SKIPPED, Status.ERROR };
+        File tmp = File.createTempFile(REPORT_FILE, ".tmp", directory);
+        CSVWriter writer = new CSVWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(tmp)), "UTF-8"));
+        try {
+            writer.writeNext(new String[] { "line", "status", "message" });
+            long offset = 0;
+            for (;;) {
+                List<CSVImportLog> page = getLogs(statuses, 0, Long.MAX_VALUE,
+                        offset, REPORT_PAGE_SIZE);
+                for (CSVImportLog importLog : page) {
+                    writer.writeNext(new String[] {
+                            Long.toString(importLog.getLine()),
+                            importLog.getStatus().name(),
+                            importLog.getMessage() });
+                }
+                if (page.size() < REPORT_PAGE_SIZE) {
+                    break;
+                }
+                offset += page.size();
+            }
+        } catch (IOException | RuntimeException e) {
+            writer.close();
+            tmp.delete();
+            throw e;
+        }
+        writer.close();
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            // written meanwhile by a concurrent download
+            if (!file.exists()) {
+                throw new IOException("Unable to write the report " + file);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Returns all the logs, ordered by line number.
+     */
+    public List<CSVImportLog> getLogs() throws IOException {
+        return getLogs(null, 0, Long.MAX_VALUE, 0, -1);
+    }
+
+    // ----- purge -----
+
+    protected static long getTTL(String property, long defaultTTL) {
+        String value = Framework.getProperty(property);
+        long ttl = defaultTTL;
+        if (value != null) {
+            try {
+                ttl = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn(String.format("Invalid value '%s' of %s, using %d",
+                        value, property, Long.valueOf(defaultTTL)));
+            }
+        }
+        return TimeUnit.SECONDS.toMillis(ttl);
+    }
+
+    /**
+     * Deletes the stores of the imports completed or abandoned for longer
+     * than their time to live, the expired fingerprints and the files left
+     * by interrupted imports, at most once every {@link #PURGE_INTERVAL}.
+     *
+     * @param runningImportIds the imports still running on this node, whose
+     *            stores are kept
+     */
+    public static void purge(Set<String> runningImportIds) {
+        long now = System.currentTimeMillis();
+        long next = NEXT_PURGE_TIME.get();
+        if (now < next
+                || !NEXT_PURGE_TIME.compareAndSet(next, now + PURGE_INTERVAL)) {
+            return;
+        }
+        File[] files = getRootDirectory().listFiles();
+        if (files == null) {
+            return;
+        }
+        Set<String> runningNames = new HashSet<String>();
+        for (String importId : runningImportIds) {
+            runningNames.add(DigestUtils.md5Hex(importId));
+        }
+        long logLimit = now - getTTL(LOG_TTL_PROPERTY, DEFAULT_LOG_TTL);
+        long fingerprintsLimit = now
+                - getTTL(FINGERPRINTS_TTL_PROPERTY, DEFAULT_FINGERPRINTS_TTL);
+        for (File file : files) {
+            if (!file.isDirectory()) {
+                continue;
+            }
+            String name = file.getName();
+            if (CSVImportDelta.FINGERPRINTS_DIRECTORY.equals(name)) {
+                deleteFilesBefore(file, fingerprintsLimit);
+            } else if (CSVImportIdFile.INDEXING_DIRECTORY.equals(name)
+                    || CSVImportChunk.CHUNKS_DIRECTORY.equals(name)
+                    || CSVImportControl.CONTROLS_DIRECTORY.equals(name)) {
+                deleteFilesBefore(file, logLimit);
+            } else if (!runningNames.contains(name)
+                    && getLastModified(file) < logLimit) {
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    /**
+     * Returns when a store was completed, or last written if it was not.
+     */
+    protected static long getLastModified(File dir) {
+        File completed = new File(dir, COMPLETED_FILE);
+        if (completed.exists()) {
+            return completed.lastModified();
+        }
+        return Math.max(dir.lastModified(),
+                new File(dir, LOGS_FILE).lastModified());
+    }
+
+    protected static void deleteFilesBefore(File dir, long limit) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.lastModified() < limit) {
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+}
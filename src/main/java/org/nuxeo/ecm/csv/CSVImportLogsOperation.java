@@ -0,0 +1,82 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.nuxeo.ecm.automation.core.annotations.Context;
+import org.nuxeo.ecm.automation.core.annotations.Operation;
+import org.nuxeo.ecm.automation.core.annotations.OperationMethod;
+import org.nuxeo.ecm.automation.core.annotations.Param;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentSecurityException;
+import org.nuxeo.ecm.csv.CSVImportLog.Status;
+
+/**
+ * Returns a page of the logs of an import as JSON, see
+ * {@link CSVImporter#canReadImport(CoreSession, String)} for who can read
+ * them.
+ *
+ * @since 5.9.2
+ */
+@Operation(id = CSVImportLogsOperation.ID, category = "Services", label = "CSV Import Logs", description = "Returns a page of the logs of a CSV import as JSON, ordered by line. The statuses are comma separated, all when empty.")
+public class CSVImportLogsOperation {
+
+    public static final String ID = "CSV.ImportLogs";
+
+    @Context
+    protected CoreSession session;
+
+    @Context
+    protected CSVImporter csvImporter;
+
+    @Param(name = "importId")
+    protected String importId;
+
+    @Param(name = "statuses", required = false)
+    protected String statuses;
+
+    @Param(name = "offset", required = false)
+    protected int offset = 0;
+
+    @Param(name = "limit", required = false)
+    protected int limit = 100;
+
+    @OperationMethod
+    public Blob run() throws ClientException {
+        if (!csvImporter.canReadImport(session, importId)) {
+            throw new DocumentSecurityException("Cannot read the import: "
+                    + importId);
+        }
+        String[] names = StringUtils.split(StringUtils.defaultString(statuses),
+                ", ");
+        Status[] status = new Status[names.length];
+        for (int i = 0; i < names.length; i++) {
+            status[i] = Status.valueOf(names[i].toUpperCase());
+        }
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId,
+                status, offset, limit);
+        long total = csvImporter.getImportLogCount(importId, status);
+        return CSVImportJson.toBlob(CSVImportJson.importLogs(importId, total,
+                importLogs));
+    }
+
+}
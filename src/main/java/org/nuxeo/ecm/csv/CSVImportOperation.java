@@ -0,0 +1,134 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.nuxeo.ecm.automation.core.annotations.Context;
+import org.nuxeo.ecm.automation.core.annotations.Operation;
+import org.nuxeo.ecm.automation.core.annotations.OperationMethod;
+import org.nuxeo.ecm.automation.core.annotations.Param;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.csv.CSVImporterOptions.DuplicateLinePolicy;
+
+/**
+ * Launches the import of the input CSV blob, for clients not going through
+ * the import dialog.
+ * <p>
+ * The blob is streamed once to a temporary file, read by the import work and
+ * deleted once the import is over.
+ * Returns the import id as JSON, to follow the import with
+ * {@link CSVImportStatusOperation}.
+ *
+ * @since 5.9.2
+ */
+@Operation(id = CSVImportOperation.ID, category = "Services", label = "Import CSV", description = "Launches the asynchronous import of the input CSV file in the document at the given path, and returns the import id as JSON.")
+public class CSVImportOperation {
+
+    public static final String ID = "CSV.Import";
+
+    @Context
+    protected CoreSession session;
+
+    @Context
+    protected CSVImporter csvImporter;
+
+    @Param(name = "path")
+    protected String path;
+
+    @Param(name = "sendEmail", required = false)
+    protected boolean sendEmail = false;
+
+    @Param(name = "dateFormat", required = false)
+    protected String dateFormat;
+
+    @Param(name = "listSeparatorRegex", required = false)
+    protected String listSeparatorRegex;
+
+    @Param(name = "updateExisting", required = false)
+    protected boolean updateExisting = true;
+
+    @Param(name = "checkAllowedSubTypes", required = false)
+    protected boolean checkAllowedSubTypes = true;
+
+    @Param(name = "batchSize", required = false)
+    protected int batchSize = 0;
+
+    @Param(name = "distributedChunkSize", required = false)
+    protected int distributedChunkSize = 0;
+
+    @Param(name = "localChunks", required = false)
+    protected boolean localChunks = false;
+
+    @Param(name = "createMissingParents", required = false)
+    protected boolean createMissingParents = false;
+
+    @Param(name = "sortByPathDepth", required = false)
+    protected boolean sortByPathDepth = false;
+
+    @Param(name = "duplicateLinePolicy", required = false, widget = "Option", values = {
+            "NONE", "SKIP", "MERGE" })
+    protected String duplicateLinePolicy = "NONE";
+
+    @Param(name = "maxLinesPerSecond", required = false)
+    protected int maxLinesPerSecond = 0;
+
+    @Param(name = "deltaImport", required = false)
+    protected boolean deltaImport = false;
+
+    @Param(name = "bulkMode", required = false)
+    protected boolean bulkMode = false;
+
+    @Param(name = "deferredIndexing", required = false)
+    protected boolean deferredIndexing = false;
+
+    @OperationMethod
+    public Blob run(Blob blob) throws IOException {
+        String filename = blob.getFilename() == null ? "import.csv"
+                : blob.getFilename();
+        File csvFile = File.createTempFile("csvimport", ".csv");
+        blob.transferTo(csvFile);
+        String id = csvImporter.launchImport(session, path, csvFile,
+                filename, buildOptions());
+        return CSVImportJson.toBlob(CSVImportJson.importId(id));
+    }
+
+    protected CSVImporterOptions buildOptions() {
+        CSVImporterOptions.Builder builder = new CSVImporterOptions.Builder().sendEmail(
+                sendEmail).updateExisting(updateExisting).checkAllowedSubTypes(
+                checkAllowedSubTypes).distributedChunkSize(
+                distributedChunkSize).localChunks(localChunks).createMissingParents(
+                createMissingParents).sortByPathDepth(sortByPathDepth).duplicateLinePolicy(
+                DuplicateLinePolicy.valueOf(duplicateLinePolicy)).maxLinesPerSecond(
+                maxLinesPerSecond).deltaImport(deltaImport).bulkMode(bulkMode).deferredIndexing(
+                deferredIndexing).deleteCSVFile(true);
+        if (dateFormat != null) {
+            builder.dateFormat(dateFormat);
+        }
+        if (listSeparatorRegex != null) {
+            builder.listSeparatorRegex(listSeparatorRegex);
+        }
+        if (batchSize > 0) {
+            builder.batchSize(batchSize);
+        }
+        return builder.build();
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+/**
+ * Compact set of document paths, storing only a 64-bit fingerprint of each
+ * path in an open addressing table of primitive longs.
+ * <p>
+ * Two distinct paths may share a fingerprint, with a probability of about
+ * n&sup2;/2<sup>65</sup> for n paths (less than one in ten thousand for ten
+ * million paths).
+ *
+ * @since 5.9.2
+ */
+public class CSVImportPathSet {
+
+    protected static final float LOAD_FACTOR = 0.5f;
+
+    protected static final int INITIAL_CAPACITY = 16;
+
+    protected long[] table;
+
+    protected int size;
+
+    /**
+     * Creates an empty set, doubling its table as paths are added so that
+     * its memory follows the number of paths actually imported.
+     */
+    public CSVImportPathSet() {
+        table = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Computes a 64-bit fingerprint of a string, never {@code 0}.
+     */
+    public static long fingerprint(String s) {
+        // FNV-1a followed by a MurmurHash3 finalizer
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    public boolean contains(String path) {
+        long fingerprint = fingerprint(path);
+        int mask = table.length - 1;
+        for (int i = (int) fingerprint & mask;; i = (i + 1) & mask) {
+            long value = table[i];
+            if (value == 0) {
+                return false;
+            }
+            if (value == fingerprint) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Adds a path to the set.
+     *
+     * @return {@code true} if the path was not already in the set
+     */
+    public boolean add(String path) {
+        if (size + 1 > table.length * LOAD_FACTOR) {
+            rehash(table.length << 1);
+        }
+        if (insert(table, fingerprint(path))) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a path from the set.
+     *
+     * @return {@code true} if the path was in the set
+     */
+    public boolean remove(String path) {
+        long fingerprint = fingerprint(path);
+        int mask = table.length - 1;
+        int hole = (int) fingerprint & mask;
+        for (;; hole = (hole + 1) & mask) {
+            long value = table[hole];
+            if (value == 0) {
+                return false;
+            }
+            if (value == fingerprint) {
+                break;
+            }
+        }
+        // move back the next values of the probe sequence that can no longer
+        // be reached through the hole
+        for (int i = (hole + 1) & mask;; i = (i + 1) & mask) {
+            long value = table[i];
+            if (value == 0) {
+                break;
+            }
+            int home = (int) value & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table[hole] = value;
+                hole = i;
+            }
+        }
+        table[hole] = 0;
+        size--;
+        return true;
+    }
+
+    protected static boolean insert(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        for (int i = (int) fingerprint & mask;; i = (i + 1) & mask) {
+            long value = table[i];
+            if (value == 0) {
+                table[i] = fingerprint;
+                return true;
+            }
+            if (value == fingerprint) {
+                return false;
+            }
+        }
+    }
+
+    protected void rehash(int capacity) {
+        long[] newTable = new long[capacity];
+        for (long value : table) {
+            if (value != 0) {
+                insert(newTable, value);
+            }
+        }
+        table = newTable;
+    }
+
+    public int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.nuxeo.common.utils.Path;
+
+/**
+ * Trie of the folder paths known to exist during an import, with their
+ * document type.
+ * <p>
+ * Each path segment is stored once whatever the number of descendants, so
+ * that deep trees with many leaves stay cheap to keep in memory.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportPathTrie {
+
+    protected static class Node {
+
+        protected String type;
+
+        protected Map<String, Node> children;
+
+        protected Node getChild(String segment) {
+            return children == null ? null : children.get(segment);
+        }
+
+        protected Node getOrCreateChild(String segment) {
+            if (children == null) {
+                children = new HashMap<String, Node>(4);
+            }
+            Node child = children.get(segment);
+            if (child == null) {
+                child = new Node();
+                children.put(segment, child);
+            }
+            return child;
+        }
+    }
+
+    protected Node root = new Node();
+
+    protected int size;
+
+    /**
+     * Returns the type of the folder at the given path, or {@code null} if it
+     * is not known.
+     */
+    public String getType(String path) {
+        Node node = root;
+        for (String segment : new Path(path).segments()) {
+            node = node.getChild(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.type;
+    }
+
+    public boolean contains(String path) {
+        return getType(path) != null;
+    }
+
+    /**
+     * Records that the folder at the given path exists with the given type.
+     */
+    public void put(String path, String type) {
+        Node node = root;
+        for (String segment : new Path(path).segments()) {
+            node = node.getOrCreateChild(segment);
+        }
+        if (node.type == null) {
+            size++;
+        }
+        node.type = type;
+    }
+
+    /**
+     * Returns the number of known folders.
+     */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = new Node();
+        size = 0;
+    }
+
+}
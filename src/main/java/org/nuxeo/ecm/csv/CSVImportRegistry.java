@@ -0,0 +1,259 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Counters and most recent logs of the imports of this node, so that polling
+ * an import never needs to look up its work.
+ * <p>
+ * Entries of completed imports are evicted after
+ * {@value #COMPLETED_IMPORT_TTL_PROPERTY} seconds, the eviction also purging
+ * the expired files of {@link CSVImportLogStore#getRootDirectory()}.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportRegistry {
+
+    private static final Log log = LogFactory.getLog(CSVImportRegistry.class);
+
+    public static final String COMPLETED_IMPORT_TTL_PROPERTY = "nuxeo.csv.importer.completedImportTTL";
+
+    public static final long DEFAULT_COMPLETED_IMPORT_TTL = 3600;
+
+    /**
+     * Number of most recent logs kept per import.
+     */
+    public static final int RECENT_LOGS_SIZE = 100;
+
+    protected static final ConcurrentMap<String, Entry> ENTRIES = new ConcurrentHashMap<String, Entry>();
+
+    public static class Entry {
+
+        protected final AtomicLong successLineCount = new AtomicLong();
+
+        protected final AtomicLong skippedLineCount = new AtomicLong();
+
+        protected final AtomicLong errorLineCount = new AtomicLong();
+
+        protected final AtomicLong unchangedLineCount = new AtomicLong();
+
+        /**
+         * Ring buffer of the most recent logs.
+         */
+        protected final CSVImportLog[] recentLogs = new CSVImportLog[RECENT_LOGS_SIZE];
+
+        protected long logCount;
+
+        protected volatile long completedTime;
+
+        protected volatile String username;
+
+        /**
+         * Counters of the chunks of a running distributed import, read from
+         * their log stores.
+         */
+        protected volatile CSVImportResult chunksResult;
+
+        /**
+         * Returns the name of the user who started the import.
+         */
+        public String getUsername() {
+            return username;
+        }
+
+        public void add(CSVImportLog importLog) {
+            if (importLog.isSuccess()) {
+                successLineCount.incrementAndGet();
+            } else if (importLog.isSkipped()) {
+                skippedLineCount.incrementAndGet();
+            } else if (importLog.isError()) {
+                errorLineCount.incrementAndGet();
+            }
+            synchronized (recentLogs) {
+                recentLogs[(int) (logCount++ % RECENT_LOGS_SIZE)] = importLog;
+            }
+        }
+
+        /**
+         * Counts lines unchanged since the previous import, which have no
+         * log.
+         */
+        public void addUnchanged(long count) {
+            unchangedLineCount.addAndGet(count);
+        }
+
+        /**
+         * Returns the last {@code max} logs, oldest first, at most
+         * {@link CSVImportRegistry#RECENT_LOGS_SIZE} of them.
+         */
+        public List<CSVImportLog> getLastLogs(int max) {
+            synchronized (recentLogs) {
+                int count = (int) Math.min(Math.min(max, RECENT_LOGS_SIZE),
+                        logCount);
+                List<CSVImportLog> logs = new ArrayList<CSVImportLog>(count);
+                for (long i = logCount - count; i < logCount; i++) {
+                    logs.add(recentLogs[(int) (i % RECENT_LOGS_SIZE)]);
+                }
+                return logs;
+            }
+        }
+
+        /**
+         * Sets the counters of the chunks of a distributed import, added to
+         * the ones of the entry until their logs are merged, see
+         * {@link CSVImportLogStore#appendAll(CSVImportLogStore, Entry)}.
+         */
+        public void setChunksResult(CSVImportResult chunksResult) {
+            this.chunksResult = chunksResult;
+        }
+
+        public CSVImportResult getResult() {
+            long success = successLineCount.get();
+            long skipped = skippedLineCount.get();
+            long error = errorLineCount.get();
+            long unchanged = unchangedLineCount.get();
+            CSVImportResult chunks = chunksResult;
+            if (chunks != null) {
+                success += chunks.getSuccessLineCount();
+                skipped += chunks.getSkippedLineCount();
+                error += chunks.getErrorLineCount();
+                unchanged += chunks.getUnchangedLineCount();
+            }
+            return new CSVImportResult(success + skipped + error + unchanged,
+                    success, skipped, error, unchanged);
+        }
+
+        public boolean isComplete() {
+            return completedTime != 0;
+        }
+
+        protected boolean isExpired(long now) {
+            return completedTime != 0
+                    && now - completedTime > TimeUnit.SECONDS.toMillis(getCompletedImportTTL());
+        }
+    }
+
+    private CSVImportRegistry() {
+        // utility class
+    }
+
+    protected static long getCompletedImportTTL() {
+        String value = Framework.getProperty(COMPLETED_IMPORT_TTL_PROPERTY);
+        if (value == null) {
+            return DEFAULT_COMPLETED_IMPORT_TTL;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn(String.format("Invalid value '%s' of %s, using %d",
+                    value, COMPLETED_IMPORT_TTL_PROPERTY,
+                    Long.valueOf(DEFAULT_COMPLETED_IMPORT_TTL)));
+            return DEFAULT_COMPLETED_IMPORT_TTL;
+        }
+    }
+
+    /**
+     * Starts a new entry for the given import, forgetting a previous run.
+     *
+     * @param username the user who started the import
+     */
+    public static Entry start(String importId, String username) {
+        Entry entry = new Entry();
+        entry.username = username;
+        ENTRIES.put(importId, entry);
+        // requests to a previous run
+        CSVImportControl.clear(importId);
+        return entry;
+    }
+
+    /**
+     * Returns the entry of the given import, creating it if needed.
+     */
+    public static Entry get(String importId) {
+        Entry entry = ENTRIES.get(importId);
+        if (entry == null) {
+            entry = new Entry();
+            Entry previous = ENTRIES.putIfAbsent(importId, entry);
+            if (previous != null) {
+                entry = previous;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the entry of the given import, or {@code null} if unknown on
+     * this node or expired.
+     */
+    public static Entry peek(String importId) {
+        Entry entry = ENTRIES.get(importId);
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            remove(importId);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Marks the given import as completed, and evicts the expired ones.
+     */
+    public static void complete(String importId) {
+        get(importId).completedTime = System.currentTimeMillis();
+        purge();
+    }
+
+    protected static void purge() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> it = ENTRIES.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> entry = it.next();
+            if (entry.getValue().isExpired(now)) {
+                it.remove();
+                CSVImportControl.remove(entry.getKey());
+            }
+        }
+        Set<String> running = new HashSet<String>();
+        for (Map.Entry<String, Entry> entry : ENTRIES.entrySet()) {
+            if (!entry.getValue().isComplete()) {
+                running.add(entry.getKey());
+            }
+        }
+        CSVImportLogStore.purge(running);
+    }
+
+    protected static void remove(String importId) {
+        ENTRIES.remove(importId);
+        CSVImportControl.remove(importId);
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.IOException;
+
+import org.nuxeo.ecm.automation.core.annotations.Context;
+import org.nuxeo.ecm.automation.core.annotations.Operation;
+import org.nuxeo.ecm.automation.core.annotations.OperationMethod;
+import org.nuxeo.ecm.automation.core.annotations.Param;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentSecurityException;
+import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
+
+/**
+ * Returns the gzipped CSV report of the skipped and error lines of a
+ * completed import.
+ *
+ * @since 5.9.2
+ */
+@Operation(id = CSVImportReportOperation.ID, category = "Services", label = "CSV Import Report", description = "Returns the gzipped CSV report of the skipped and error lines of a completed CSV import.")
+public class CSVImportReportOperation {
+
+    public static final String ID = "CSV.ImportReport";
+
+    @Context
+    protected CoreSession session;
+
+    @Context
+    protected CSVImporter csvImporter;
+
+    @Param(name = "importId")
+    protected String importId;
+
+    @OperationMethod
+    public Blob run() throws IOException, ClientException {
+        if (!csvImporter.canReadImport(session, importId)) {
+            throw new DocumentSecurityException("Cannot read the import: "
+                    + importId);
+        }
+        Blob report = getReport(importId);
+        if (report == null) {
+            throw new ClientException("No completed import: " + importId);
+        }
+        return report;
+    }
+
+    /**
+     * Returns the report of the given import, or {@code null} if it is not
+     * completed.
+     */
+    public static Blob getReport(String importId) throws IOException {
+        CSVImportLogStore store = CSVImportLogStore.open(importId);
+        if (store == null || !store.isCompleted()) {
+            return null;
+        }
+        FileBlob blob = new FileBlob(store.getReport(), "application/x-gzip");
+        blob.setFilename("csv-import-report.csv.gz");
+        return blob;
+    }
+
+}
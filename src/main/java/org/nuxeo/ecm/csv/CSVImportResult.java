@@ -33,6 +33,8 @@ public class CSVImportResult {
 
     protected final long errorLineCount;
 
+    protected final long unchangedLineCount;
+
     public static final CSVImportResult fromImportLogs(List<CSVImportLog> importLogs) {
         long totalLineCount = importLogs.size();
         long successLineCount = 0;
@@ -53,10 +55,23 @@ public class CSVImportResult {
 
     public CSVImportResult(long totalLineCount, long successLineCount,
             long skippedLineCount, long errorLineCount) {
+        this(totalLineCount, successLineCount, skippedLineCount,
+                errorLineCount, 0);
+    }
+
+    /**
+     * @param unchangedLineCount the number of lines skipped without a log by
+     *            a delta or snapshot import, included in the total
+     * @since 5.9.2
+     */
+    public CSVImportResult(long totalLineCount, long successLineCount,
+            long skippedLineCount, long errorLineCount,
+            long unchangedLineCount) {
         this.totalLineCount = totalLineCount;
         this.successLineCount = successLineCount;
         this.skippedLineCount = skippedLineCount;
         this.errorLineCount = errorLineCount;
+        this.unchangedLineCount = unchangedLineCount;
     }
 
     public long getTotalLineCount() {
@@ -74,4 +89,14 @@ public class CSVImportResult {
     public long getErrorLineCount() {
         return errorLineCount;
     }
+
+    /**
+     * Returns the number of lines unchanged since the previous import, not
+     * logged one by one.
+     *
+     * @since 5.9.2
+     */
+    public long getUnchangedLineCount() {
+        return unchangedLineCount;
+    }
 }
@@ -0,0 +1,257 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Reusable buffer of the converted values of a line, with one slot per
+ * column of a {@link CSVImportColumn} projection.
+ * <p>
+ * Numbers and booleans are stored in primitive slots, so converting a line
+ * allocates neither a map nor boxed values. The row is also a read-only
+ * {@code Map<String, Serializable>} view of its values by property xpath, as
+ * expected by {@link CSVImporterDocumentFactory}, values being boxed when
+ * read. A factory can instead read the slots of a row directly, see
+ * {@link #getSlot(int)} and {@link #getColumnIndex(String)}.
+ * <p>
+ * The row is reused for the next line of the same type, so it is only given
+ * to the factories not keeping the values after their call, see
+ * {@link CSVImporterRowDocumentFactory}; the other ones are given a copy, see
+ * {@link #toMap()}.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportRow extends AbstractMap<String, Serializable> {
+
+    protected final CSVImportColumn[] columns;
+
+    protected final long[] longs;
+
+    protected final double[] doubles;
+
+    protected final Serializable[] objects;
+
+    /**
+     * Slots having a value, in column order.
+     */
+    protected final int[] setSlots;
+
+    protected final boolean[] set;
+
+    /**
+     * Slot of each property xpath.
+     */
+    protected final Map<String, Integer> slots;
+
+    protected int size;
+
+    public CSVImportRow(CSVImportColumn[] columns) {
+        this.columns = columns;
+        longs = new long[columns.length];
+        doubles = new double[columns.length];
+        objects = new Serializable[columns.length];
+        setSlots = new int[columns.length];
+        set = new boolean[columns.length];
+        slots = new HashMap<String, Integer>(columns.length * 2);
+        for (int slot = 0; slot < columns.length; slot++) {
+            slots.put(columns[slot].getHeader(), Integer.valueOf(slot));
+        }
+    }
+
+    public CSVImportColumn[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the property xpath of a slot.
+     */
+    public String getXPath(int slot) {
+        return columns[slot].getHeader();
+    }
+
+    /**
+     * Returns the slot of a property xpath, or {@code -1} if no column
+     * targets it.
+     */
+    public int getColumnIndex(String xpath) {
+        Integer slot = slots.get(xpath);
+        return slot == null ? -1 : slot.intValue();
+    }
+
+    /**
+     * Forgets the values of the previous line.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            objects[setSlots[i]] = null;
+            set[setSlots[i]] = false;
+        }
+        size = 0;
+    }
+
+    protected void markSet(int slot) {
+        setSlots[size++] = slot;
+        set[slot] = true;
+    }
+
+    /**
+     * Returns whether a slot has a value for the current line.
+     */
+    public boolean hasValue(int slot) {
+        return set[slot];
+    }
+
+    public void setLong(int slot, long value) {
+        longs[slot] = value;
+        markSet(slot);
+    }
+
+    public void setDouble(int slot, double value) {
+        doubles[slot] = value;
+        markSet(slot);
+    }
+
+    public void setBoolean(int slot, boolean value) {
+        longs[slot] = value ? 1 : 0;
+        markSet(slot);
+    }
+
+    public void setObject(int slot, Serializable value) {
+        objects[slot] = value;
+        markSet(slot);
+    }
+
+    /**
+     * Returns the number of slots having a value.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the slot of the {@code i}-th value, in column order, for
+     * {@code i} lower than {@link #size()}.
+     */
+    public int getSlot(int i) {
+        return setSlots[i];
+    }
+
+    public long getLong(int slot) {
+        return longs[slot];
+    }
+
+    public double getDouble(int slot) {
+        return doubles[slot];
+    }
+
+    public boolean getBoolean(int slot) {
+        return longs[slot] != 0;
+    }
+
+    public Serializable getObject(int slot) {
+        return objects[slot];
+    }
+
+    /**
+     * Returns the value of a slot, boxed if needed.
+     */
+    public Serializable getValue(int slot) {
+        switch (columns[slot].getKind()) {
+        case INTEGER:
+            return Integer.valueOf((int) longs[slot]);
+        case LONG:
+            return Long.valueOf(longs[slot]);
+        case DOUBLE:
+            return Double.valueOf(doubles[slot]);
+        case BOOLEAN:
+            return Boolean.valueOf(longs[slot] != 0);
+        default:
+            return objects[slot];
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Integer slot = slots.get(key);
+        return slot != null && set[slot.intValue()];
+    }
+
+    @Override
+    public Serializable get(Object key) {
+        Integer slot = slots.get(key);
+        return slot == null || !set[slot.intValue()] ? null
+                : getValue(slot.intValue());
+    }
+
+    /**
+     * Returns a copy of the values, which can be kept after the row is
+     * reused.
+     */
+    public Map<String, Serializable> toMap() {
+        return new HashMap<String, Serializable>(this);
+    }
+
+    @Override
+    public Set<Map.Entry<String, Serializable>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Serializable>>() {
+            @Override
+            public Iterator<Map.Entry<String, Serializable>> iterator() {
+                return new Iterator<Map.Entry<String, Serializable>>() {
+
+                    protected int i;
+
+                    @Override
+                    public boolean hasNext() {
+                        return i < size;
+                    }
+
+                    @Override
+                    public Map.Entry<String, Serializable> next() {
+                        if (i >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        int slot = setSlots[i++];
+                        return new SimpleImmutableEntry<String, Serializable>(
+                                columns[slot].getHeader(), getValue(slot));
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,418 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Schedules the CSV imports fairly among users and sizes.
+ * <p>
+ * Imports are dispatched to two lanes depending on the size of their CSV
+ * file, each lane running at most a fixed number of imports at the same time,
+ * so that small imports never wait behind large ones. Inside a lane the
+ * pending imports are dispatched round-robin between users, in submission
+ * order for a same user.
+ * <p>
+ * Imports are only scheduled in the {@link WorkManager} when a slot of their
+ * lane is free, the {@code csvImporter} queue having as many threads as the
+ * total number of slots. A pending import can be paused, being held back
+ * until resumed.
+ *
+ * @since 5.9.2
+ */
+public class CSVImportScheduler {
+
+    private static final Log log = LogFactory.getLog(CSVImportScheduler.class);
+
+    /**
+     * Maximum size in bytes of the CSV file of a small import.
+     */
+    public static final String SMALL_IMPORT_MAX_SIZE_PROPERTY = "nuxeo.csv.importer.smallImportMaxSize";
+
+    public static final String SMALL_IMPORT_SLOTS_PROPERTY = "nuxeo.csv.importer.smallImportSlots";
+
+    public static final String LARGE_IMPORT_SLOTS_PROPERTY = "nuxeo.csv.importer.largeImportSlots";
+
+    public static final long DEFAULT_SMALL_IMPORT_MAX_SIZE = 1024 * 1024;
+
+    public static final int DEFAULT_SMALL_IMPORT_SLOTS = 2;
+
+    public static final int DEFAULT_LARGE_IMPORT_SLOTS = 1;
+
+    protected static final CSVImportScheduler INSTANCE = new CSVImportScheduler();
+
+    public enum Lane {
+        SMALL(SMALL_IMPORT_SLOTS_PROPERTY, DEFAULT_SMALL_IMPORT_SLOTS), //
+        LARGE(LARGE_IMPORT_SLOTS_PROPERTY, DEFAULT_LARGE_IMPORT_SLOTS);
+
+        private final String slotsProperty;
+
+        private final int defaultSlots;
+
+        private Lane(String slotsProperty, int defaultSlots) {
+            this.slotsProperty = slotsProperty;
+            this.defaultSlots = defaultSlots;
+        }
+
+        public int getSlots() {
+            String value = Framework.getProperty(slotsProperty);
+            if (value == null) {
+                return defaultSlots;
+            }
+            try {
+                return Math.max(1, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                log.warn(String.format("Invalid value '%s' of %s, using %d",
+                        value, slotsProperty, Integer.valueOf(defaultSlots)));
+                return defaultSlots;
+            }
+        }
+    }
+
+    protected static class LaneQueue {
+
+        /**
+         * Pending imports per user, the next user to serve first.
+         */
+        protected final LinkedHashMap<String, LinkedList<CSVImporterWork>> pending = new LinkedHashMap<String, LinkedList<CSVImporterWork>>();
+
+        protected int size;
+
+        protected int running;
+
+        /**
+         * Returns the pending imports in their dispatch order, except the
+         * held back ones.
+         */
+        protected List<CSVImporterWork> getDispatchOrder(Set<String> held) {
+            List<CSVImporterWork> order = new ArrayList<CSVImporterWork>(size);
+            List<Iterator<CSVImporterWork>> iterators = new ArrayList<Iterator<CSVImporterWork>>();
+            for (LinkedList<CSVImporterWork> works : pending.values()) {
+                iterators.add(works.iterator());
+            }
+            int count = 0;
+            while (count < size) {
+                for (Iterator<CSVImporterWork> it : iterators) {
+                    if (it.hasNext()) {
+                        CSVImporterWork work = it.next();
+                        count++;
+                        if (!held.contains(work.getId())) {
+                            order.add(work);
+                        }
+                    }
+                }
+            }
+            return order;
+        }
+
+        /**
+         * Removes the next import to dispatch, skipping the held back ones.
+         */
+        protected CSVImporterWork poll(Set<String> held) {
+            Iterator<Map.Entry<String, LinkedList<CSVImporterWork>>> it = pending.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, LinkedList<CSVImporterWork>> entry = it.next();
+                LinkedList<CSVImporterWork> works = entry.getValue();
+                Iterator<CSVImporterWork> worksIt = works.iterator();
+                while (worksIt.hasNext()) {
+                    CSVImporterWork work = worksIt.next();
+                    if (held.contains(work.getId())) {
+                        continue;
+                    }
+                    worksIt.remove();
+                    it.remove();
+                    if (!works.isEmpty()) {
+                        // the user goes back to the end of the round
+                        pending.put(entry.getKey(), works);
+                    }
+                    size--;
+                    return work;
+                }
+            }
+            return null;
+        }
+
+        protected boolean remove(String id) {
+            Iterator<LinkedList<CSVImporterWork>> it = pending.values().iterator();
+            while (it.hasNext()) {
+                LinkedList<CSVImporterWork> works = it.next();
+                Iterator<CSVImporterWork> worksIt = works.iterator();
+                while (worksIt.hasNext()) {
+                    CSVImporterWork work = worksIt.next();
+                    if (work.getId().equals(id)) {
+                        if (work.isResumed()) {
+                            return false;
+                        }
+                        worksIt.remove();
+                        if (works.isEmpty()) {
+                            it.remove();
+                        }
+                        size--;
+                        // cancelled before running
+                        work.deleteCSVFile();
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    protected final Map<Lane, LaneQueue> queues = new HashMap<Lane, LaneQueue>();
+
+    /**
+     * Lane of the pending and running imports.
+     */
+    protected final Map<String, Lane> lanes = new HashMap<String, Lane>();
+
+    protected final Set<String> running = new HashSet<String>();
+
+    /**
+     * Paused pending imports, held back until resumed.
+     */
+    protected final Set<String> held = new HashSet<String>();
+
+    /**
+     * Works resuming paused imports whose suspended work is still ending,
+     * queued once it ends.
+     */
+    protected final Map<String, CSVImporterWork> resumed = new HashMap<String, CSVImporterWork>();
+
+    protected CSVImportScheduler() {
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new LaneQueue());
+        }
+    }
+
+    public static CSVImportScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    protected static long getSmallImportMaxSize() {
+        String value = Framework.getProperty(SMALL_IMPORT_MAX_SIZE_PROPERTY);
+        if (value == null) {
+            return DEFAULT_SMALL_IMPORT_MAX_SIZE;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn(String.format("Invalid value '%s' of %s, using %d",
+                    value, SMALL_IMPORT_MAX_SIZE_PROPERTY,
+                    Long.valueOf(DEFAULT_SMALL_IMPORT_MAX_SIZE)));
+            return DEFAULT_SMALL_IMPORT_MAX_SIZE;
+        }
+    }
+
+    public static Lane getLane(CSVImporterWork work) {
+        return work.csvFile.length() <= getSmallImportMaxSize() ? Lane.SMALL
+                : Lane.LARGE;
+    }
+
+    /**
+     * Submits an import, scheduling it right away if a slot of its lane is
+     * free.
+     *
+     * @return {@code false} if the import is already pending, running or
+     *         paused
+     */
+    public synchronized boolean submit(CSVImporterWork work) {
+        String id = work.getId();
+        CSVImportControl control = CSVImportControl.peek(id);
+        if (lanes.containsKey(id) || control != null && control.isSuspended()) {
+            return false;
+        }
+        CSVImportRegistry.start(id, work.username);
+        enqueue(work);
+        return true;
+    }
+
+    /**
+     * Submits the work going on with a paused import, keeping its logs, see
+     * {@link CSVImportControl#suspend(CSVImporterWork)}.
+     */
+    public synchronized void resubmit(CSVImporterWork work) {
+        String id = work.getId();
+        if (running.contains(id)) {
+            // the suspended work is still ending
+            resumed.put(id, work);
+        } else {
+            enqueue(work);
+        }
+    }
+
+    protected void enqueue(CSVImporterWork work) {
+        String id = work.getId();
+        Lane lane = getLane(work);
+        LaneQueue queue = queues.get(lane);
+        LinkedList<CSVImporterWork> works = queue.pending.get(work.username);
+        if (works == null) {
+            works = new LinkedList<CSVImporterWork>();
+            queue.pending.put(work.username, works);
+        }
+        works.add(work);
+        queue.size++;
+        lanes.put(id, lane);
+        dispatch(lane);
+    }
+
+    /**
+     * Notifies the end of an import, freeing its slot.
+     */
+    public synchronized void done(String id) {
+        if (!running.remove(id)) {
+            return;
+        }
+        Lane lane = lanes.remove(id);
+        queues.get(lane).running--;
+        CSVImporterWork resumedWork = resumed.remove(id);
+        if (resumedWork != null) {
+            enqueue(resumedWork);
+        }
+        dispatch(lane);
+    }
+
+    /**
+     * Removes a pending import. A resumed import is left pending, to end it
+     * once cancelled.
+     *
+     * @return {@code false} if the import is not pending, or is resumed
+     */
+    public synchronized boolean cancel(String id) {
+        Lane lane = lanes.get(id);
+        if (lane == null || running.contains(id)) {
+            return false;
+        }
+        if (!queues.get(lane).remove(id)) {
+            return false;
+        }
+        lanes.remove(id);
+        held.remove(id);
+        return true;
+    }
+
+    /**
+     * Holds back a pending import until resumed.
+     *
+     * @return {@code false} if the import is not pending
+     */
+    public synchronized boolean pause(String id) {
+        if (!isPending(id)) {
+            return false;
+        }
+        held.add(id);
+        return true;
+    }
+
+    /**
+     * Releases a pending import held back by {@link #pause(String)},
+     * dispatching it if a slot of its lane is free.
+     *
+     * @return {@code false} if the import is not held back
+     */
+    public synchronized boolean resume(String id) {
+        if (!held.remove(id)) {
+            return false;
+        }
+        dispatch(lanes.get(id));
+        return true;
+    }
+
+    public synchronized boolean isPending(String id) {
+        return lanes.containsKey(id) && !running.contains(id);
+    }
+
+    /**
+     * Returns the status of a pending import, with its position in the
+     * dispatch order of its lane unless held back, or {@code null} if it is
+     * not pending.
+     */
+    public synchronized CSVImportStatus getStatus(String id) {
+        if (!isPending(id)) {
+            return null;
+        }
+        if (held.contains(id)) {
+            return new CSVImportStatus(CSVImportStatus.State.PAUSED);
+        }
+        LaneQueue queue = queues.get(lanes.get(id));
+        List<CSVImporterWork> order = queue.getDispatchOrder(held);
+        for (int i = 0; i < order.size(); i++) {
+            if (order.get(i).getId().equals(id)) {
+                return new CSVImportStatus(CSVImportStatus.State.SCHEDULED,
+                        i + 1, order.size());
+            }
+        }
+        return null;
+    }
+
+    protected void dispatch(Lane lane) {
+        LaneQueue queue = queues.get(lane);
+        int slots = lane.getSlots();
+        WorkManager workManager = Framework.getLocalService(WorkManager.class);
+        while (queue.running < slots) {
+            CSVImporterWork work = queue.poll(held);
+            if (work == null) {
+                break;
+            }
+            queue.running++;
+            running.add(work.getId());
+            if (log.isDebugEnabled()) {
+                log.debug(String.format(
+                        "Dispatching CSV import %s of user %s in the %s lane",
+                        work.getId(), work.username, lane));
+            }
+            try {
+                workManager.schedule(work,
+                        WorkManager.Scheduling.IF_NOT_RUNNING_OR_SCHEDULED);
+            } catch (RuntimeException e) {
+                log.error("Unable to schedule CSV import " + work.getId(), e);
+                release(queue, work.getId());
+                continue;
+            }
+            if (workManager.getWorkState(work.getId()) == null) {
+                // dropped, so never calling done(); an identical work
+                // already scheduled or running calls it instead
+                log.warn("CSV import " + work.getId() + " was not scheduled");
+                release(queue, work.getId());
+            }
+        }
+    }
+
+    /**
+     * Frees the slot of an import that could not be scheduled.
+     */
+    protected void release(LaneQueue queue, String id) {
+        if (running.remove(id)) {
+            lanes.remove(id);
+            queue.running--;
+        }
+    }
+
+}
@@ -30,7 +30,11 @@ public class CSVImportStatus {
     public enum State {
         SCHEDULED,
         RUNNING,
-        COMPLETED
+        COMPLETED,
+        /** @since 5.9.2 */
+        PAUSED,
+        /** @since 5.9.2 */
+        CANCELLED
     }
 
     public CSVImportStatus(State state) {
@@ -67,4 +71,18 @@ public class CSVImportStatus {
     public boolean isComplete() {
         return state == State.COMPLETED;
     }
+
+    /**
+     * @since 5.9.2
+     */
+    public boolean isPaused() {
+        return state == State.PAUSED;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public boolean isCancelled() {
+        return state == State.CANCELLED;
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import org.nuxeo.ecm.automation.core.annotations.Context;
+import org.nuxeo.ecm.automation.core.annotations.Operation;
+import org.nuxeo.ecm.automation.core.annotations.OperationMethod;
+import org.nuxeo.ecm.automation.core.annotations.Param;
+import org.nuxeo.ecm.core.api.Blob;
+import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentSecurityException;
+
+/**
+ * Returns the status and line counters of an import as JSON, the counters
+ * being the progress so far for a running import, see
+ * {@link CSVImporter#canReadImport(CoreSession, String)} for who can read
+ * them.
+ *
+ * @since 5.9.2
+ */
+@Operation(id = CSVImportStatusOperation.ID, category = "Services", label = "CSV Import Status", description = "Returns the status and line counters of a CSV import as JSON.")
+public class CSVImportStatusOperation {
+
+    public static final String ID = "CSV.ImportStatus";
+
+    @Context
+    protected CoreSession session;
+
+    @Context
+    protected CSVImporter csvImporter;
+
+    @Param(name = "importId")
+    protected String importId;
+
+    @OperationMethod
+    public Blob run() throws ClientException {
+        if (!csvImporter.canReadImport(session, importId)) {
+            throw new DocumentSecurityException("Cannot read the import: "
+                    + importId);
+        }
+        CSVImportStatus status = csvImporter.getImportStatus(importId);
+        CSVImportResult result = csvImporter.getImportResult(importId);
+        if (result == null) {
+            CSVImportRegistry.Entry entry = CSVImportRegistry.peek(importId);
+            if (entry != null) {
+                result = entry.getResult();
+            }
+        }
+        return CSVImportJson.toBlob(CSVImportJson.importStatus(importId,
+                status, result));
+    }
+
+}
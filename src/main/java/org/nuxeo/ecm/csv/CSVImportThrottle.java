@@ -0,0 +1,174 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Limits the throughput of a run of an import, shared by the works of a
+ * distributed import running on a same node, each node running chunks of the
+ * import having its own limits.
+ * <p>
+ * Three limits can be combined:
+ * <ul>
+ * <li>a maximum number of lines per second,</li>
+ * <li>a maximum number of concurrent transactions of the import, those of all
+ * the imports having such a maximum being also bounded on this node by
+ * {@value #MAX_CONCURRENT_TRANSACTIONS_PROPERTY},</li>
+ * <li>an adaptive back off: after each commit slower than a threshold, the
+ * import sleeps for a delay doubling at each slow commit and halving at each
+ * fast one.</li>
+ * </ul>
+ *
+ * @since 5.9.2
+ */
+public class CSVImportThrottle {
+
+    private static final Log log = LogFactory.getLog(CSVImportThrottle.class);
+
+    /**
+     * Maximum number of transactions of the imports having a
+     * {@link CSVImporterOptions#getMaxConcurrentTransactions()} running at
+     * the same time on this node, defaults to
+     * {@link CSVImportChunkExecutor#getMaxConcurrentWrites()}.
+     */
+    public static final String MAX_CONCURRENT_TRANSACTIONS_PROPERTY = "nuxeo.csv.importer.maxConcurrentTransactions";
+
+    protected static Semaphore globalTransactionPermits;
+
+    protected static final long MIN_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    protected static final long MAX_BACK_OFF_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    protected final long lineIntervalNanos;
+
+    protected final long commitLatencyThresholdNanos;
+
+    protected final Semaphore transactionPermits;
+
+    protected long nextLineTime;
+
+    protected long backOffNanos;
+
+    public CSVImportThrottle(CSVImporterOptions options) {
+        lineIntervalNanos = options.getMaxLinesPerSecond() > 0 ? TimeUnit.SECONDS.toNanos(1)
+                / options.getMaxLinesPerSecond()
+                : 0;
+        commitLatencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(options.getCommitLatencyThreshold());
+        transactionPermits = options.getMaxConcurrentTransactions() > 0 ? new Semaphore(
+                options.getMaxConcurrentTransactions(), true)
+                : null;
+    }
+
+    protected static synchronized Semaphore getGlobalTransactionPermits() {
+        if (globalTransactionPermits == null) {
+            String value = Framework.getProperty(MAX_CONCURRENT_TRANSACTIONS_PROPERTY);
+            int max = CSVImportChunkExecutor.getMaxConcurrentWrites();
+            if (value != null) {
+                try {
+                    max = Math.max(1, Integer.parseInt(value.trim()));
+                } catch (NumberFormatException e) {
+                    log.warn(String.format("Invalid value '%s' of %s, using %d",
+                            value, MAX_CONCURRENT_TRANSACTIONS_PROPERTY,
+                            Integer.valueOf(max)));
+                }
+            }
+            globalTransactionPermits = new Semaphore(max, true);
+        }
+        return globalTransactionPermits;
+    }
+
+    public boolean isEnabled() {
+        return lineIntervalNanos > 0 || commitLatencyThresholdNanos > 0
+                || transactionPermits != null;
+    }
+
+    /**
+     * Waits until the next line can be imported.
+     */
+    public void awaitLine() throws InterruptedException {
+        if (lineIntervalNanos == 0) {
+            return;
+        }
+        long sleep;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (nextLineTime == 0 || nextLineTime < now) {
+                nextLineTime = now;
+            }
+            sleep = nextLineTime - now;
+            nextLineTime += lineIntervalNanos;
+        }
+        if (sleep >= MIN_SLEEP_NANOS) {
+            TimeUnit.NANOSECONDS.sleep(sleep);
+        }
+    }
+
+    /**
+     * Waits for a free transaction slot.
+     */
+    public void acquireTransaction() throws InterruptedException {
+        if (transactionPermits == null) {
+            return;
+        }
+        transactionPermits.acquire();
+        try {
+            getGlobalTransactionPermits().acquire();
+        } catch (InterruptedException e) {
+            transactionPermits.release();
+            throw e;
+        }
+    }
+
+    public void releaseTransaction() {
+        if (transactionPermits != null) {
+            getGlobalTransactionPermits().release();
+            transactionPermits.release();
+        }
+    }
+
+    /**
+     * Records the latency of a commit and sleeps if the database is slowing
+     * down.
+     */
+    public void commitDone(long latencyNanos) throws InterruptedException {
+        if (commitLatencyThresholdNanos == 0) {
+            return;
+        }
+        long sleep;
+        synchronized (this) {
+            if (latencyNanos > commitLatencyThresholdNanos) {
+                backOffNanos = Math.min(MAX_BACK_OFF_NANOS, Math.max(
+                        backOffNanos * 2, latencyNanos));
+            } else {
+                backOffNanos = backOffNanos / 2 < MIN_SLEEP_NANOS ? 0
+                        : backOffNanos / 2;
+            }
+            sleep = backOffNanos;
+        }
+        if (sleep > 0) {
+            TimeUnit.NANOSECONDS.sleep(sleep);
+        }
+    }
+
+}
@@ -20,6 +20,7 @@ package org.nuxeo.ecm.csv;
 import java.io.File;
 import java.util.List;
 
+import org.nuxeo.ecm.core.api.ClientException;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.csv.CSVImportLog.Status;
 
@@ -38,9 +39,67 @@ public interface CSVImporter {
 
     List<CSVImportLog> getImportLogs(String id, Status... status);
 
+    /**
+     * Returns a page of the logs of an import, ordered by line number, read
+     * without loading the other logs.
+     *
+     * @param status the statuses of the logs to return, all if empty
+     * @param offset the number of logs to skip
+     * @param limit the maximum number of logs to return, {@code -1} for no
+     *            limit
+     * @since 5.9.2
+     */
+    List<CSVImportLog> getImportLogs(String id, Status[] status, long offset,
+            int limit);
+
+    /**
+     * Returns the number of logs of an import having one of the given
+     * statuses, all if empty.
+     *
+     * @since 5.9.2
+     */
+    long getImportLogCount(String id, Status... status);
+
     List<CSVImportLog> getLastImportLogs(String id, int max);
 
     List<CSVImportLog> getLastImportLogs(String id, int max, Status... status);
 
     CSVImportResult getImportResult(String id);
+
+    /**
+     * Cancels a scheduled or running import. A running import stops after
+     * committing the lines already imported, whose logs are kept.
+     *
+     * @return {@code true} if the import was scheduled or running
+     * @since 5.9.2
+     */
+    boolean cancelImport(String id);
+
+    /**
+     * Pauses a scheduled or running import after committing the lines
+     * already imported. The paused import frees its thread until resumed or
+     * cancelled.
+     *
+     * @return {@code true} if the import was scheduled or running
+     * @since 5.9.2
+     */
+    boolean pauseImport(String id);
+
+    /**
+     * Resumes a paused import.
+     *
+     * @return {@code true} if the import was paused
+     * @since 5.9.2
+     */
+    boolean resumeImport(String id);
+
+    /**
+     * Returns whether the user of a session can read the status and logs of
+     * an import: an administrator, the user who started the import on this
+     * node, or a user who can read the document into which it imports.
+     *
+     * @since 5.9.2
+     */
+    boolean canReadImport(CoreSession session, String id)
+            throws ClientException;
 }
@@ -0,0 +1,52 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentRef;
+
+/**
+ * Document factory of an import in {@link CSVImporterOptions#bulkMode()} or
+ * with {@link CSVImporterOptions#deferredIndexing()}: the given context data
+ * is put on the created or updated documents, for the event listeners, and
+ * the documents are returned.
+ * <p>
+ * The documents of the other factories are only read again after their
+ * import with deferred indexing, for their ids, and the event listeners are
+ * not given the context data.
+ *
+ * @since 5.9.2
+ */
+public interface CSVImporterBulkDocumentFactory extends
+        CSVImporterDocumentFactory {
+
+    public DocumentModel createDocument(CoreSession session,
+            String parentPath, String name, String type,
+            Map<String, Serializable> values,
+            Map<String, Serializable> contextData) throws ClientException;
+
+    public DocumentModel updateDocument(CoreSession session,
+            DocumentRef docRef, Map<String, Serializable> values,
+            Map<String, Serializable> contextData) throws ClientException;
+
+}
@@ -0,0 +1,166 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Date;
+
+import org.nuxeo.ecm.core.api.ClientRuntimeException;
+
+import au.com.bytecode.opencsv.CSVReader;
+
+/**
+ * Work task importing one chunk of a CSV file for a distributed
+ * {@link CSVImporterWork}.
+ * <p>
+ * The chunk is read from its file, written by the distributed import in the
+ * {@link CSVImportLogStore} directory, which must therefore be reachable with
+ * the same path from every node running the
+ * {@value #CATEGORY_CSV_IMPORTER_CHUNK} queue. The chunk is done once its
+ * log store is completed, and is counted in the {@link CSVImportRegistry} by
+ * the distributed import, which may run on another node.
+ *
+ * @since 5.9.2
+ */
+public class CSVImporterChunkWork extends CSVImporterWork {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String CATEGORY_CSV_IMPORTER_CHUNK = "csvImporterChunk";
+
+    /**
+     * Separates the id of the distributed import from the chunk index in the
+     * id of a chunk work.
+     */
+    public static final String CHUNK_ID_SEPARATOR = ":chunk:";
+
+    protected String[] header;
+
+    protected CSVImportChunk chunk;
+
+    public CSVImporterChunkWork(String id, String repositoryName,
+            String parentPath, String username, File csvFile,
+            String csvFileName, CSVImporterOptions options, String[] header,
+            CSVImportChunk chunk, long runId) {
+        super(id);
+        setDocument(repositoryName, null);
+        this.parentPath = parentPath;
+        this.username = username;
+        this.csvFile = csvFile;
+        this.csvFileName = csvFileName;
+        this.options = options;
+        this.header = header;
+        this.chunk = chunk;
+        this.runId = runId;
+        // the line number is the last column of the chunk file
+        lineNumberColumn = true;
+        startDate = new Date();
+        metrics = new CSVImporterMetrics(id);
+    }
+
+    @Override
+    public String getCategory() {
+        return CATEGORY_CSV_IMPORTER_CHUNK;
+    }
+
+    /**
+     * Chunks are cancelled or paused with their distributed import.
+     */
+    @Override
+    protected String getControlId() {
+        String id = getId();
+        return id.substring(0, id.lastIndexOf(CHUNK_ID_SEPARATOR));
+    }
+
+    /**
+     * Chunks wait on their own thread while their import is paused, their
+     * distributed import being suspended.
+     */
+    @Override
+    protected boolean canSuspend() {
+        return false;
+    }
+
+    /**
+     * Only stores the log, read by the distributed import.
+     */
+    @Override
+    protected void storeImportLog(CSVImportLog importLog) {
+        try {
+            getLogStore().append(importLog);
+        } catch (IOException e) {
+            throw new ClientRuntimeException(e);
+        }
+    }
+
+    /**
+     * Only stores the count, read by the distributed import.
+     */
+    @Override
+    protected void storeUnchangedLines(long count) {
+        if (count == 0) {
+            return;
+        }
+        try {
+            getLogStore().addUnchanged(count);
+        } catch (IOException e) {
+            throw new ClientRuntimeException(e);
+        }
+    }
+
+    @Override
+    public String getTitle() {
+        return String.format("CSV import in '%s', chunk %d", parentPath,
+                Integer.valueOf(chunk.getIndex()));
+    }
+
+    @Override
+    public void work() throws Exception {
+        setStatus("Importing");
+        // the requests and limits of the run, on any node
+        getControl().startRun(runId);
+        getLogStore();
+        initSession();
+        getMetrics().register();
+        try {
+            CSVReader csvReader = null;
+            try {
+                csvReader = new CSVReader(new FileReader(chunk.getFile()));
+                importLines(csvReader, header, 1);
+            } catch (IOException e) {
+                logError(0, null, e, "Error while doing the import: %s",
+                        "label.csv.importer.errorDuringImport", e.getMessage());
+            } finally {
+                if (csvReader != null) {
+                    csvReader.close();
+                }
+            }
+            logErrorSummary();
+        } finally {
+            metrics.unregister();
+            closeIndexingIds();
+            // read by the distributed import once completed
+            flushLogStore(true);
+            getControl().chunkDone();
+        }
+        setStatus(null);
+    }
+
+}
@@ -18,21 +18,36 @@
 package org.nuxeo.ecm.csv;
 
 import java.io.File;
+import java.io.IOException;
+import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.ecm.core.api.ClientRuntimeException;
 import org.nuxeo.ecm.core.api.CoreSession;
-import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.NuxeoPrincipal;
+import org.nuxeo.ecm.core.api.PathRef;
+import org.nuxeo.ecm.core.api.security.SecurityConstants;
 import org.nuxeo.ecm.core.work.api.Work.State;
 import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.model.ComponentContext;
+import org.nuxeo.runtime.model.DefaultComponent;
 
 /**
  * @since 5.7
  */
-public class CSVImporterImpl implements CSVImporter {
+public class CSVImporterImpl extends DefaultComponent implements CSVImporter {
+
+    @Override
+    public void deactivate(ComponentContext context) throws Exception {
+        CSVImportChunkExecutor.getInstance().shutdown();
+        super.deactivate(context);
+    }
 
     @Override
     public String launchImport(CoreSession session, String parentPath,
@@ -40,25 +55,56 @@ public class CSVImporterImpl implements CSVImporter {
         CSVImporterWork work = new CSVImporterWork(session.getRepositoryName(),
                 parentPath, session.getPrincipal().getName(), csvFile,
                 csvFileName, options);
-        WorkManager workManager = Framework.getLocalService(WorkManager.class);
-        workManager.schedule(work,
-                WorkManager.Scheduling.IF_NOT_RUNNING_OR_SCHEDULED);
+        if (!CSVImportScheduler.getInstance().submit(work)) {
+            // the same import is already running
+            work.deleteCSVFile();
+        }
         return work.getId();
     }
 
     @Override
     public CSVImportStatus getImportStatus(String id) {
+        CSVImportStatus pendingStatus = CSVImportScheduler.getInstance().getStatus(
+                id);
+        if (pendingStatus != null) {
+            return pendingStatus;
+        }
+        CSVImportControl control = CSVImportControl.peek(id);
+        if (control != null && control.isSuspended()) {
+            return new CSVImportStatus(CSVImportStatus.State.PAUSED);
+        }
+        CSVImportRegistry.Entry entry = CSVImportRegistry.peek(id);
+        if (entry != null && entry.isComplete()) {
+            return new CSVImportStatus(
+                    control != null && control.isCancelled() ? CSVImportStatus.State.CANCELLED
+                            : CSVImportStatus.State.COMPLETED);
+        }
         WorkManager workManager = Framework.getLocalService(WorkManager.class);
         State state = workManager.getWorkState(id);
-        if (state == null) {
+        if (state == null && entry == null) {
+            // imported by another node or before a restart
+            CSVImportLogStore store = CSVImportLogStore.open(id);
+            if (store != null && store.isCompleted()) {
+                return new CSVImportStatus(CSVImportStatus.State.COMPLETED);
+            }
+        }
+        if (control != null && control.isCancelled()
+                && (state == null || state == State.COMPLETED)) {
+            return new CSVImportStatus(CSVImportStatus.State.CANCELLED);
+        } else if (state == null) {
             return null;
         } else if (state == State.COMPLETED) {
             return new CSVImportStatus(CSVImportStatus.State.COMPLETED);
+        } else if (control != null && control.isPaused()) {
+            return new CSVImportStatus(CSVImportStatus.State.PAUSED);
         } else if (state == State.SCHEDULED) {
             String queueId = workManager.getCategoryQueueId(CSVImporterWork.CATEGORY_CSV_IMPORTER);
             int queueSize = workManager.getQueueSize(queueId, State.SCHEDULED);
-            return new CSVImportStatus(CSVImportStatus.State.SCHEDULED, 0,
-                    queueSize);
+            int[] pos = new int[1];
+            workManager.find(new CSVImporterWork(id), State.SCHEDULED, true,
+                    pos);
+            return new CSVImportStatus(CSVImportStatus.State.SCHEDULED,
+                    pos[0] + 1, queueSize);
         } else { // RUNNING
             return new CSVImportStatus(CSVImportStatus.State.RUNNING);
         }
@@ -66,30 +112,54 @@ public class CSVImporterImpl implements CSVImporter {
 
     @Override
     public List<CSVImportLog> getImportLogs(String id) {
-        return getLastImportLogs(id, -1);
+        return getImportLogs(id, new CSVImportLog.Status[0], 0, -1);
     }
 
     @Override
     public List<CSVImportLog> getImportLogs(String id,
             CSVImportLog.Status... status) {
-        return getLastImportLogs(id, -1, status);
+        return getImportLogs(id, status, 0, -1);
+    }
+
+    @Override
+    public List<CSVImportLog> getImportLogs(String id,
+            CSVImportLog.Status[] status, long offset, int limit) {
+        CSVImportLogStore store = CSVImportLogStore.open(id);
+        if (store == null) {
+            return Collections.emptyList();
+        }
+        try {
+            return store.getLogs(status, 0, Long.MAX_VALUE, offset, limit);
+        } catch (IOException e) {
+            throw new ClientRuntimeException(e);
+        }
+    }
+
+    @Override
+    public long getImportLogCount(String id, CSVImportLog.Status... status) {
+        CSVImportLogStore store = CSVImportLogStore.open(id);
+        return store == null ? 0 : store.getCount(status);
     }
 
     @Override
     public List<CSVImportLog> getLastImportLogs(String id, int max) {
-        WorkManager workManager = Framework.getLocalService(WorkManager.class);
-        Work workId = new CSVImporterWork(id);
-        int[] pos = new int[1];
-        Work work = workManager.find(workId, null, true, pos);
-        if (work == null) {
-            work = workManager.find(workId, State.COMPLETED, true, pos);
-            if (work == null) {
-                return Collections.emptyList();
+        if (max != -1 && max <= CSVImportRegistry.RECENT_LOGS_SIZE) {
+            CSVImportRegistry.Entry entry = CSVImportRegistry.peek(id);
+            if (entry != null) {
+                return entry.getLastLogs(max);
             }
         }
-        List<CSVImportLog> importLogs = ((CSVImporterWork) work).getImportLogs();
-        max = (max == -1 || max > importLogs.size()) ? importLogs.size() : max;
-        return importLogs.subList(importLogs.size() - max, importLogs.size());
+        CSVImportLogStore store = CSVImportLogStore.open(id);
+        if (store == null) {
+            return Collections.emptyList();
+        }
+        try {
+            long total = store.getCount();
+            max = (max == -1 || max > total) ? (int) total : max;
+            return store.getLogs(null, 0, Long.MAX_VALUE, total - max, max);
+        } catch (IOException e) {
+            throw new ClientRuntimeException(e);
+        }
     }
 
     @Override
@@ -114,16 +184,110 @@ public class CSVImporterImpl implements CSVImporter {
 
     @Override
     public CSVImportResult getImportResult(String id) {
-        WorkManager workManager = Framework.getLocalService(WorkManager.class);
-        Work work = new CSVImporterWork(id);
-        int[] pos = new int[1];
-        work = workManager.find(work, State.COMPLETED, true, pos);
-        if (work == null) {
+        CSVImportRegistry.Entry entry = CSVImportRegistry.peek(id);
+        if (entry != null) {
+            return entry.isComplete() ? entry.getResult() : null;
+        }
+        // imports of other nodes or before a restart
+        CSVImportLogStore store = CSVImportLogStore.open(id);
+        if (store == null || !store.isCompleted()) {
             return null;
         }
+        try {
+            return store.getResult();
+        } catch (IOException e) {
+            throw new ClientRuntimeException(e);
+        }
+    }
 
-        List<CSVImportLog> importLogs = ((CSVImporterWork) work).getImportLogs();
-        return CSVImportResult.fromImportLogs(importLogs);
+    @Override
+    public boolean cancelImport(String id) {
+        CSVImportScheduler scheduler = CSVImportScheduler.getInstance();
+        if (scheduler.cancel(id)) {
+            // not yet given to the work manager
+            CSVImportControl.get(id).cancel();
+            return true;
+        }
+        if (scheduler.isPending(id)) {
+            // resumed, stops as soon as it runs
+            CSVImportControl.get(id).cancel();
+            scheduler.resume(id);
+            return true;
+        }
+        CSVImportControl control = CSVImportControl.peek(id);
+        CSVImporterWork suspendedWork = control == null ? null
+                : control.cancelSuspended();
+        if (suspendedWork != null) {
+            // runs again to end the paused import
+            scheduler.resubmit(suspendedWork);
+            return true;
+        }
+        WorkManager workManager = Framework.getLocalService(WorkManager.class);
+        State state = workManager.getWorkState(id);
+        if (state == null || state == State.COMPLETED) {
+            return false;
+        }
+        CSVImportControl.get(id).cancel();
+        if (state == State.SCHEDULED) {
+            workManager.schedule(new CSVImporterWork(id),
+                    WorkManager.Scheduling.CANCEL_SCHEDULED);
+            scheduler.done(id);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean pauseImport(String id) {
+        if (CSVImportScheduler.getInstance().pause(id)) {
+            // not yet given to the work manager
+            return true;
+        }
+        WorkManager workManager = Framework.getLocalService(WorkManager.class);
+        State state = workManager.getWorkState(id);
+        if (state == null || state == State.COMPLETED) {
+            return false;
+        }
+        CSVImportControl.get(id).pause();
+        return true;
+    }
+
+    @Override
+    public boolean resumeImport(String id) {
+        if (CSVImportScheduler.getInstance().resume(id)) {
+            return true;
+        }
+        CSVImportControl control = CSVImportControl.peek(id);
+        if (control == null || !control.isPaused() || control.isCancelled()) {
+            return false;
+        }
+        CSVImporterWork suspendedWork = control.resume();
+        if (suspendedWork != null) {
+            CSVImportScheduler.getInstance().resubmit(suspendedWork);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean canReadImport(CoreSession session, String id)
+            throws ClientException {
+        Principal principal = session.getPrincipal();
+        if (principal instanceof NuxeoPrincipal
+                && ((NuxeoPrincipal) principal).isAdministrator()) {
+            return true;
+        }
+        CSVImportRegistry.Entry entry = CSVImportRegistry.peek(id);
+        if (entry != null && principal.getName().equals(entry.getUsername())) {
+            return true;
+        }
+        String path = CSVImportId.getPath(id);
+        if (path == null
+                || !session.getRepositoryName().equals(
+                        CSVImportId.getRepositoryName(id))) {
+            return false;
+        }
+        DocumentRef ref = new PathRef(path);
+        return session.exists(ref)
+                && session.hasPermission(ref, SecurityConstants.READ);
     }
 
 }
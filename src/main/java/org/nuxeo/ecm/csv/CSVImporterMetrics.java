@@ -0,0 +1,207 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+/**
+ * Per-phase counters and timers of a CSV import.
+ * <p>
+ * Every measure is recorded in this instance, for the import itself. The
+ * measures of each batch are then fed at once to the aggregate
+ * {@code nuxeo.csv.importer.<phase>} timers of the shared Nuxeo metrics
+ * registry (and thus JMX when its reporter is enabled), as the mean duration
+ * of the phase in the batch, see {@link #flush()}. While the import is
+ * running its own figures are also published as
+ * {@code nuxeo.csv.importer.imports.<id>.<phase>} gauges.
+ *
+ * @since 5.9.2
+ */
+public class CSVImporterMetrics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String METRICS_PREFIX = "nuxeo.csv.importer";
+
+    public enum Phase {
+        READ_NEXT("readNext"), //
+        COMPUTE_PROPERTIES("computePropertiesMap"), //
+        EXISTS("exists"), //
+        CREATE_DOCUMENT("createDocument"), //
+        UPDATE_DOCUMENT("updateDocument"), //
+        COMMIT("commitOrRollbackTransaction"), //
+        SEND_MAIL("sendMail");
+
+        private final String metricName;
+
+        private Phase(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    protected final String importId;
+
+    protected final AtomicLongArray counts = new AtomicLongArray(
+            Phase.values().length);
+
+    protected final AtomicLongArray nanos = new AtomicLongArray(
+            Phase.values().length);
+
+    /**
+     * Counts and times already fed to the timers.
+     */
+    protected final long[] flushedCounts = new long[Phase.values().length];
+
+    protected final long[] flushedNanos = new long[Phase.values().length];
+
+    protected transient Timer[] timers;
+
+    public CSVImporterMetrics(String importId) {
+        this.importId = importId;
+    }
+
+    protected static MetricRegistry getRegistry() {
+        return SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+    }
+
+    protected Timer[] getTimers() {
+        // transient field so may become null
+        if (timers == null) {
+            MetricRegistry registry = getRegistry();
+            Timer[] t = new Timer[Phase.values().length];
+            for (Phase phase : Phase.values()) {
+                t[phase.ordinal()] = registry.timer(MetricRegistry.name(
+                        METRICS_PREFIX, phase.getMetricName()));
+            }
+            timers = t;
+        }
+        return timers;
+    }
+
+    /**
+     * Returns the start time to pass to {@link #stop(Phase, long)}.
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void stop(Phase phase, long start) {
+        long duration = System.nanoTime() - start;
+        counts.incrementAndGet(phase.ordinal());
+        nanos.addAndGet(phase.ordinal(), duration);
+    }
+
+    /**
+     * Feeds the measures recorded since the previous call to the timers of
+     * the registry, once per phase, called after each batch.
+     */
+    public synchronized void flush() {
+        Timer[] t = getTimers();
+        for (int i = 0; i < t.length; i++) {
+            long count = counts.get(i);
+            long time = nanos.get(i);
+            long batchCount = count - flushedCounts[i];
+            if (batchCount > 0) {
+                t[i].update((time - flushedNanos[i]) / batchCount,
+                        TimeUnit.NANOSECONDS);
+                flushedCounts[i] = count;
+                flushedNanos[i] = time;
+            }
+        }
+    }
+
+    public long getCount(Phase phase) {
+        return counts.get(phase.ordinal());
+    }
+
+    public long getTotalTime(Phase phase, TimeUnit unit) {
+        return unit.convert(nanos.get(phase.ordinal()), TimeUnit.NANOSECONDS);
+    }
+
+    protected String getGaugeName(Phase phase, String kind) {
+        return MetricRegistry.name(METRICS_PREFIX, "imports",
+                importId.replaceAll("[^A-Za-z0-9_.-]", "_"),
+                phase.getMetricName(), kind);
+    }
+
+    /**
+     * Publishes the figures of this import in the metrics registry.
+     */
+    public void register() {
+        MetricRegistry registry = getRegistry();
+        for (final Phase phase : Phase.values()) {
+            String countName = getGaugeName(phase, "count");
+            String timeName = getGaugeName(phase, "totalMillis");
+            registry.remove(countName);
+            registry.remove(timeName);
+            registry.register(countName, new Gauge<Long>() {
+                @Override
+                public Long getValue() {
+                    return Long.valueOf(getCount(phase));
+                }
+            });
+            registry.register(timeName, new Gauge<Long>() {
+                @Override
+                public Long getValue() {
+                    return Long.valueOf(getTotalTime(phase,
+                            TimeUnit.MILLISECONDS));
+                }
+            });
+        }
+    }
+
+    /**
+     * Flushes the last measures and removes the figures of this import from
+     * the metrics registry.
+     */
+    public void unregister() {
+        flush();
+        MetricRegistry registry = getRegistry();
+        for (Phase phase : Phase.values()) {
+            registry.remove(getGaugeName(phase, "count"));
+            registry.remove(getGaugeName(phase, "totalMillis"));
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(phase.getMetricName()).append('=').append(
+                    getCount(phase)).append('/').append(
+                    getTotalTime(phase, TimeUnit.MILLISECONDS)).append("ms");
+        }
+        return sb.toString();
+    }
+}
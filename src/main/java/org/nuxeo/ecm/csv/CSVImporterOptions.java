@@ -17,6 +17,7 @@
 
 package org.nuxeo.ecm.csv;
 
+import java.io.File;
 import java.io.Serializable;
 
 /**
@@ -29,6 +30,40 @@ public class CSVImporterOptions implements Serializable {
 
     public static final CSVImporterOptions DEFAULT_OPTIONS = new Builder().build();
 
+    /**
+     * What to do with a line targeting the same document as a previous line
+     * of the CSV file.
+     *
+     * @since 5.9.2
+     */
+    public enum DuplicateLinePolicy {
+        /** No detection, the line is imported as any other line. */
+        NONE,
+        /** The line is skipped. */
+        SKIP,
+        /**
+         * The line updates the document without checking whether it exists.
+         */
+        MERGE
+    }
+
+    /**
+     * What to do with the documents of the lines of the previous snapshot
+     * missing from the imported CSV file. A document whose children are
+     * still in the file is kept. The logs of the removals are on line 0,
+     * their message giving the line in the previous snapshot.
+     *
+     * @since 5.9.2
+     */
+    public enum RemovedDocumentPolicy {
+        /** The documents are kept. */
+        NONE,
+        /** The documents are deleted. */
+        DELETE,
+        /** The documents follow the {@code delete} lifecycle transition. */
+        TRASH
+    }
+
     public static class Builder {
 
         private CSVImporterDocumentFactory CSVImporterDocumentFactory = new DefaultCSVImporterDocumentFactory();
@@ -45,6 +80,46 @@ public class CSVImporterOptions implements Serializable {
 
         private int batchSize = 50;
 
+        private long distributedChunkSize = 0;
+
+        private boolean localChunks = false;
+
+        private boolean createMissingParents = false;
+
+        private String parentFolderType = "Folder";
+
+        private boolean sortByPathDepth = false;
+
+        private int sortMaxLinesInMemory = 100000;
+
+        private DuplicateLinePolicy duplicateLinePolicy = DuplicateLinePolicy.NONE;
+
+        private int maxLinesPerSecond = 0;
+
+        private int maxConcurrentTransactions = 0;
+
+        private long commitLatencyThreshold = 0;
+
+        private boolean deltaImport = false;
+
+        private File previousSnapshot;
+
+        private RemovedDocumentPolicy removedDocumentPolicy = RemovedDocumentPolicy.NONE;
+
+        private int commitRetries = 3;
+
+        private long commitRetryDelay = 100;
+
+        private boolean isolateLineFailures = false;
+
+        private boolean bulkMode = false;
+
+        private boolean deferredIndexing = false;
+
+        private int deferredIndexingInterval = 0;
+
+        private boolean deleteCSVFile = false;
+
         public Builder documentModelFactory(CSVImporterDocumentFactory factory) {
             this.CSVImporterDocumentFactory = factory;
             return this;
@@ -80,10 +155,267 @@ public class CSVImporterOptions implements Serializable {
             return this;
         }
 
+        /**
+         * Partitions the import in chunks of about {@code distributedChunkSize}
+         * bytes imported in parallel, {@code 0} to disable. The lines of a
+         * same created subtree are imported by the same chunk, see
+         * {@link CSVImportChunk}.
+         *
+         * @since 5.9.2
+         */
+        public Builder distributedChunkSize(long distributedChunkSize) {
+            this.distributedChunkSize = distributedChunkSize;
+            return this;
+        }
+
+        /**
+         * Imports the chunks of a distributed import on this node, on the
+         * threads of the {@link CSVImportChunkExecutor}, instead of the
+         * {@code csvImporterChunk} queue. The chunks of a delta import are
+         * always imported on this node, which holds its line fingerprints.
+         *
+         * @since 5.9.2
+         */
+        public Builder localChunks(boolean localChunks) {
+            this.localChunks = localChunks;
+            return this;
+        }
+
+        /**
+         * Creates the missing parent folders of the imported documents
+         * instead of failing.
+         *
+         * @since 5.9.2
+         */
+        public Builder createMissingParents(boolean createMissingParents) {
+            this.createMissingParents = createMissingParents;
+            return this;
+        }
+
+        /**
+         * Type of the folders created by {@link #createMissingParents}.
+         *
+         * @since 5.9.2
+         */
+        public Builder parentFolderType(String parentFolderType) {
+            this.parentFolderType = parentFolderType;
+            return this;
+        }
+
+        /**
+         * Sorts the CSV lines before importing them so that parent folders
+         * come before their children, whatever their order in the file.
+         * <p>
+         * A distributed import partitions the sorted file, each chunk then
+         * importing whole created subtrees in sorted order, see
+         * {@link #distributedChunkSize(long)}. The sorted file is only read
+         * by the node partitioning it, the chunks reading their lines from
+         * the {@link CSVImportLogStore} directory.
+         *
+         * @since 5.9.2
+         */
+        public Builder sortByPathDepth(boolean sortByPathDepth) {
+            this.sortByPathDepth = sortByPathDepth;
+            return this;
+        }
+
+        /**
+         * Maximum number of lines kept in memory when sorting, more lines
+         * being spilled to temporary files.
+         *
+         * @since 5.9.2
+         */
+        public Builder sortMaxLinesInMemory(int sortMaxLinesInMemory) {
+            this.sortMaxLinesInMemory = sortMaxLinesInMemory;
+            return this;
+        }
+
+        /**
+         * @since 5.9.2
+         */
+        public Builder duplicateLinePolicy(
+                DuplicateLinePolicy duplicateLinePolicy) {
+            this.duplicateLinePolicy = duplicateLinePolicy;
+            return this;
+        }
+
+        /**
+         * Maximum number of lines imported per second, {@code 0} for no
+         * limit. The chunks of a distributed import have this limit on each
+         * node running some of them.
+         *
+         * @since 5.9.2
+         */
+        public Builder maxLinesPerSecond(int maxLinesPerSecond) {
+            this.maxLinesPerSecond = maxLinesPerSecond;
+            return this;
+        }
+
+        /**
+         * Maximum number of transactions of the import running at the same
+         * time on each node, {@code 0} for no limit. The transactions of all
+         * the imports having such a maximum are also bounded on each node, see
+         * {@link CSVImportThrottle#MAX_CONCURRENT_TRANSACTIONS_PROPERTY}.
+         *
+         * @since 5.9.2
+         */
+        public Builder maxConcurrentTransactions(int maxConcurrentTransactions) {
+            this.maxConcurrentTransactions = maxConcurrentTransactions;
+            return this;
+        }
+
+        /**
+         * Commit latency in milliseconds above which the import backs off,
+         * {@code 0} to disable.
+         *
+         * @since 5.9.2
+         */
+        public Builder commitLatencyThreshold(long commitLatencyThreshold) {
+            this.commitLatencyThreshold = commitLatencyThreshold;
+            return this;
+        }
+
+        /**
+         * Skips the lines unchanged since the previous delta import of the
+         * same CSV file name in the same folder, without accessing the
+         * repository. Changes made to the documents, or to the files they
+         * reference, since that import are not detected.
+         *
+         * @since 5.9.2
+         */
+        public Builder deltaImport(boolean deltaImport) {
+            this.deltaImport = deltaImport;
+            return this;
+        }
+
+        /**
+         * Previous snapshot of the imported CSV file: only the lines added or
+         * changed since then are imported, lines being matched by name.
+         *
+         * @since 5.9.2
+         */
+        public Builder previousSnapshot(File previousSnapshot) {
+            this.previousSnapshot = previousSnapshot;
+            return this;
+        }
+
+        /**
+         * What to do with the documents of the lines removed since the
+         * {@link #previousSnapshot}.
+         *
+         * @since 5.9.2
+         */
+        public Builder removedDocumentPolicy(
+                RemovedDocumentPolicy removedDocumentPolicy) {
+            this.removedDocumentPolicy = removedDocumentPolicy;
+            return this;
+        }
+
+        /**
+         * Number of times the lines of a batch are imported again when its
+         * transaction fails to commit, before splitting it to find the lines
+         * that cannot be committed.
+         *
+         * @since 5.9.2
+         */
+        public Builder commitRetries(int commitRetries) {
+            this.commitRetries = commitRetries;
+            return this;
+        }
+
+        /**
+         * Delay in milliseconds before the first retry of a batch, doubled
+         * for each following retry.
+         *
+         * @since 5.9.2
+         */
+        public Builder commitRetryDelay(long commitRetryDelay) {
+            this.commitRetryDelay = commitRetryDelay;
+            return this;
+        }
+
+        /**
+         * Rolls back alone any line failing with a repository error, the
+         * other lines of its batch being imported again in a new transaction,
+         * so that nothing of a line in error is persisted. Lines marking the
+         * transaction rollback-only are always rolled back alone.
+         *
+         * @since 5.9.2
+         */
+        public Builder isolateLineFailures(boolean isolateLineFailures) {
+            this.isolateLineFailures = isolateLineFailures;
+            return this;
+        }
+
+        /**
+         * Imports the documents in bulk mode: the event listeners honoring
+         * the context data of the
+         * {@value CSVImporterWork#BULK_MODE_CONTEXT_DATA_PROPERTY} property
+         * skip the imported documents, and a
+         * {@value CSVImporterWork#BATCH_COMMITTED_EVENT} event is fired after
+         * each committed batch, for the work deferred to it.
+         *
+         * @since 5.9.2
+         */
+        public Builder bulkMode(boolean bulkMode) {
+            this.bulkMode = bulkMode;
+            return this;
+        }
+
+        /**
+         * Keeps the ids of the imported documents for a
+         * {@link CSVImportIndexingWork} reindexing them at once after the
+         * import, with the chain of the
+         * {@value CSVImportIndexingWork#INDEXING_CHAIN_PROPERTY} property.
+         * <p>
+         * The documents are still indexed one by one while imported, unless
+         * the context data of the
+         * {@value CSVImporterWork#DEFERRED_INDEXING_CONTEXT_DATA_PROPERTY}
+         * property disables their automatic indexing.
+         *
+         * @since 5.9.2
+         */
+        public Builder deferredIndexing(boolean deferredIndexing) {
+            this.deferredIndexing = deferredIndexing;
+            return this;
+        }
+
+        /**
+         * Number of committed batches after which their documents are
+         * indexed, with {@link #deferredIndexing}, {@code 0} to only index
+         * after the import.
+         *
+         * @since 5.9.2
+         */
+        public Builder deferredIndexingInterval(int deferredIndexingInterval) {
+            this.deferredIndexingInterval = deferredIndexingInterval;
+            return this;
+        }
+
+        /**
+         * Deletes the imported CSV file, a temporary copy of the uploaded
+         * one, when the import is over, cancelled or not started because
+         * the same import is already running.
+         *
+         * @since 5.9.2
+         */
+        public Builder deleteCSVFile(boolean deleteCSVFile) {
+            this.deleteCSVFile = deleteCSVFile;
+            return this;
+        }
+
         public CSVImporterOptions build() {
             return new CSVImporterOptions(CSVImporterDocumentFactory,
                     dateFormat, listSeparatorRegex, updateExisting,
-                    checkAllowedSubTypes, sendEmail, batchSize);
+                    checkAllowedSubTypes, sendEmail, batchSize,
+                    distributedChunkSize, localChunks, createMissingParents,
+                    parentFolderType, sortByPathDepth, sortMaxLinesInMemory,
+                    duplicateLinePolicy, maxLinesPerSecond,
+                    maxConcurrentTransactions, commitLatencyThreshold,
+                    deltaImport, previousSnapshot, removedDocumentPolicy,
+                    commitRetries, commitRetryDelay, isolateLineFailures,
+                    bulkMode, deferredIndexing, deferredIndexingInterval,
+                    deleteCSVFile);
         }
     }
 
@@ -101,11 +433,61 @@ public class CSVImporterOptions implements Serializable {
 
     protected final int batchSize;
 
+    protected final long distributedChunkSize;
+
+    protected final boolean localChunks;
+
+    protected final boolean createMissingParents;
+
+    protected final String parentFolderType;
+
+    protected final boolean sortByPathDepth;
+
+    protected final int sortMaxLinesInMemory;
+
+    protected final DuplicateLinePolicy duplicateLinePolicy;
+
+    protected final int maxLinesPerSecond;
+
+    protected final int maxConcurrentTransactions;
+
+    protected final long commitLatencyThreshold;
+
+    protected final boolean deltaImport;
+
+    protected final File previousSnapshot;
+
+    protected final RemovedDocumentPolicy removedDocumentPolicy;
+
+    protected final int commitRetries;
+
+    protected final long commitRetryDelay;
+
+    protected final boolean isolateLineFailures;
+
+    protected final boolean bulkMode;
+
+    protected final boolean deferredIndexing;
+
+    protected final int deferredIndexingInterval;
+
+    protected final boolean deleteCSVFile;
+
     protected CSVImporterOptions(
             CSVImporterDocumentFactory CSVImporterDocumentFactory,
             String dateFormat, String listSeparatorRegex,
             boolean updateExisting, boolean checkAllowedSubTypes,
-            boolean sendEmail, int batchSize) {
+            boolean sendEmail, int batchSize, long distributedChunkSize,
+            boolean localChunks, boolean createMissingParents,
+            String parentFolderType, boolean sortByPathDepth,
+            int sortMaxLinesInMemory,
+            DuplicateLinePolicy duplicateLinePolicy, int maxLinesPerSecond,
+            int maxConcurrentTransactions, long commitLatencyThreshold,
+            boolean deltaImport, File previousSnapshot,
+            RemovedDocumentPolicy removedDocumentPolicy, int commitRetries,
+            long commitRetryDelay, boolean isolateLineFailures,
+            boolean bulkMode, boolean deferredIndexing,
+            int deferredIndexingInterval, boolean deleteCSVFile) {
         this.CSVImporterDocumentFactory = CSVImporterDocumentFactory;
         this.dateFormat = dateFormat;
         this.listSeparatorRegex = listSeparatorRegex;
@@ -113,6 +495,26 @@ public class CSVImporterOptions implements Serializable {
         this.checkAllowedSubTypes = checkAllowedSubTypes;
         this.sendEmail = sendEmail;
         this.batchSize = batchSize;
+        this.distributedChunkSize = distributedChunkSize;
+        this.localChunks = localChunks;
+        this.createMissingParents = createMissingParents;
+        this.parentFolderType = parentFolderType;
+        this.sortByPathDepth = sortByPathDepth;
+        this.sortMaxLinesInMemory = sortMaxLinesInMemory;
+        this.duplicateLinePolicy = duplicateLinePolicy;
+        this.maxLinesPerSecond = maxLinesPerSecond;
+        this.maxConcurrentTransactions = maxConcurrentTransactions;
+        this.commitLatencyThreshold = commitLatencyThreshold;
+        this.deltaImport = deltaImport;
+        this.previousSnapshot = previousSnapshot;
+        this.removedDocumentPolicy = removedDocumentPolicy;
+        this.commitRetries = commitRetries;
+        this.commitRetryDelay = commitRetryDelay;
+        this.isolateLineFailures = isolateLineFailures;
+        this.bulkMode = bulkMode;
+        this.deferredIndexing = deferredIndexing;
+        this.deferredIndexingInterval = deferredIndexingInterval;
+        this.deleteCSVFile = deleteCSVFile;
     }
 
     public CSVImporterDocumentFactory getCSVImporterDocumentFactory() {
@@ -142,4 +544,144 @@ public class CSVImporterOptions implements Serializable {
     public int getBatchSize() {
         return batchSize;
     }
+
+    /**
+     * @since 5.9.2
+     */
+    public long getDistributedChunkSize() {
+        return distributedChunkSize;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public boolean localChunks() {
+        return localChunks;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public boolean createMissingParents() {
+        return createMissingParents;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public String getParentFolderType() {
+        return parentFolderType;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public boolean sortByPathDepth() {
+        return sortByPathDepth;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public int getSortMaxLinesInMemory() {
+        return sortMaxLinesInMemory;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public DuplicateLinePolicy getDuplicateLinePolicy() {
+        return duplicateLinePolicy;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public int getMaxLinesPerSecond() {
+        return maxLinesPerSecond;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public int getMaxConcurrentTransactions() {
+        return maxConcurrentTransactions;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public long getCommitLatencyThreshold() {
+        return commitLatencyThreshold;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public boolean deltaImport() {
+        return deltaImport;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public File getPreviousSnapshot() {
+        return previousSnapshot;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public RemovedDocumentPolicy getRemovedDocumentPolicy() {
+        return removedDocumentPolicy;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public int getCommitRetries() {
+        return commitRetries;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public long getCommitRetryDelay() {
+        return commitRetryDelay;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public boolean isolateLineFailures() {
+        return isolateLineFailures;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public boolean bulkMode() {
+        return bulkMode;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public boolean deferredIndexing() {
+        return deferredIndexing;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public int getDeferredIndexingInterval() {
+        return deferredIndexingInterval;
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    public boolean deleteCSVFile() {
+        return deleteCSVFile;
+    }
 }
@@ -0,0 +1,39 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+/**
+ * Document factory given the values of each line as a {@link CSVImportRow}.
+ * The row is reused for the next line of the same type, so the factory must
+ * not keep the values after its call, or must copy them with
+ * {@link CSVImportRow#toMap()}. It can read the primitive slots of the row
+ * instead of its boxed values.
+ * <p>
+ * The missing parents created with
+ * {@link CSVImporterOptions.Builder#createMissingParents(boolean)} are given
+ * a plain map holding their title instead of a row.
+ * <p>
+ * The other factories are given a copy of the values of each line, except
+ * {@link DefaultCSVImporterDocumentFactory} itself which does not keep them.
+ *
+ * @since 5.9.2
+ */
+public interface CSVImporterRowDocumentFactory extends
+        CSVImporterDocumentFactory {
+
+}
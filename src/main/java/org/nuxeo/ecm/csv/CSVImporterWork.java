@@ -22,6 +22,7 @@ import static org.nuxeo.ecm.csv.Constants.CSV_NAME_COL;
 import static org.nuxeo.ecm.csv.Constants.CSV_TYPE_COL;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
@@ -30,17 +31,19 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.codehaus.jackson.JsonProcessingException;
 import org.nuxeo.common.utils.Path;
 import org.nuxeo.ecm.automation.AutomationService;
 import org.nuxeo.ecm.automation.OperationChain;
@@ -54,23 +57,20 @@ import org.nuxeo.ecm.core.api.ClientException;
 import org.nuxeo.ecm.core.api.ClientRuntimeException;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.LifeCycleConstants;
 import org.nuxeo.ecm.core.api.NuxeoPrincipal;
 import org.nuxeo.ecm.core.api.PathRef;
-import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
+import org.nuxeo.ecm.core.event.EventService;
+import org.nuxeo.ecm.core.event.impl.EventContextImpl;
 import org.nuxeo.ecm.core.schema.DocumentType;
 import org.nuxeo.ecm.core.schema.SchemaManager;
-import org.nuxeo.ecm.core.schema.types.Field;
-import org.nuxeo.ecm.core.schema.types.ListType;
-import org.nuxeo.ecm.core.schema.types.SimpleTypeImpl;
-import org.nuxeo.ecm.core.schema.types.Type;
-import org.nuxeo.ecm.core.schema.types.primitives.BooleanType;
-import org.nuxeo.ecm.core.schema.types.primitives.DateType;
-import org.nuxeo.ecm.core.schema.types.primitives.DoubleType;
-import org.nuxeo.ecm.core.schema.types.primitives.IntegerType;
-import org.nuxeo.ecm.core.schema.types.primitives.LongType;
-import org.nuxeo.ecm.core.schema.types.primitives.StringType;
 import org.nuxeo.ecm.core.work.AbstractWork;
+import org.nuxeo.ecm.core.work.api.Work.State;
+import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.ecm.csv.CSVImportLog.Status;
+import org.nuxeo.ecm.csv.CSVImporterMetrics.Phase;
+import org.nuxeo.ecm.csv.CSVImporterOptions.DuplicateLinePolicy;
+import org.nuxeo.ecm.csv.CSVImporterOptions.RemovedDocumentPolicy;
 import org.nuxeo.ecm.platform.ec.notification.service.NotificationService;
 import org.nuxeo.ecm.platform.ec.notification.service.NotificationServiceHelper;
 import org.nuxeo.ecm.platform.types.TypeManager;
@@ -79,8 +79,11 @@ import org.nuxeo.ecm.platform.url.DocumentViewImpl;
 import org.nuxeo.ecm.platform.url.api.DocumentView;
 import org.nuxeo.ecm.platform.usermanager.UserManager;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+import org.nuxeo.runtime.transaction.TransactionRuntimeException;
 
 import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
 
 /**
  * Work task to import form a CSV file. Because the file is read from the local
@@ -100,6 +103,93 @@ public class CSVImporterWork extends AbstractWork {
 
     public static final String CONTENT_FILED_TYPE_NAME = "content";
 
+    protected static final long CHUNK_POLL_INTERVAL = 500;
+
+    /**
+     * Estimated number of bytes of a CSV line, to size per-line structures
+     * from the file length.
+     */
+    protected static final long ESTIMATED_LINE_LENGTH = 128;
+
+    /**
+     * Maximum number of errors of a same kind written to the server log for
+     * one import.
+     *
+     * @since 5.9.2
+     */
+    public static final String MAX_LOGGED_ERRORS_PROPERTY = "nuxeo.csv.importer.maxLoggedErrors";
+
+    public static final long DEFAULT_MAX_LOGGED_ERRORS = 10;
+
+    /**
+     * Maximum number of skipped and error lines listed in the result email,
+     * all of them being in the report of {@link CSVImportLogStore#getReport()}.
+     *
+     * @since 5.9.2
+     */
+    public static final String MAIL_MAX_LOGS_PROPERTY = "nuxeo.csv.importer.mailMaxLogs";
+
+    public static final int DEFAULT_MAIL_MAX_LOGS = 100;
+
+    /**
+     * Maximum number of lines of a batch, as a multiple of the batch size,
+     * for batches of mostly skipped lines.
+     */
+    protected static final int MAX_BATCH_LINES_FACTOR = 10;
+
+    protected static final String ROLLBACK_ONLY_MESSAGE = "transaction marked rollback-only";
+
+    /**
+     * Comma separated context data keys set to {@code true} on the documents
+     * imported in {@link CSVImporterOptions#bulkMode()}, to disable the
+     * listeners honoring them.
+     *
+     * @since 5.9.2
+     */
+    public static final String BULK_MODE_CONTEXT_DATA_PROPERTY = "nuxeo.csv.importer.bulkModeContextData";
+
+    public static final String DEFAULT_BULK_MODE_CONTEXT_DATA = "disableNotificationService,disableAuditLogger";
+
+    /**
+     * Comma separated context data keys set to {@code true} on the documents
+     * imported with {@link CSVImporterOptions#deferredIndexing()}, to disable
+     * their automatic indexing, none by default.
+     * <p>
+     * Only set it, for instance to {@code disableAutoIndexing}, along with the
+     * {@value CSVImportIndexingWork#INDEXING_CHAIN_PROPERTY} chain or a
+     * listener of the {@link CSVImportIndexingWork#INDEX_DOCUMENTS_EVENT}
+     * reindexing the documents: otherwise they are never indexed.
+     *
+     * @since 5.9.2
+     */
+    public static final String DEFERRED_INDEXING_CONTEXT_DATA_PROPERTY = "nuxeo.csv.importer.deferredIndexingContextData";
+
+    public static final String DEFAULT_DEFERRED_INDEXING_CONTEXT_DATA = "";
+
+    /**
+     * Context data set on all the documents imported in bulk mode, for the
+     * listeners deferring their work to the {@link #BATCH_COMMITTED_EVENT}.
+     *
+     * @since 5.9.2
+     */
+    public static final String BULK_MODE_CONTEXT_DATA = "csvImporterBulkMode";
+
+    /**
+     * Event fired after each committed batch of an import in bulk mode,
+     * outside of any transaction, with the {@link #IMPORT_ID_PROPERTY} and
+     * {@link #DOCUMENT_IDS_PROPERTY} properties.
+     *
+     * @since 5.9.2
+     */
+    public static final String BATCH_COMMITTED_EVENT = "csvImportBatchCommitted";
+
+    public static final String IMPORT_ID_PROPERTY = "importId";
+
+    /**
+     * The ids of the documents created or updated by the batch.
+     */
+    public static final String DOCUMENT_IDS_PROPERTY = "documentIds";
+
     protected String parentPath;
 
     protected String username;
@@ -114,7 +204,141 @@ public class CSVImporterWork extends AbstractWork {
 
     protected Date startDate;
 
-    protected List<CSVImportLog> importLogs = new ArrayList<CSVImportLog>();
+    /**
+     * Durable storage of the import logs, written while importing.
+     */
+    protected transient CSVImportLogStore logStore;
+
+    protected CSVImporterMetrics metrics;
+
+    /**
+     * Whether the lines read have their original line number as last column,
+     * when reading a sorted copy of the CSV file.
+     */
+    protected boolean lineNumberColumn;
+
+    protected boolean cancelled;
+
+    protected transient CSVImportControl control;
+
+    /**
+     * The throttle holding a transaction slot for the current transaction.
+     */
+    protected transient CSVImportThrottle throttle;
+
+    /**
+     * Number of errors per message and column, for the server log.
+     */
+    protected transient Map<String, long[]> errorCounts;
+
+    protected transient Long maxLoggedErrors;
+
+    protected transient CSVImportPathTrie knownFolders;
+
+    protected transient CSVImportPathSet importedPaths;
+
+    /**
+     * Row buffer of the columns of the header converted for each document
+     * type.
+     */
+    protected transient Map<String, CSVImportRow> rows;
+
+    /**
+     * Names and line numbers of the lines removed since the previous
+     * snapshot, whose documents are to be removed.
+     */
+    protected transient File removedLinesFile;
+
+    /**
+     * Lines of the current transaction and their logs, while importing
+     * lines.
+     */
+    protected transient CSVImportBatch batch;
+
+    /**
+     * Cause of the last failed commit of a batch, {@code null} if its
+     * transaction was marked rollback-only.
+     */
+    protected transient Throwable commitFailure;
+
+    /**
+     * Whether the repository failed while importing the current line, which
+     * may have been partly written.
+     */
+    protected transient boolean lineFailed;
+
+    protected transient Map<String, Serializable> contextData;
+
+    /**
+     * Ids of the committed documents to index, with deferred indexing.
+     */
+    protected transient CSVImportIdFile indexingIds;
+
+    /**
+     * Number of batches committed since their documents were last handed
+     * over to indexing.
+     */
+    protected transient int indexingBatchCount;
+
+    /**
+     * Number of id files already handed over to indexing.
+     */
+    protected transient int indexingFileCount;
+
+    /**
+     * Id files of the chunks of a distributed import.
+     */
+    protected transient List<File> chunkIndexingFiles;
+
+    /**
+     * The file being imported: the CSV file, or its sorted or changed lines.
+     */
+    protected transient File importFile;
+
+    /**
+     * Chunk works started by a distributed import.
+     */
+    protected transient List<CSVImporterChunkWork> chunkWorks;
+
+    protected transient CSVImportChunkExecutor.Execution chunkExecution;
+
+    /**
+     * Whether this work goes on with a paused import, see
+     * {@link CSVImportControl#suspend(CSVImporterWork)}.
+     */
+    protected boolean resumed;
+
+    /**
+     * Id of the current run of the import, shared by its chunks, see
+     * {@link CSVImportControl#startRun(long)}.
+     */
+    protected long runId;
+
+    /**
+     * Whether this work ended because its import is paused.
+     */
+    protected transient boolean suspended;
+
+    /**
+     * Whether all the lines of the import file are imported, the documents
+     * of the removed lines being next.
+     */
+    protected boolean linesImported;
+
+    /**
+     * Number of lines of the import file read, and of removed lines handled.
+     */
+    protected transient long readLineCount;
+
+    protected transient long removedLineCount;
+
+    /**
+     * Number of lines of the import file, and of removed lines, handled by
+     * the previous works of a paused import.
+     */
+    protected long resumeLineCount;
+
+    protected long resumeRemovedCount;
 
     public CSVImporterWork(String id) {
         super(id);
@@ -131,6 +355,37 @@ public class CSVImporterWork extends AbstractWork {
         this.csvFileName = csvFileName;
         this.options = options;
         startDate = new Date();
+        metrics = new CSVImporterMetrics(getId());
+    }
+
+    /**
+     * Creates the work going on with a paused import from the point where the
+     * given work was suspended.
+     *
+     * @since 5.9.2
+     */
+    protected CSVImporterWork(CSVImporterWork suspendedWork) {
+        super(suspendedWork.getId());
+        setDocument(suspendedWork.repositoryName, null);
+        parentPath = suspendedWork.parentPath;
+        username = suspendedWork.username;
+        csvFile = suspendedWork.csvFile;
+        csvFileName = suspendedWork.csvFileName;
+        options = suspendedWork.options;
+        startDate = suspendedWork.startDate;
+        lineNumberColumn = suspendedWork.lineNumberColumn;
+        importFile = suspendedWork.importFile;
+        removedLinesFile = suspendedWork.removedLinesFile;
+        importedPaths = suspendedWork.importedPaths;
+        chunkWorks = suspendedWork.chunkWorks;
+        chunkExecution = suspendedWork.chunkExecution;
+        indexingFileCount = suspendedWork.indexingFileCount;
+        linesImported = suspendedWork.linesImported;
+        resumeLineCount = suspendedWork.readLineCount;
+        resumeRemovedCount = suspendedWork.removedLineCount;
+        runId = suspendedWork.runId;
+        resumed = true;
+        metrics = new CSVImporterMetrics(getId());
     }
 
     @Override
@@ -138,116 +393,1448 @@ public class CSVImporterWork extends AbstractWork {
         return CATEGORY_CSV_IMPORTER;
     }
 
+    /**
+     * Returns {@code true} if this work goes on with a paused import.
+     *
+     * @since 5.9.2
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
     @Override
     public String getTitle() {
         return String.format("CSV import in '%s'", parentPath);
     }
 
     public List<CSVImportLog> getImportLogs() {
-        return new ArrayList<CSVImportLog>(importLogs);
+        CSVImportLogStore store = CSVImportLogStore.open(getId());
+        if (store == null) {
+            return new ArrayList<CSVImportLog>();
+        }
+        try {
+            return store.getLogs();
+        } catch (IOException e) {
+            throw new ClientRuntimeException(e);
+        }
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    protected CSVImportLogStore getLogStore() throws IOException {
+        if (logStore == null && resumed) {
+            // logs of the previous works of the paused import
+            logStore = CSVImportLogStore.open(getId());
+        }
+        if (logStore == null) {
+            logStore = CSVImportLogStore.create(getId());
+        }
+        return logStore;
+    }
+
+    /**
+     * Flushes the import logs, and closes the store if the import is done.
+     *
+     * @since 5.9.2
+     */
+    protected void flushLogStore(boolean completed) {
+        if (logStore == null) {
+            return;
+        }
+        try {
+            if (completed) {
+                logStore.close(true);
+            } else {
+                logStore.flush();
+            }
+        } catch (IOException e) {
+            log.error("Unable to write the logs of import " + getId(), e);
+        }
+    }
+
+    /**
+     * Closes the store of the logs of a suspended work, whose import is not
+     * done.
+     *
+     * @since 5.9.2
+     */
+    protected void closeLogStore() {
+        if (logStore == null) {
+            return;
+        }
+        try {
+            logStore.close(false);
+        } catch (IOException e) {
+            log.error("Unable to write the logs of import " + getId(), e);
+        }
+        logStore = null;
+    }
+
+    /**
+     * Adds an import log, stored once the lines of the current batch are
+     * committed.
+     *
+     * @since 5.9.2
+     */
+    protected void addImportLog(CSVImportLog importLog) {
+        if (batch != null) {
+            batch.addLog(importLog);
+        } else {
+            storeImportLog(importLog);
+        }
+    }
+
+    /**
+     * Counts a line unchanged since the previous import, instead of logging
+     * it: there may be millions of them.
+     *
+     * @since 5.9.2
+     */
+    protected void addUnchangedLine() {
+        if (batch != null) {
+            batch.addUnchangedLine();
+        } else {
+            storeUnchangedLines(1);
+        }
+    }
+
+    /**
+     * Counts unchanged lines in the store and the {@link CSVImportRegistry}
+     * entry of the import.
+     *
+     * @since 5.9.2
+     */
+    protected void storeUnchangedLines(long count) {
+        if (count == 0) {
+            return;
+        }
+        try {
+            getLogStore().addUnchanged(count);
+        } catch (IOException e) {
+            throw new ClientRuntimeException(e);
+        }
+        CSVImportRegistry.get(getControlId()).addUnchanged(count);
+    }
+
+    /**
+     * Stores an import log, also counted in the {@link CSVImportRegistry}
+     * entry of the import.
+     *
+     * @since 5.9.2
+     */
+    protected void storeImportLog(CSVImportLog importLog) {
+        try {
+            getLogStore().append(importLog);
+        } catch (IOException e) {
+            throw new ClientRuntimeException(e);
+        }
+        CSVImportRegistry.get(getControlId()).add(importLog);
+    }
+
+    /**
+     * Returns the per-phase counters and timers of this import.
+     *
+     * @since 5.9.2
+     */
+    public CSVImporterMetrics getMetrics() {
+        if (metrics == null) {
+            metrics = new CSVImporterMetrics(getId());
+        }
+        return metrics;
     }
 
     @Override
     public void work() throws Exception {
-        setStatus("Importing");
-        initSession();
-        CSVReader csvReader = null;
         try {
-            csvReader = new CSVReader(new FileReader(csvFile));
-            doImport(csvReader);
-        } catch (IOException e) {
-            logError(0, "Error while doing the import: %s",
-                    "label.csv.importer.errorDuringImport", e.getMessage());
-            log.debug(e, e);
+            doWork();
         } finally {
-            if (csvReader != null) {
-                csvReader.close();
+            if (suspended) {
+                // the logs are read while paused, the next work appends to
+                // them
+                closeLogStore();
+            } else {
+                flushLogStore(true);
+                CSVImportRegistry.complete(getControlId());
+                // fingerprints of a failed delta import are dropped
+                getControl().removeDelta();
+                deleteCSVFile();
             }
+            // frees the slot of the import for the next pending one
+            CSVImportScheduler.getInstance().done(getControlId());
+        }
+    }
+
+    /**
+     * Deletes the imported CSV file if required by the options, see
+     * {@link CSVImporterOptions.Builder#deleteCSVFile(boolean)}.
+     *
+     * @since 5.9.2
+     */
+    protected void deleteCSVFile() {
+        if (options.deleteCSVFile()) {
+            FileUtils.deleteQuietly(csvFile);
+        }
+    }
+
+    protected void doWork() throws Exception {
+        setStatus("Importing");
+        if (!resumed) {
+            // the limits of the options of this run
+            runId = System.currentTimeMillis();
+            getControl().startRun(runId);
         }
+        getLogStore();
+        initSession();
+        getMetrics().register();
+        try {
+            CSVReader csvReader = null;
+            try {
+                if (resumed) {
+                    // prepared by the previous works of the paused import
+                } else if (options.getPreviousSnapshot() != null) {
+                    importFile = diffSnapshots();
+                } else if (options.sortByPathDepth()) {
+                    importFile = sortByPathDepth();
+                } else {
+                    importFile = csvFile;
+                }
+                if (importFile == null) {
+                    // nothing to import, error already logged
+                } else if (linesImported) {
+                    // by the previous works of the paused import
+                } else if (chunkWorks != null || isDistributed(importFile)) {
+                    doDistributedImport(importFile);
+                } else {
+                    csvReader = new CSVReader(new FileReader(importFile));
+                    doImport(csvReader);
+                }
+                linesImported = !suspended;
+                if (removedLinesFile != null && !cancelled && !suspended) {
+                    removeDocuments();
+                }
+            } catch (IOException e) {
+                logError(0, null, e, "Error while doing the import: %s",
+                        "label.csv.importer.errorDuringImport", e.getMessage());
+            } finally {
+                if (csvReader != null) {
+                    csvReader.close();
+                }
+                if (!suspended) {
+                    if (importFile != null && importFile != csvFile) {
+                        importFile.delete();
+                    }
+                    FileUtils.deleteQuietly(removedLinesFile);
+                }
+                if (options.deferredIndexing()) {
+                    // the committed documents, even if the import failed
+                    scheduleRemainingIndexing();
+                }
+            }
+            if (suspended) {
+                log.info(String.format("Import of CSV file %s paused",
+                        csvFileName));
+                return;
+            }
+            saveDelta();
+            logErrorSummary();
+            // the mail reads the stored logs
+            flushLogStore(true);
 
-        if (options.sendEmail()) {
-            setStatus("Sending email");
-            sendMail();
+            if (options.sendEmail()) {
+                setStatus("Sending email");
+                long start = metrics.start();
+                try {
+                    sendMail();
+                } finally {
+                    metrics.stop(Phase.SEND_MAIL, start);
+                }
+            }
+            if (log.isInfoEnabled()) {
+                log.info(String.format("Import metrics of CSV file %s: %s",
+                        csvFileName, metrics));
+            }
+        } finally {
+            metrics.unregister();
         }
         setStatus(null);
     }
 
+    protected String[] readNext(CSVReader csvReader) throws IOException {
+        long start = metrics.start();
+        try {
+            return csvReader.readNext();
+        } finally {
+            metrics.stop(Phase.READ_NEXT, start);
+        }
+    }
+
     protected void doImport(CSVReader csvReader) throws IOException {
         log.info(String.format("Importing CSV file: %s", csvFileName));
 
-        String[] header = csvReader.readNext();
+        String[] header = readHeader(csvReader);
         if (header == null) {
-            // empty file?
-            logError(0, "No header line, empty file?",
-                    "label.csv.importer.emptyFile");
             return;
         }
+        importLines(csvReader, header, 1);
+        log.info(String.format("Done importing CSV file: %s", csvFileName));
+    }
+
+    /**
+     * Sorts the lines of the CSV file so that parent folders are imported
+     * before their children, see
+     * {@link CSVExternalSorter.PathDepthComparator}.
+     *
+     * @return the sorted file, or {@code null} if the header is invalid
+     * @since 5.9.2
+     */
+    protected File sortByPathDepth() throws IOException {
+        setStatus("Sorting");
+        CSVReader csvReader = new CSVReader(new FileReader(csvFile));
+        try {
+            String[] header = readHeader(csvReader);
+            if (header == null) {
+                return null;
+            }
+            CSVExternalSorter sorter = new CSVExternalSorter(
+                    new CSVExternalSorter.PathDepthComparator(getColumnIndex(
+                            header, CSV_NAME_COL)),
+                    options.getSortMaxLinesInMemory());
+            File sortedFile = sorter.sort(csvReader, header, 1);
+            lineNumberColumn = true;
+            return sortedFile;
+        } finally {
+            csvReader.close();
+            setStatus("Importing");
+        }
+    }
 
-        // find the index for the required name and type values
-        int nameIndex = -1;
-        int typeIndex = -1;
-        for (int col = 0; col < header.length; col++) {
-            if (CSV_NAME_COL.equals(header[col])) {
-                nameIndex = col;
-            } else if (CSV_TYPE_COL.equals(header[col])) {
-                typeIndex = col;
+    /**
+     * Compares the CSV file with the previous snapshot of the options, both
+     * being sorted by name so that they are joined without holding them in
+     * memory. Unchanged lines are logged as skipped, and the lines removed
+     * since the previous snapshot are kept for {@link #removeDocuments()}.
+     *
+     * @return the added and changed lines sorted by name, see
+     *         {@link CSVExternalSorter.NameComparator}, or {@code null} if the
+     *         header is invalid
+     * @since 5.9.2
+     */
+    protected File diffSnapshots() throws IOException {
+        setStatus("Comparing snapshots");
+        File sortedFile = null;
+        File sortedPreviousFile = null;
+        try {
+            String[] header;
+            CSVReader csvReader = new CSVReader(new FileReader(csvFile));
+            try {
+                header = readHeader(csvReader);
+                if (header == null) {
+                    return null;
+                }
+                sortedFile = sortByName(csvReader, header);
+            } finally {
+                csvReader.close();
+            }
+            String[] previousHeader;
+            csvReader = new CSVReader(new FileReader(
+                    options.getPreviousSnapshot()));
+            try {
+                previousHeader = csvReader.readNext();
+                if (previousHeader != null
+                        && getColumnIndex(previousHeader, CSV_NAME_COL) != -1) {
+                    sortedPreviousFile = sortByName(csvReader, previousHeader);
+                } else {
+                    log.warn(String.format(
+                            "Missing 'name' column in the previous snapshot of CSV file %s, importing all the lines",
+                            csvFileName));
+                }
+            } finally {
+                csvReader.close();
+            }
+            File changesFile = joinSnapshots(sortedFile, header,
+                    sortedPreviousFile, previousHeader);
+            lineNumberColumn = true;
+            return changesFile;
+        } finally {
+            FileUtils.deleteQuietly(sortedFile);
+            FileUtils.deleteQuietly(sortedPreviousFile);
+            setStatus("Importing");
+        }
+    }
+
+    protected File sortByName(CSVReader csvReader, String[] header)
+            throws IOException {
+        CSVExternalSorter sorter = new CSVExternalSorter(
+                new CSVExternalSorter.NameComparator(getColumnIndex(header,
+                        CSV_NAME_COL)), options.getSortMaxLinesInMemory());
+        return sorter.sort(csvReader, null, 1);
+    }
+
+    /**
+     * Merge-joins the lines of the CSV file and of the previous snapshot,
+     * both sorted by name.
+     * <p>
+     * A name of the previous snapshot is removed once, and only if neither
+     * it nor any of its children are in the CSV file.
+     *
+     * @param sortedPreviousFile the sorted previous snapshot, {@code null} if
+     *            there is none
+     * @return the added and changed lines
+     * @since 5.9.2
+     */
+    protected File joinSnapshots(File sortedFile, String[] header,
+            File sortedPreviousFile, String[] previousHeader)
+            throws IOException {
+        int nameIndex = getColumnIndex(header, CSV_NAME_COL);
+        int previousNameIndex = -1;
+        int[] previousColumns = null;
+        if (sortedPreviousFile != null) {
+            previousNameIndex = getColumnIndex(previousHeader, CSV_NAME_COL);
+            previousColumns = new int[header.length];
+            for (int col = 0; col < header.length; col++) {
+                previousColumns[col] = getColumnIndex(previousHeader,
+                        header[col]);
+            }
+        }
+        boolean removeDocuments = sortedPreviousFile != null
+                && options.getRemovedDocumentPolicy() != RemovedDocumentPolicy.NONE;
+        File changesFile = File.createTempFile("csvdiff", ".csv");
+        if (removeDocuments) {
+            removedLinesFile = File.createTempFile("csvremoved", ".csv");
+        }
+        CSVReader csvReader = new CSVReader(new FileReader(sortedFile));
+        CSVReader previousReader = sortedPreviousFile == null ? null
+                : new CSVReader(new FileReader(sortedPreviousFile));
+        CSVWriter changesWriter = CSVExternalSorter.newWriter(changesFile);
+        CSVWriter removedWriter = removeDocuments ? CSVExternalSorter.newWriter(removedLinesFile)
+                : null;
+        try {
+            changesWriter.writeNext(header);
+            String[] line = csvReader.readNext();
+            String[] previousLine = previousReader == null ? null
+                    : previousReader.readNext();
+            // last name read from the CSV file, and last removed name
+            String lastName = null;
+            String lastRemovedName = null;
+            while (line != null || previousLine != null) {
+                String name = line == null ? null
+                        : CSVExternalSorter.NameComparator.getName(line,
+                                nameIndex);
+                String previousName = previousLine == null ? null
+                        : CSVExternalSorter.NameComparator.getName(
+                                previousLine, previousNameIndex);
+                int cmp;
+                if (line == null) {
+                    cmp = 1;
+                } else if (previousLine == null || name.isEmpty()) {
+                    // lines without name are imported to report them
+                    cmp = -1;
+                } else {
+                    cmp = CSVExternalSorter.NameComparator.compareNames(name,
+                            previousName);
+                }
+                if (cmp < 0) {
+                    changesWriter.writeNext(line);
+                    if (!name.isEmpty()) {
+                        lastName = name;
+                    }
+                    line = csvReader.readNext();
+                } else if (cmp > 0) {
+                    if (removeDocuments && !previousName.isEmpty()
+                            && !previousName.equals(lastName)
+                            && !previousName.equals(lastRemovedName)
+                            && !(name != null && name.startsWith(previousName
+                                    + '/'))) {
+                        // the children of the name come right after it
+                        removedWriter.writeNext(new String[] {
+                                previousName,
+                                Long.toString(CSVExternalSorter.getLineNumber(previousLine)) });
+                        lastRemovedName = previousName;
+                    }
+                    previousLine = previousReader.readNext();
+                } else {
+                    if (isSameLine(line, previousLine, previousColumns)) {
+                        addUnchangedLine();
+                    } else {
+                        changesWriter.writeNext(line);
+                    }
+                    lastName = name;
+                    line = csvReader.readNext();
+                    previousLine = previousReader.readNext();
+                }
+            }
+        } finally {
+            csvReader.close();
+            if (previousReader != null) {
+                previousReader.close();
+            }
+            changesWriter.close();
+            if (removedWriter != null) {
+                removedWriter.close();
+            }
+        }
+        return changesFile;
+    }
+
+    /**
+     * Compares the trimmed values of two sorted lines, the columns of the
+     * previous line being mapped to the ones of the current header.
+     */
+    protected static boolean isSameLine(String[] line, String[] previousLine,
+            int[] previousColumns) {
+        for (int col = 0; col < previousColumns.length; col++) {
+            // the last column is the line number
+            String value = col < line.length - 1 ? line[col].trim() : "";
+            int previousCol = previousColumns[col];
+            String previousValue = previousCol != -1
+                    && previousCol < previousLine.length - 1 ? previousLine[previousCol].trim()
+                    : "";
+            if (!value.equals(previousValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the documents of the lines removed since the previous snapshot,
+     * following the {@link RemovedDocumentPolicy} of the options.
+     *
+     * @since 5.9.2
+     */
+    protected void removeDocuments() throws IOException {
+        setStatus("Removing documents");
+        CSVReader csvReader = new CSVReader(new FileReader(removedLinesFile));
+        try {
+            int batchSize = options.getBatchSize();
+            long docsRemovedCount = 0;
+            String[] line;
+            while ((line = csvReader.readNext()) != null) {
+                if (removedLineCount < resumeRemovedCount) {
+                    // handled by the previous works of the paused import
+                    removedLineCount++;
+                    continue;
+                }
+                if (checkInterruption()) {
+                    break;
+                }
+                throttle();
+                removedLineCount++;
+                if (removeDocument(Long.parseLong(line[1]), line[0])) {
+                    docsRemovedCount++;
+                    if (docsRemovedCount % batchSize == 0) {
+                        commitOrRollbackTransaction();
+                        startTransaction();
+                    }
+                }
+            }
+        } finally {
+            csvReader.close();
+            commitOrRollbackTransaction();
+            startTransaction();
+            setStatus("Importing");
+        }
+    }
+
+    /**
+     * Removes the document of a line of the previous snapshot.
+     * <p>
+     * The line is not one of the CSV file, so the logs are on line 0, their
+     * message giving the line in the previous snapshot.
+     *
+     * @param lineNumber the line number in the previous snapshot
+     * @return {@code true} if the document has been removed
+     * @since 5.9.2
+     */
+    protected boolean removeDocument(long lineNumber, String name) {
+        String path = new Path(parentPath).append(name).toString();
+        String previousLine = Long.toString(lineNumber);
+        DocumentRef docRef = new PathRef(path);
+        try {
+            if (!session.exists(docRef)) {
+                // already removed, or removed with its parent
+                addImportLog(CSVImportLog.fromTemplate(0, Status.SKIPPED,
+                        "Removed document '%s' does not exist (line %s of the previous snapshot)",
+                        "label.csv.importer.removedDocumentNotFound", path,
+                        previousLine));
+                return false;
+            }
+            if (options.getRemovedDocumentPolicy() == RemovedDocumentPolicy.TRASH) {
+                if (!session.getAllowedStateTransitions(docRef).contains(
+                        LifeCycleConstants.DELETE_TRANSITION)) {
+                    logError(0,
+                            "Unable to trash document '%s' (line %s of the previous snapshot)",
+                            "label.csv.importer.unableToTrash", path,
+                            previousLine);
+                    return false;
+                }
+                session.followTransition(docRef,
+                        LifeCycleConstants.DELETE_TRANSITION);
+                addImportLog(CSVImportLog.fromTemplate(0, Status.SUCCESS,
+                        "Document '%s' trashed (line %s of the previous snapshot)",
+                        "label.csv.importer.documentTrashed", path,
+                        previousLine));
+            } else {
+                session.removeDocument(docRef);
+                addImportLog(CSVImportLog.fromTemplate(0, Status.SUCCESS,
+                        "Document '%s' removed (line %s of the previous snapshot)",
+                        "label.csv.importer.documentRemoved", path,
+                        previousLine));
+            }
+            return true;
+        } catch (ClientException e) {
+            Throwable unwrappedException = unwrapException(e);
+            logError(0, null, unwrappedException,
+                    "Unable to remove document '%s' (line %s of the previous snapshot): %s",
+                    "label.csv.importer.unableToRemove", path, previousLine,
+                    unwrappedException.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Reads the header line, checking the required name and type columns are
+     * there.
+     *
+     * @return the header, or {@code null} if it is missing or invalid
+     * @since 5.9.2
+     */
+    protected String[] readHeader(CSVReader csvReader) throws IOException {
+        String[] header = csvReader.readNext();
+        if (header == null) {
+            // empty file?
+            logError(0, "No header line, empty file?",
+                    "label.csv.importer.emptyFile");
+            return null;
+        }
+        if (getColumnIndex(header, CSV_NAME_COL) == -1
+                || getColumnIndex(header, CSV_TYPE_COL) == -1) {
+            logError(0, "Missing 'name' or 'type' column",
+                    "label.csv.importer.missingNameOrTypeColumn");
+            return null;
+        }
+        return header;
+    }
+
+    protected static int getColumnIndex(String[] header, String column) {
+        for (int col = 0; col < header.length; col++) {
+            if (column.equals(header[col])) {
+                return col;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Imports all the remaining lines of the given reader, the first one
+     * having the given line number.
+     *
+     * @since 5.9.2
+     */
+    protected void importLines(CSVReader csvReader, String[] header,
+            long firstLineNumber) throws IOException {
+        // find the index for the required name and type values
+        int nameIndex = getColumnIndex(header, CSV_NAME_COL);
+        int typeIndex = getColumnIndex(header, CSV_TYPE_COL);
+        int batchSize = options.getBatchSize();
+        batch = new CSVImportBatch(header, batchSize);
+        try {
+            long docsCreatedCount = 0;
+            long lineNumber = firstLineNumber - 1;
+            // imported by the previous works of the paused import
+            for (; readLineCount < resumeLineCount; readLineCount++) {
+                if (readNext(csvReader) == null) {
+                    break;
+                }
+                lineNumber++;
+            }
+            for (;;) {
+                if (checkInterruption()) {
+                    break;
+                }
+                throttle();
+                lineNumber++;
+                String[] line = readNext(csvReader);
+                if (line == null) {
+                    break; // no more line
+                }
+                readLineCount++;
+                if (lineNumberColumn) {
+                    lineNumber = CSVExternalSorter.getLineNumber(line);
+                    line = CSVExternalSorter.getLine(line);
+                }
+
+                batch.add(lineNumber, line);
+                boolean imported = importBatchLine(line, lineNumber,
+                        nameIndex, typeIndex, header);
+                if (lineFailed && options.isolateLineFailures()
+                        || TransactionHelper.isTransactionMarkedRollback()) {
+                    isolateLastLine();
+                    imported = false;
+                }
+                if (imported) {
+                    docsCreatedCount++;
+                }
+                if (imported && docsCreatedCount % batchSize == 0
+                        || batch.size() >= batchSize * MAX_BATCH_LINES_FACTOR) {
+                    commitBatch();
+                    startTransaction();
+                }
+            }
+            try {
+                session.save();
+            } catch (ClientException e) {
+                Throwable ue = unwrapException(e);
+                logError(lineNumber, null, ue, "Unable to save: %s",
+                        "label.csv.importer.unableToSave", ue.getMessage());
+            }
+        } finally {
+            try {
+                commitBatch();
+            } finally {
+                batch = null;
+                startTransaction();
+            }
+        }
+    }
+
+    /**
+     * Imports a line of the current batch, logging the errors.
+     *
+     * @return {@code true} if a document has been created or updated
+     * @since 5.9.2
+     */
+    protected boolean importBatchLine(String[] line, long lineNumber,
+            int nameIndex, int typeIndex, String[] header) {
+        lineFailed = false;
+        if (line.length == 0) {
+            // empty line
+            addImportLog(new CSVImportLog(lineNumber, Status.SKIPPED,
+                    "Empty line", "label.csv.importer.emptyLine"));
+            return false;
+        }
+        try {
+            return importLine(line, lineNumber, nameIndex, typeIndex, header);
+        } catch (ClientException e) {
+            // try next line
+            lineFailed = true;
+            Throwable unwrappedException = unwrapException(e);
+            logError(lineNumber, null, unwrappedException,
+                    "Error while importing line: %s",
+                    "label.csv.importer.errorImportingLine",
+                    unwrappedException.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Commits the current transaction, then stores the logs of the lines of
+     * the current batch.
+     * <p>
+     * If the commit fails, the lines of the batch are imported again in a new
+     * transaction after a delay, doubled for each retry, see
+     * {@link CSVImporterOptions#getCommitRetries()}. A batch still failing is
+     * split in halves committed separately, down to the lines failing on
+     * their own, which are the only ones logged as errors.
+     *
+     * @since 5.9.2
+     */
+    protected void commitBatch() {
+        if (batch == null) {
+            commitOrRollbackTransaction();
+            return;
+        }
+        try {
+            if (!tryCommitBatch()) {
+                retryBatch(0, batch.size(), options.getCommitRetries());
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Commits the current transaction, storing the logs of the batch if it is
+     * committed and dropping them otherwise.
+     *
+     * @return {@code true} if the transaction has been committed
+     * @since 5.9.2
+     */
+    protected boolean tryCommitBatch() {
+        // rolled back by the commit
+        boolean committed = !TransactionHelper.isTransactionMarkedRollback();
+        commitFailure = null;
+        try {
+            commitOrRollbackTransaction();
+        } catch (TransactionRuntimeException e) {
+            committed = false;
+            commitFailure = unwrapException(e);
+            log.debug(e, e);
+        }
+        if (committed) {
+            for (CSVImportLog importLog : batch.getLogs()) {
+                storeImportLog(importLog);
+            }
+            storeUnchangedLines(batch.getUnchangedLineCount());
+            recordFingerprints();
+            flushLogStore(false);
+            fireBatchCommitted();
+            if (options.deferredIndexing()) {
+                addIndexingIds();
+            }
+        } else {
+            forgetRolledBackDocuments();
+        }
+        batch.clearResults();
+        return committed;
+    }
+
+    /**
+     * Forgets the documents imported by the rolled back transaction of the
+     * batch, so that its lines imported again create them again instead of
+     * being taken for duplicates.
+     *
+     * @since 5.9.2
+     */
+    protected void forgetRolledBackDocuments() {
+        // may contain folders created by the rolled back transaction
+        knownFolders = null;
+        if (importedPaths != null) {
+            for (String path : batch.getImportedPaths()) {
+                importedPaths.remove(path);
+            }
+        }
+    }
+
+    /**
+     * Records the fingerprints of the lines of the batch just committed, for
+     * the next delta import.
+     *
+     * @since 5.9.2
+     */
+    protected void recordFingerprints() {
+        int count = batch.getFingerprintCount();
+        if (count == 0) {
+            return;
+        }
+        CSVImportDelta delta = getDelta(batch.getHeader());
+        for (int i = 0; i < count; i++) {
+            delta.record(batch.getFingerprintPath(i), batch.getFingerprint(i));
+        }
+    }
+
+    /**
+     * Fires the {@link #BATCH_COMMITTED_EVENT} of the documents of the batch
+     * just committed, in bulk mode.
+     *
+     * @since 5.9.2
+     */
+    protected void fireBatchCommitted() {
+        List<String> ids = batch.getDocumentIds();
+        if (!options.bulkMode() || ids.isEmpty()) {
+            return;
+        }
+        EventContextImpl ctx = new EventContextImpl(session,
+                session.getPrincipal());
+        ctx.setProperty(IMPORT_ID_PROPERTY, getControlId());
+        ctx.setProperty(DOCUMENT_IDS_PROPERTY, new ArrayList<String>(ids));
+        try {
+            // no transaction, the post-commit listeners are scheduled now
+            Framework.getLocalService(EventService.class).fireEvent(
+                    ctx.newEvent(BATCH_COMMITTED_EVENT));
+        } catch (ClientException e) {
+            log.error(String.format(
+                    "Unable to fire the %s event of CSV file %s",
+                    BATCH_COMMITTED_EVENT, csvFileName), e);
+        }
+    }
+
+    /**
+     * Keeps the ids of the documents of the batch just committed for their
+     * deferred indexing, and hands them over to indexing every
+     * {@link CSVImporterOptions#getDeferredIndexingInterval()} batches.
+     *
+     * @since 5.9.2
+     */
+    protected void addIndexingIds() {
+        try {
+            for (String id : batch.getDocumentIds()) {
+                getIndexingIds().add(id);
+            }
+        } catch (IOException e) {
+            log.error("Unable to keep the ids of the documents to index of CSV file "
+                    + csvFileName, e);
+        }
+        int interval = options.getDeferredIndexingInterval();
+        if (interval > 0 && ++indexingBatchCount >= interval) {
+            indexingBatchCount = 0;
+            handOverIndexingIds();
+        }
+    }
+
+    /**
+     * Hands the ids of the documents committed so far over to indexing, the
+     * next ids going to a new file.
+     *
+     * @since 5.9.2
+     */
+    protected void handOverIndexingIds() {
+        File file = closeIndexingIds();
+        if (file != null) {
+            File indexingFile = CSVImportIdFile.getFile(getId(),
+                    ++indexingFileCount);
+            if (file.renameTo(indexingFile)) {
+                scheduleIndexing(Collections.singletonList(indexingFile));
+            } else {
+                log.error("Unable to rename " + file + " to " + indexingFile);
+            }
+        }
+    }
+
+    protected CSVImportIdFile getIndexingIds() {
+        // transient field so may become null
+        if (indexingIds == null) {
+            File file = CSVImportIdFile.getFile(getId());
+            // ids of a previous run of this work
+            FileUtils.deleteQuietly(file);
+            indexingIds = new CSVImportIdFile(file);
+        }
+        return indexingIds;
+    }
+
+    /**
+     * Closes the file of the ids to index of this work.
+     *
+     * @return the file, or {@code null} if there are no ids to index
+     * @since 5.9.2
+     */
+    protected File closeIndexingIds() {
+        if (indexingIds == null) {
+            return null;
+        }
+        CSVImportIdFile ids = indexingIds;
+        indexingIds = null;
+        try {
+            ids.close();
+        } catch (IOException e) {
+            log.error("Unable to write the ids of the documents to index of CSV file "
+                    + csvFileName, e);
+        }
+        return ids.size() == 0 ? null : ids.getFile();
+    }
+
+    /**
+     * Hands the ids of the documents of this import, and of its chunks, not
+     * indexed yet over to indexing, once the import is done.
+     *
+     * @since 5.9.2
+     */
+    protected void scheduleRemainingIndexing() {
+        List<File> files = new ArrayList<File>();
+        File file = closeIndexingIds();
+        if (file != null) {
+            files.add(file);
+        }
+        if (chunkIndexingFiles != null) {
+            files.addAll(chunkIndexingFiles);
+            chunkIndexingFiles = null;
+        }
+        scheduleIndexing(files);
+    }
+
+    /**
+     * Schedules a single {@link CSVImportIndexingWork} for the given id files.
+     *
+     * @since 5.9.2
+     */
+    protected void scheduleIndexing(List<File> files) {
+        List<File> existingFiles = new ArrayList<File>(files.size());
+        for (File file : files) {
+            if (file.isFile()) {
+                existingFiles.add(file);
+            }
+        }
+        if (existingFiles.isEmpty()) {
+            return;
+        }
+        Framework.getLocalService(WorkManager.class).schedule(
+                new CSVImportIndexingWork(repositoryName, getControlId(),
+                        existingFiles));
+    }
+
+    /**
+     * Imports again and commits the lines of the batch in the given range,
+     * whose transaction failed to commit, no transaction being active.
+     *
+     * @param retries the number of times the whole range is imported again
+     *            before it is split
+     * @since 5.9.2
+     */
+    protected void retryBatch(int from, int to, int retries) {
+        for (int retry = 0; retry < retries; retry++) {
+            long delay = options.getCommitRetryDelay() << Math.min(retry, 16);
+            log.warn(String.format(
+                    "Unable to commit lines %d to %d of CSV file %s, retrying in %d ms",
+                    Long.valueOf(batch.getLineNumber(from)),
+                    Long.valueOf(batch.getLineNumber(to - 1)), csvFileName,
+                    Long.valueOf(delay)));
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted", e);
+            }
+            startTransaction();
+            reimportBatchLines(from, to);
+            if (tryCommitBatch()) {
+                return;
+            }
+        }
+        if (to - from == 1) {
+            logCommitError(from);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        int[][] halves = { { from, middle }, { middle, to } };
+        for (int[] half : halves) {
+            startTransaction();
+            reimportBatchLines(half[0], half[1]);
+            if (!tryCommitBatch()) {
+                // a single line failing again may still be a transient error
+                retryBatch(half[0], half[1],
+                        half[1] - half[0] == 1 ? options.getCommitRetries() : 0);
+            }
+        }
+    }
+
+    protected void reimportBatchLines(int from, int to) {
+        String[] header = batch.getHeader();
+        int nameIndex = getColumnIndex(header, CSV_NAME_COL);
+        int typeIndex = getColumnIndex(header, CSV_TYPE_COL);
+        for (int i = from; i < to; i++) {
+            List<CSVImportLog> failureLogs = batch.getFailureLogs(i);
+            if (failureLogs != null) {
+                // rolled back alone
+                for (CSVImportLog importLog : failureLogs) {
+                    addImportLog(importLog);
+                }
+                continue;
+            }
+            throttle();
+            importBatchLine(batch.getLine(i), batch.getLineNumber(i),
+                    nameIndex, typeIndex, header);
+        }
+    }
+
+    /**
+     * Rolls back the transaction of the current batch because of its last
+     * line, then imports again and commits the other lines in a new
+     * transaction, so that nothing of the failed line is persisted.
+     * <p>
+     * The failed line keeps its error logs, or is logged as not committed if
+     * it only marked the transaction rollback-only. The batch being committed,
+     * a next failure only imports again the lines read since this one.
+     *
+     * @since 5.9.2
+     */
+    protected void isolateLastLine() {
+        int last = batch.size() - 1;
+        long lineNumber = batch.getLineNumber(last);
+        List<CSVImportLog> errors = new ArrayList<CSVImportLog>();
+        for (CSVImportLog importLog : batch.removeLastLineLogs()) {
+            if (importLog.isError()) {
+                errors.add(importLog);
+            }
+        }
+        if (errors.isEmpty()) {
+            logError(lineNumber, "Unable to commit line: %s",
+                    "label.csv.importer.unableToCommitLine",
+                    ROLLBACK_ONLY_MESSAGE);
+            errors.addAll(batch.removeLastLineLogs());
+        }
+        batch.setFailed(last, errors);
+
+        TransactionHelper.setTransactionRollbackOnly();
+        commitOrRollbackTransaction();
+        forgetRolledBackDocuments();
+        batch.clearResults();
+        startTransaction();
+        reimportBatchLines(0, batch.size());
+        commitBatch();
+        startTransaction();
+    }
+
+    /**
+     * Logs a line of the batch that cannot be committed, its other logs being
+     * dropped with its transaction.
+     */
+    protected void logCommitError(int i) {
+        long lineNumber = batch.getLineNumber(i);
+        String message = commitFailure == null ? ROLLBACK_ONLY_MESSAGE
+                : commitFailure.getMessage();
+        logError(lineNumber, null, commitFailure, "Unable to commit line: %s",
+                "label.csv.importer.unableToCommitLine", message);
+        for (CSVImportLog importLog : batch.getLogs()) {
+            storeImportLog(importLog);
+        }
+        // its fingerprint is dropped, so that the next delta import imports
+        // it again
+        batch.clearResults();
+    }
+
+    protected String getControlId() {
+        return getId();
+    }
+
+    protected CSVImportControl getControl() {
+        // transient field so may become null
+        if (control == null) {
+            control = CSVImportControl.get(getControlId());
+        }
+        return control;
+    }
+
+    /**
+     * Returns {@code true} if the import has been cancelled.
+     *
+     * @since 5.9.2
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Checks whether the import has been cancelled or paused, in which case
+     * the current transaction is committed. A paused import is suspended, see
+     * {@link #suspend()}, or waits here until it is resumed or cancelled if it
+     * can't be.
+     *
+     * @return {@code true} if the import must stop
+     * @since 5.9.2
+     */
+    protected boolean checkInterruption() {
+        CSVImportControl control = getControl();
+        // requests made from other nodes
+        control.refresh();
+        if (!control.isInterrupted()) {
+            return false;
+        }
+        if (control.isPaused() && !control.isCancelled()) {
+            commitBatch();
+            if (suspend()) {
+                startTransaction();
+                return true;
+            }
+            setStatus("Paused");
+            try {
+                cancelled = control.awaitResume();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted", e);
+            } finally {
+                setStatus("Importing");
+                startTransaction();
+            }
+        } else {
+            cancelled = true;
+        }
+        if (cancelled) {
+            log.info(String.format("Import of CSV file %s cancelled",
+                    csvFileName));
+        }
+        return cancelled;
+    }
+
+    /**
+     * Suspends this work while its import is paused: the work ends, freeing
+     * its thread and the slot of its lane, and a copy of it goes on from the
+     * same point once the import is resumed or cancelled. The lines read so
+     * far must be committed.
+     *
+     * @return {@code true} if this work is suspended, {@code false} if it
+     *         can't be or if the import is no longer paused
+     * @since 5.9.2
+     */
+    protected boolean suspend() {
+        if (!canSuspend()) {
+            return false;
+        }
+        if (options.deferredIndexing()) {
+            // the next work writes its own id files
+            handOverIndexingIds();
+        }
+        if (!getControl().suspend(new CSVImporterWork(this))) {
+            return false;
+        }
+        suspended = true;
+        setStatus("Paused");
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if this work can be suspended while its import is
+     * paused.
+     *
+     * @since 5.9.2
+     */
+    protected boolean canSuspend() {
+        return true;
+    }
+
+    protected boolean isDistributed(File importFile) {
+        long chunkSize = options.getDistributedChunkSize();
+        return chunkSize > 0 && importFile.length() > chunkSize;
+    }
+
+    /**
+     * Partitions the CSV file by created subtree in chunks imported by
+     * {@link CSVImporterChunkWork}s, see {@link CSVImportChunk}, waits for
+     * them and merges their import logs.
+     *
+     * @since 5.9.2
+     */
+    protected void doDistributedImport(File importFile) throws IOException,
+            InterruptedException, ClientException {
+        File chunksDirectory = CSVImportChunk.getDirectory(getId());
+        try {
+            if (chunkWorks != null) {
+                // started by the previous works of the paused import
+                importChunks(chunkWorks);
+            } else {
+                long chunkSize = options.getDistributedChunkSize();
+                int chunkCount = (int) Math.min(CSVImportChunk.MAX_CHUNKS,
+                        (importFile.length() + chunkSize - 1) / chunkSize);
+                log.info(String.format(
+                        "Importing CSV file: %s, distributed in %d chunks",
+                        csvFileName, Integer.valueOf(chunkCount)));
+
+                String[] header;
+                CSVReader csvReader = new CSVReader(new FileReader(importFile));
+                try {
+                    header = readHeader(csvReader);
+                } finally {
+                    csvReader.close();
+                }
+                if (header == null) {
+                    return;
+                }
+
+                setStatus("Partitioning");
+                List<CSVImportChunk> chunks = CSVImportChunk.partition(
+                        importFile, lineNumberColumn, getColumnIndex(header,
+                                CSV_NAME_COL), chunkCount, chunksDirectory,
+                        session, parentPath);
+                List<CSVImporterChunkWork> works = new ArrayList<CSVImporterChunkWork>(
+                        chunks.size());
+                for (CSVImportChunk chunk : chunks) {
+                    works.add(new CSVImporterChunkWork(getId()
+                            + CSVImporterChunkWork.CHUNK_ID_SEPARATOR
+                            + chunk.getIndex(), repositoryName, parentPath,
+                            username, csvFile, csvFileName, options, header,
+                            chunk, runId));
+                }
+                importChunks(works);
+            }
+        } finally {
+            if (!suspended) {
+                FileUtils.deleteQuietly(chunksDirectory);
+            }
+        }
+        if (suspended) {
+            return;
+        }
+        cancelled = getControl().isCancelled();
+        log.info(String.format("Done importing CSV file: %s", csvFileName));
+    }
+
+    /**
+     * Imports the given chunks and merges their import logs.
+     * <p>
+     * This work is suspended while the import is paused, the chunks waiting
+     * on their own threads, see {@link #checkInterruption()}.
+     * <p>
+     * The chunks of a delta import are always run on this node, which holds
+     * the line fingerprints of the import, see {@link #getDelta(String[])}.
+     *
+     * @since 5.9.2
+     */
+    protected void importChunks(List<CSVImporterChunkWork> works)
+            throws IOException, InterruptedException {
+        // don't keep a transaction open while the chunks are imported
+        commitOrRollbackTransaction();
+        try {
+            if (options.localChunks() || options.deltaImport()) {
+                executeChunkWorks(works);
+            } else {
+                awaitChunkWorks(works);
+            }
+        } finally {
+            startTransaction();
+        }
+        if (suspended) {
+            return;
+        }
+
+        if (options.deferredIndexing()) {
+            // indexed with the documents of this work
+            chunkIndexingFiles = new ArrayList<File>(works.size());
+            for (CSVImporterChunkWork chunkWork : works) {
+                chunkIndexingFiles.add(CSVImportIdFile.getFile(chunkWork.getId()));
+            }
+        }
+
+        // the store sorts the logs of the chunks by line number, the entry
+        // counts them from now on
+        CSVImportRegistry.Entry entry = CSVImportRegistry.get(getControlId());
+        entry.setChunksResult(null);
+        for (CSVImporterChunkWork chunkWork : works) {
+            CSVImportLogStore chunkStore = CSVImportLogStore.open(chunkWork.getId());
+            if (chunkStore != null) {
+                getLogStore().appendAll(chunkStore, entry);
+                CSVImportLogStore.delete(chunkWork.getId());
+            }
+        }
+    }
+
+    /**
+     * Counts the logs written so far by the chunks in the
+     * {@link CSVImportRegistry} entry of the import, the chunks running on
+     * any node.
+     *
+     * @since 5.9.2
+     */
+    protected void updateChunksResult(List<CSVImporterChunkWork> works) {
+        long success = 0;
+        long skipped = 0;
+        long error = 0;
+        long unchanged = 0;
+        for (CSVImporterChunkWork chunkWork : works) {
+            CSVImportLogStore chunkStore = CSVImportLogStore.open(chunkWork.getId());
+            if (chunkStore == null) {
+                continue;
+            }
+            try {
+                CSVImportResult result = chunkStore.getResult();
+                success += result.getSuccessLineCount();
+                skipped += result.getSkippedLineCount();
+                error += result.getErrorLineCount();
+                unchanged += result.getUnchangedLineCount();
+            } catch (IOException e) {
+                log.debug("Unable to read the logs of chunk "
+                        + chunkWork.getId(), e);
             }
         }
-        if (nameIndex == -1 || typeIndex == -1) {
-            logError(0, "Missing 'name' or 'type' column",
-                    "label.csv.importer.missingNameOrTypeColumn");
-            return;
+        CSVImportRegistry.get(getControlId()).setChunksResult(
+                new CSVImportResult(success + skipped + error + unchanged,
+                        success, skipped, error, unchanged));
+    }
+
+    /**
+     * Returns {@code true} if the given chunk is done: its log store is
+     * completed, whichever node ran it, or it ran on this node.
+     *
+     * @since 5.9.2
+     */
+    protected boolean isChunkDone(WorkManager workManager,
+            CSVImporterChunkWork chunkWork) {
+        CSVImportLogStore chunkStore = CSVImportLogStore.open(chunkWork.getId());
+        if (chunkStore != null && chunkStore.isCompleted()) {
+            return true;
         }
+        // a null state is unknown on this node, the chunk may run elsewhere
+        return workManager.getWorkState(chunkWork.getId()) == State.COMPLETED;
+    }
 
+    /**
+     * Runs the chunk works with the {@link CSVImportChunkExecutor}, unless
+     * already started, and waits for them.
+     * <p>
+     * If interrupted, the chunks not started yet are dropped and the running
+     * ones are cancelled and waited for, so that none is left writing once
+     * this work is done.
+     *
+     * @since 5.9.2
+     */
+    protected void executeChunkWorks(List<CSVImporterChunkWork> works)
+            throws InterruptedException {
+        if (chunkExecution == null) {
+            chunkExecution = CSVImportChunkExecutor.getInstance().execute(
+                    works);
+            chunkWorks = works;
+        }
         try {
-            int batchSize = options.getBatchSize();
-            long docsCreatedCount = 0;
-            long lineNumber = 0;
-            for (;;) {
-                lineNumber++;
-                String[] line = csvReader.readNext();
-                if (line == null) {
-                    break; // no more line
-                }
-
-                if (line.length == 0) {
-                    // empty line
-                    importLogs.add(new CSVImportLog(lineNumber, Status.SKIPPED,
-                            "Empty line", "label.csv.importer.emptyLine"));
-                    continue;
+            while (!chunkExecution.await(CHUNK_POLL_INTERVAL,
+                    TimeUnit.MILLISECONDS)) {
+                getControl().refresh();
+                if (getControl().isPaused() && suspend()) {
+                    return;
                 }
+                updateChunksResult(works);
+                setStatus(String.format("Importing, %d/%d chunks done",
+                        Integer.valueOf(chunkExecution.getDoneCount()),
+                        Integer.valueOf(chunkExecution.getCount())));
+            }
+        } catch (InterruptedException e) {
+            chunkExecution.cancel();
+            // stops the running chunks at their next line
+            getControl().cancel();
+            chunkExecution.awaitUninterruptibly();
+            throw e;
+        }
+    }
 
-                try {
-                    if (importLine(line, lineNumber, nameIndex, typeIndex,
-                            header)) {
-                        docsCreatedCount++;
-                        if (docsCreatedCount % batchSize == 0) {
-                            commitOrRollbackTransaction();
-                            startTransaction();
-                        }
-                    }
-                } catch (ClientException e) {
-                    // try next line
-                    Throwable unwrappedException = unwrapException(e);
-                    logError(lineNumber, "Error while importing line: %s",
-                            "label.csv.importer.errorImportingLine",
-                            unwrappedException.getMessage());
-                    log.debug(unwrappedException, unwrappedException);
+    /**
+     * Schedules the chunk works in the {@link WorkManager}, unless already
+     * scheduled, and waits for them.
+     * <p>
+     * The chunks may run on any node: a chunk is done once its log store is
+     * completed, see {@link #isChunkDone(WorkManager, CSVImporterChunkWork)},
+     * checked every {@link #CHUNK_POLL_INTERVAL} or when a chunk of this node
+     * signals the control of the import.
+     *
+     * @since 5.9.2
+     */
+    protected void awaitChunkWorks(List<CSVImporterChunkWork> works)
+            throws InterruptedException {
+        WorkManager workManager = Framework.getLocalService(WorkManager.class);
+        CSVImportControl control = getControl();
+        if (chunkWorks == null) {
+            for (CSVImporterChunkWork chunkWork : works) {
+                // completed by a previous run
+                CSVImportLogStore.delete(chunkWork.getId());
+            }
+            for (CSVImporterChunkWork chunkWork : works) {
+                workManager.schedule(chunkWork);
+            }
+            chunkWorks = works;
+        }
+        int count = works.size();
+        for (;;) {
+            int done = 0;
+            for (CSVImporterChunkWork chunkWork : works) {
+                if (isChunkDone(workManager, chunkWork)) {
+                    done++;
                 }
             }
+            if (done >= count) {
+                break;
+            }
+            control.refresh();
+            if (control.isPaused() && suspend()) {
+                return;
+            }
+            updateChunksResult(works);
+            setStatus(String.format("Importing, %d/%d chunks done",
+                    Integer.valueOf(done), Integer.valueOf(count)));
             try {
-                session.save();
-            } catch (ClientException e) {
-                Throwable ue = unwrapException(e);
-                logError(lineNumber, "Unable to save: %s",
-                        "label.csv.importer.unableToSave", ue.getMessage());
-                log.debug(ue, ue);
+                control.awaitChunkDone(CHUNK_POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                // stops the chunks at their next line
+                control.cancel();
+                throw e;
             }
-        } finally {
-            commitOrRollbackTransaction();
-            startTransaction();
         }
-        log.info(String.format("Done importing CSV file: %s", csvFileName));
     }
 
     /**
@@ -272,6 +1859,17 @@ public class CSVImporterWork extends AbstractWork {
             return false;
         }
 
+        String targetPath = null;
+        long fingerprint = 0;
+        if (options.deltaImport()) {
+            targetPath = new Path(parentPath).append(name).toString();
+            fingerprint = CSVImportFingerprints.fingerprint(line);
+            if (getDelta(headerValues).isUnchanged(targetPath, fingerprint)) {
+                addUnchangedLine();
+                return false;
+            }
+        }
+
         DocumentType docType = Framework.getLocalService(SchemaManager.class).getDocumentType(
                 type);
         if (docType == null) {
@@ -280,127 +1878,200 @@ public class CSVImporterWork extends AbstractWork {
             return false;
         }
 
-        Map<String, Serializable> values = computePropertiesMap(lineNumber,
-                docType, headerValues, line);
+        boolean duplicate = false;
+        if (options.getDuplicateLinePolicy() != DuplicateLinePolicy.NONE) {
+            if (targetPath == null) {
+                targetPath = new Path(parentPath).append(name).toString();
+            }
+            duplicate = getImportedPaths().contains(targetPath);
+            if (duplicate
+                    && options.getDuplicateLinePolicy() == DuplicateLinePolicy.SKIP) {
+                addImportLog(CSVImportLog.fromTemplate(lineNumber,
+                        Status.SKIPPED,
+                        "Duplicate document '%s' in the CSV file",
+                        "label.csv.importer.duplicateDocument", targetPath));
+                return false;
+            }
+        }
+
+        long start = metrics.start();
+        Map<String, Serializable> values;
+        try {
+            values = computePropertiesMap(lineNumber, docType, headerValues,
+                    line);
+        } finally {
+            metrics.stop(Phase.COMPUTE_PROPERTIES, start);
+        }
         if (values == null) {
             // skip this line
             return false;
         }
 
-        return createOrUpdateDocument(lineNumber, parentPath, name, type,
-                values);
+        boolean imported;
+        if (duplicate) {
+            // created or updated by a previous line, no need to check
+            imported = doUpdateDocument(lineNumber, new PathRef(targetPath),
+                    values);
+        } else {
+            imported = createOrUpdateDocument(lineNumber, parentPath, name,
+                    type, values);
+        }
+        if (imported) {
+            if (options.getDuplicateLinePolicy() != DuplicateLinePolicy.NONE
+                    && getImportedPaths().add(targetPath)) {
+                // removed if the transaction is rolled back
+                batch.addImportedPath(targetPath);
+            }
+            if (fingerprint != 0) {
+                // recorded once committed
+                batch.addFingerprint(targetPath, fingerprint);
+            }
+        }
+        return imported;
+    }
+
+    /**
+     * Returns the line fingerprints of this delta import, shared by its
+     * chunks.
+     *
+     * @since 5.9.2
+     */
+    protected CSVImportDelta getDelta(String[] header) {
+        return getControl().getDelta(
+                CSVImportDelta.getFile(repositoryName, parentPath,
+                        csvFileName), header, options,
+                csvFile.length() / ESTIMATED_LINE_LENGTH);
+    }
+
+    /**
+     * Saves the line fingerprints of a delta import for the next one, unless
+     * it was cancelled.
+     *
+     * @since 5.9.2
+     */
+    protected void saveDelta() {
+        CSVImportDelta delta = getControl().removeDelta();
+        if (delta == null || cancelled) {
+            return;
+        }
+        try {
+            delta.save();
+        } catch (IOException e) {
+            log.error("Unable to save the line fingerprints of CSV file "
+                    + csvFileName, e);
+        }
+    }
+
+    /**
+     * Returns the set of the paths of the documents created or updated by this
+     * work.
+     * <p>
+     * The chunks of a distributed import each have their own set: the lines
+     * of a same path always are in the same chunk, see
+     * {@link CSVImportChunk}.
+     *
+     * @since 5.9.2
+     */
+    protected CSVImportPathSet getImportedPaths() {
+        // transient field so may become null
+        if (importedPaths == null) {
+            importedPaths = new CSVImportPathSet();
+        }
+        return importedPaths;
+    }
+
+    /**
+     * Returns the row of the columns of the header converted for a document
+     * type, resolved once per type, see {@link CSVImportColumn#getColumns}.
+     *
+     * @since 5.9.2
+     */
+    protected CSVImportRow getRow(DocumentType docType, String[] headerValues) {
+        // transient field so may become null
+        if (rows == null) {
+            rows = new HashMap<String, CSVImportRow>();
+        }
+        CSVImportRow row = rows.get(docType.getName());
+        if (row == null) {
+            row = new CSVImportRow(CSVImportColumn.getColumns(docType,
+                    headerValues));
+            rows.put(docType.getName(), row);
+        }
+        return row;
     }
 
+    /**
+     * Converts the values of a line.
+     *
+     * @return the values, in a {@link CSVImportRow} reused for the next line
+     *         of the same type if the factory accepts it, see
+     *         {@link #factoryAcceptsRows()}, or {@code null} if the line must
+     *         be skipped
+     */
     protected Map<String, Serializable> computePropertiesMap(long lineNumber,
             DocumentType docType, String[] headerValues, String[] line) {
-        Map<String, Serializable> values = new HashMap<String, Serializable>();
-        for (int col = 0; col < headerValues.length; col++) {
-            String headerValue = headerValues[col];
-            String lineValue = line[col];
-            lineValue = lineValue.trim();
-
-            String fieldName = headerValue;
-            if (!CSV_NAME_COL.equals(headerValue)
-                    && !CSV_TYPE_COL.equals(headerValue)) {
-                if (!docType.hasField(fieldName)) {
-                    fieldName = fieldName.split(":")[1];
-                }
-                if (docType.hasField(fieldName)
-                        && !StringUtils.isBlank(lineValue)) {
-                    Serializable convertedValue = convertValue(docType,
-                            fieldName, headerValue, lineValue, lineNumber);
-                    if (convertedValue == null) {
-                        return null;
-                    }
-                    values.put(headerValue, convertedValue);
-                }
+        CSVImportRow row = getRow(docType, headerValues);
+        row.clear();
+        CSVImportColumn[] typeColumns = row.getColumns();
+        for (int slot = 0; slot < typeColumns.length; slot++) {
+            CSVImportColumn column = typeColumns[slot];
+            String lineValue = column.getValue(line);
+            if (lineValue != null
+                    && !convertValue(column, lineValue, row, slot, lineNumber)) {
+                return null;
             }
         }
-        return values;
+        return factoryAcceptsRows() ? row : row.toMap();
     }
 
-    protected Serializable convertValue(DocumentType docType, String fieldName,
-            String headerValue, String stringValue, long lineNumber) {
-        if (docType.hasField(fieldName)) {
-            Field field = docType.getField(fieldName);
-            if (field != null) {
-                try {
-                    Serializable fieldValue = null;
-                    Type fieldType = field.getType();
-                    if (fieldType.isComplexType()) {
-                        if (fieldType.getName().equals(CONTENT_FILED_TYPE_NAME)) {
-                            String blobsFolderPath = Framework.getProperty("nuxeo.csv.blobs.folder");
-                            String path = FilenameUtils.normalize(blobsFolderPath
-                                    + "/" + stringValue);
-                            File file = new File(path);
-                            if (file.exists()) {
-                                FileBlob blob = new FileBlob(file);
-                                blob.setFilename(file.getName());
-                                fieldValue = blob;
-                            } else {
-                                logError(lineNumber,
-                                        "The file '%s' does not exist",
-                                        "label.csv.importer.notExistingFile",
-                                        stringValue);
-                                return null;
-                            }
-                        }
-                        // other types not supported
-                    } else {
-                        if (fieldType.isListType()) {
-                            Type listFieldType = ((ListType) fieldType).getFieldType();
-                            if (listFieldType.isSimpleType()) {
-                                /*
-                                 * Array.
-                                 */
-                                fieldValue = stringValue.split(options.getListSeparatorRegex());
-                            } else {
-                                /*
-                                 * Complex list.
-                                 */
-                                fieldValue = (Serializable) Arrays.asList(stringValue.split(options.getListSeparatorRegex()));
-                            }
-                        } else {
-                            /*
-                             * Primitive type.
-                             */
-                            Type type = field.getType();
-                            if (type instanceof SimpleTypeImpl) {
-                                type = type.getSuperType();
-                            }
-                            if (type.isSimpleType()) {
-                                if (type instanceof StringType) {
-                                    fieldValue = stringValue;
-                                } else if (type instanceof IntegerType) {
-                                    fieldValue = Integer.valueOf(stringValue);
-                                } else if (type instanceof LongType) {
-                                    fieldValue = Long.valueOf(stringValue);
-                                } else if (type instanceof DoubleType) {
-                                    fieldValue = Double.valueOf(stringValue);
-                                } else if (type instanceof BooleanType) {
-                                    fieldValue = Boolean.valueOf(stringValue);
-                                } else if (type instanceof DateType) {
-                                    fieldValue = getDateFormat().parse(
-                                            stringValue);
-                                }
-                            }
-                        }
-                    }
-                    return fieldValue;
-                } catch (ParseException | NumberFormatException e) {
-                    logError(lineNumber,
-                            "Unable to convert field '%s' with value '%s'",
-                            "label.csv.importer.cannotConvertFieldValue",
-                            headerValue, stringValue);
-                    log.debug(e, e);
-                }
-            }
-        } else {
-            logError(lineNumber, "Field '%s' does not exist on type '%s'",
-                    "label.csv.importer.notExistingField", headerValue,
-                    docType.getName());
+    /**
+     * Returns whether the factory of the options is given the reused
+     * {@link CSVImportRow} of a line rather than a copy of its values: only
+     * {@link DefaultCSVImporterDocumentFactory} itself and the
+     * {@link CSVImporterRowDocumentFactory} do not keep the values.
+     *
+     * @since 5.9.2
+     */
+    protected boolean factoryAcceptsRows() {
+        CSVImporterDocumentFactory factory = options.getCSVImporterDocumentFactory();
+        return factory.getClass() == DefaultCSVImporterDocumentFactory.class
+                || factory instanceof CSVImporterRowDocumentFactory;
+    }
+
+    /**
+     * Converts a cell into a slot of a row, logging an error if it cannot be
+     * converted.
+     *
+     * @return {@code false} if the line must be skipped
+     * @since 5.9.2
+     */
+    protected boolean convertValue(CSVImportColumn column, String stringValue,
+            CSVImportRow row, int slot, long lineNumber) {
+        String headerValue = column.getHeader();
+        try {
+            column.convert(stringValue, row, slot, getDateFormat(),
+                    options.getListSeparatorRegex());
+            return true;
+        } catch (FileNotFoundException e) {
+            logError(lineNumber, headerValue, null,
+                    "The file '%s' does not exist",
+                    "label.csv.importer.notExistingFile", stringValue);
+            return false;
+        } catch (JsonProcessingException e) {
+            // the first line of the message, without the location
+            String cause = StringUtils.substringBefore(e.getMessage(), "\n");
+            logError(lineNumber, headerValue, e,
+                    "Unable to convert field '%s' with value '%s': %s",
+                    "label.csv.importer.cannotConvertFieldValueCause",
+                    headerValue, stringValue, cause);
+            return false;
+        } catch (ParseException | NumberFormatException | IOException e) {
+            logError(lineNumber, headerValue, e,
+                    "Unable to convert field '%s' with value '%s'",
+                    "label.csv.importer.cannotConvertFieldValue", headerValue,
+                    stringValue);
+            return false;
         }
-        return null;
     }
 
     protected DateFormat getDateFormat() {
@@ -418,8 +2089,15 @@ public class CSVImporterWork extends AbstractWork {
         name = targetPath.lastSegment();
         parentPath = targetPath.removeLastSegments(1).toString();
         DocumentRef docRef = new PathRef(targetPath.toString());
-        if (options.getCSVImporterDocumentFactory().exists(session, parentPath,
-                name, type, properties)) {
+        boolean exists;
+        long start = metrics.start();
+        try {
+            exists = options.getCSVImporterDocumentFactory().exists(session,
+                    parentPath, name, type, properties);
+        } finally {
+            metrics.stop(Phase.EXISTS, start);
+        }
+        if (exists) {
             return updateDocument(lineNumber, docRef, properties);
         } else {
             return createDocument(lineNumber, parentPath, name, type,
@@ -430,20 +2108,44 @@ public class CSVImporterWork extends AbstractWork {
     protected boolean createDocument(long lineNumber, String parentPath,
             String name, String type, Map<String, Serializable> properties) {
         try {
-            DocumentRef parentRef = new PathRef(parentPath);
-            if (session.exists(parentRef)) {
-                DocumentModel parent = session.getDocument(parentRef);
-
+            String parentType = null;
+            if (options.createMissingParents()) {
+                parentType = getOrCreateFolder(lineNumber, parentPath);
+                if (parentType == null) {
+                    // error already logged
+                    return false;
+                }
+            } else {
+                DocumentRef parentRef = new PathRef(parentPath);
+                if (session.exists(parentRef)) {
+                    parentType = session.getDocument(parentRef).getType();
+                }
+            }
+            if (parentType != null) {
                 TypeManager typeManager = Framework.getLocalService(TypeManager.class);
                 if (options.checkAllowedSubTypes()
-                        && !typeManager.isAllowedSubType(type, parent.getType())) {
+                        && !typeManager.isAllowedSubType(type, parentType)) {
                     logError(lineNumber, "'%s' type is not allowed in '%s'",
                             "label.csv.importer.notAllowedSubType", type,
-                            parent.getType());
+                            parentType);
                 } else {
-                    options.getCSVImporterDocumentFactory().createDocument(
-                            session, parentPath, name, type, properties);
-                    importLogs.add(new CSVImportLog(lineNumber, Status.SUCCESS,
+                    long start = metrics.start();
+                    try {
+                        factoryCreateDocument(parentPath, name, type,
+                                properties);
+                    } finally {
+                        metrics.stop(Phase.CREATE_DOCUMENT, start);
+                    }
+                    if (options.createMissingParents()) {
+                        DocumentType docType = Framework.getLocalService(
+                                SchemaManager.class).getDocumentType(type);
+                        if (docType != null && docType.isFolder()) {
+                            getKnownFolders().put(
+                                    new Path(parentPath).append(name).toString(),
+                                    type);
+                        }
+                    }
+                    addImportLog(new CSVImportLog(lineNumber, Status.SUCCESS,
                             "Document created",
                             "label.csv.importer.documentCreated"));
                     return true;
@@ -453,47 +2155,352 @@ public class CSVImporterWork extends AbstractWork {
                         "label.csv.importer.parentDoesNotExist", parentPath);
             }
         } catch (ClientException e) {
+            lineFailed = true;
             Throwable unwrappedException = unwrapException(e);
-            logError(lineNumber, "Unable to create document: %s",
+            logError(lineNumber, null, unwrappedException,
+                    "Unable to create document: %s",
                     "label.csv.importer.unableToCreate",
                     unwrappedException.getMessage());
-            log.debug(unwrappedException, unwrappedException);
         }
         return false;
     }
 
+    /**
+     * Returns whether the ids of the documents of the batches are kept, for
+     * the bulk mode or deferred indexing.
+     *
+     * @since 5.9.2
+     */
+    protected boolean keepDocumentIds() {
+        return options.bulkMode() || options.deferredIndexing();
+    }
+
+    /**
+     * Creates a document with the factory of the options, keeping its id in
+     * bulk mode or with deferred indexing.
+     * <p>
+     * The documents of the other factories than a
+     * {@link CSVImporterBulkDocumentFactory} are only read again for their id
+     * with deferred indexing: the listeners of the bulk mode do not skip them.
+     *
+     * @since 5.9.2
+     */
+    protected void factoryCreateDocument(String parentPath, String name,
+            String type, Map<String, Serializable> properties)
+            throws ClientException {
+        CSVImporterDocumentFactory factory = options.getCSVImporterDocumentFactory();
+        if (keepDocumentIds()
+                && factory instanceof CSVImporterBulkDocumentFactory) {
+            DocumentModel doc = ((CSVImporterBulkDocumentFactory) factory).createDocument(
+                    session, parentPath, name, type, properties,
+                    getContextData());
+            batch.addDocumentId(doc.getId());
+        } else {
+            factory.createDocument(session, parentPath, name, type, properties);
+            if (options.deferredIndexing()) {
+                DocumentModel doc = session.getDocument(new PathRef(
+                        new Path(parentPath).append(name).toString()));
+                batch.addDocumentId(doc.getId());
+            }
+        }
+    }
+
+    /**
+     * Updates a document with the factory of the options, keeping its id in
+     * bulk mode or with deferred indexing, the same way as
+     * {@link #factoryCreateDocument}.
+     *
+     * @since 5.9.2
+     */
+    protected void factoryUpdateDocument(DocumentRef docRef,
+            Map<String, Serializable> properties) throws ClientException {
+        CSVImporterDocumentFactory factory = options.getCSVImporterDocumentFactory();
+        if (keepDocumentIds()
+                && factory instanceof CSVImporterBulkDocumentFactory) {
+            DocumentModel doc = ((CSVImporterBulkDocumentFactory) factory).updateDocument(
+                    session, docRef, properties, getContextData());
+            batch.addDocumentId(doc.getId());
+        } else {
+            factory.updateDocument(session, docRef, properties);
+            if (options.deferredIndexing()) {
+                batch.addDocumentId(session.getDocument(docRef).getId());
+            }
+        }
+    }
+
+    /**
+     * Returns the context data of the imported documents, see
+     * {@link #BULK_MODE_CONTEXT_DATA_PROPERTY} and
+     * {@link #DEFERRED_INDEXING_CONTEXT_DATA_PROPERTY}.
+     *
+     * @since 5.9.2
+     */
+    protected Map<String, Serializable> getContextData() {
+        // transient field so may become null
+        if (contextData == null) {
+            contextData = new HashMap<String, Serializable>();
+            if (options.bulkMode()) {
+                contextData.put(BULK_MODE_CONTEXT_DATA, Boolean.TRUE);
+                putContextData(Framework.getProperty(
+                        BULK_MODE_CONTEXT_DATA_PROPERTY,
+                        DEFAULT_BULK_MODE_CONTEXT_DATA));
+            }
+            if (options.deferredIndexing()) {
+                putContextData(Framework.getProperty(
+                        DEFERRED_INDEXING_CONTEXT_DATA_PROPERTY,
+                        DEFAULT_DEFERRED_INDEXING_CONTEXT_DATA));
+            }
+        }
+        return contextData;
+    }
+
+    protected void putContextData(String keys) {
+        for (String key : keys.split(",")) {
+            if (!StringUtils.isBlank(key)) {
+                contextData.put(key.trim(), Boolean.TRUE);
+            }
+        }
+    }
+
+    protected CSVImportPathTrie getKnownFolders() {
+        // transient field so may become null
+        if (knownFolders == null) {
+            knownFolders = new CSVImportPathTrie();
+        }
+        return knownFolders;
+    }
+
+    /**
+     * Returns the type of the folder at the given path, creating it and its
+     * missing ancestors with the configured parent folder type if needed,
+     * through the document factory of the options.
+     *
+     * @return the folder type, or {@code null} if it could not be created
+     * @since 5.9.2
+     */
+    protected String getOrCreateFolder(long lineNumber, String folderPath)
+            throws ClientException {
+        CSVImportPathTrie folders = getKnownFolders();
+        String type = folders.getType(folderPath);
+        if (type != null) {
+            return type;
+        }
+        DocumentRef folderRef = new PathRef(folderPath);
+        if (session.exists(folderRef)) {
+            type = session.getDocument(folderRef).getType();
+        } else {
+            Path path = new Path(folderPath);
+            String parentPath = path.removeLastSegments(1).toString();
+            String parentType = getOrCreateFolder(lineNumber, parentPath);
+            if (parentType == null) {
+                return null;
+            }
+            type = options.getParentFolderType();
+            TypeManager typeManager = Framework.getLocalService(TypeManager.class);
+            if (options.checkAllowedSubTypes()
+                    && !typeManager.isAllowedSubType(type, parentType)) {
+                logError(lineNumber, "'%s' type is not allowed in '%s'",
+                        "label.csv.importer.notAllowedSubType", type,
+                        parentType);
+                return null;
+            }
+            Map<String, Serializable> values = new HashMap<String, Serializable>();
+            values.put("dc:title", path.lastSegment());
+            factoryCreateDocument(parentPath, path.lastSegment(), type, values);
+        }
+        folders.put(folderPath, type);
+        return type;
+    }
+
     protected boolean updateDocument(long lineNumber, DocumentRef docRef,
             Map<String, Serializable> properties) {
         if (options.updateExisting()) {
-            try {
-                options.getCSVImporterDocumentFactory().updateDocument(session,
-                        docRef, properties);
-                importLogs.add(new CSVImportLog(lineNumber, Status.SUCCESS,
-                        "Document updated",
-                        "label.csv.importer.documentUpdated"));
-                return true;
-            } catch (ClientException e) {
-                Throwable unwrappedException = unwrapException(e);
-                logError(lineNumber, "Unable to update document: %s",
-                        "label.csv.importer.unableToUpdate",
-                        unwrappedException.getMessage());
-                log.debug(unwrappedException, unwrappedException);
-            }
+            return doUpdateDocument(lineNumber, docRef, properties);
         } else {
-            importLogs.add(new CSVImportLog(lineNumber, Status.SKIPPED,
+            addImportLog(new CSVImportLog(lineNumber, Status.SKIPPED,
                     "Document already exists",
                     "label.csv.importer.documentAlreadyExists"));
         }
         return false;
     }
 
+    /**
+     * Updates an existing document, whatever the
+     * {@link CSVImporterOptions#updateExisting()} option.
+     *
+     * @since 5.9.2
+     */
+    protected boolean doUpdateDocument(long lineNumber, DocumentRef docRef,
+            Map<String, Serializable> properties) {
+        try {
+            long start = metrics.start();
+            try {
+                factoryUpdateDocument(docRef, properties);
+            } finally {
+                metrics.stop(Phase.UPDATE_DOCUMENT, start);
+            }
+            addImportLog(new CSVImportLog(lineNumber, Status.SUCCESS,
+                    "Document updated", "label.csv.importer.documentUpdated"));
+            return true;
+        } catch (ClientException e) {
+            lineFailed = true;
+            Throwable unwrappedException = unwrapException(e);
+            logError(lineNumber, null, unwrappedException,
+                    "Unable to update document: %s",
+                    "label.csv.importer.unableToUpdate",
+                    unwrappedException.getMessage());
+        }
+        return false;
+    }
+
+    @Override
+    public void commitOrRollbackTransaction() {
+        long start = getMetrics().start();
+        try {
+            super.commitOrRollbackTransaction();
+        } finally {
+            metrics.stop(Phase.COMMIT, start);
+        }
+        metrics.flush();
+        // the logs of the committed lines are durable too
+        flushLogStore(false);
+        if (throttle != null) {
+            throttle.releaseTransaction();
+            CSVImportThrottle transactionThrottle = throttle;
+            throttle = null;
+            try {
+                transactionThrottle.commitDone(System.nanoTime() - start);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted", e);
+            }
+        }
+    }
+
+    /**
+     * Applies the throughput limits of the options before importing a line:
+     * waits for a free transaction slot when starting a batch, and for the
+     * next line slot.
+     *
+     * @since 5.9.2
+     */
+    protected void throttle() {
+        CSVImportThrottle importThrottle = getControl().getThrottle(options);
+        if (!importThrottle.isEnabled()) {
+            return;
+        }
+        try {
+            if (throttle == null) {
+                importThrottle.acquireTransaction();
+                throttle = importThrottle;
+            }
+            importThrottle.awaitLine();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted", e);
+        }
+    }
+
     protected void logError(long lineNumber, String message,
             String localizedMessage, String... params) {
-        importLogs.add(new CSVImportLog(lineNumber, ERROR, String.format(
-                message, (Object[]) params), localizedMessage, params));
-        String lineMessage = String.format("Line %d", lineNumber);
-        String errorMessage = String.format(message, (Object[]) params);
-        log.error(String.format("%s: %s", lineMessage, errorMessage));
+        logError(lineNumber, null, null, message, localizedMessage, params);
+    }
+
+    /**
+     * Stores an error import log, the message being only formatted when read.
+     * <p>
+     * In the server log, only the first errors of each kind (message and
+     * column) are written, the other ones being counted and reported by
+     * {@link #logErrorSummary()}.
+     *
+     * @param column the column the error is about, may be {@code null}
+     * @param cause the cause of the error, may be {@code null}
+     * @since 5.9.2
+     */
+    protected void logError(long lineNumber, String column, Throwable cause,
+            String message, String localizedMessage, String... params) {
+        CSVImportLog importLog = CSVImportLog.fromTemplate(lineNumber, ERROR,
+                message, localizedMessage, params);
+        addImportLog(importLog);
+
+        String errorKey = column == null ? localizedMessage : localizedMessage
+                + ':' + column;
+        if (errorCounts == null) {
+            errorCounts = new HashMap<String, long[]>();
+        }
+        long[] count = errorCounts.get(errorKey);
+        if (count == null) {
+            count = new long[1];
+            errorCounts.put(errorKey, count);
+        }
+        if (++count[0] <= getMaxLoggedErrors()) {
+            log.error("Line " + lineNumber + ": " + importLog.getMessage());
+            if (cause != null) {
+                log.debug(cause, cause);
+            }
+        }
+    }
+
+    protected long getMaxLoggedErrors() {
+        // transient field so may become null
+        if (maxLoggedErrors == null) {
+            String value = Framework.getProperty(MAX_LOGGED_ERRORS_PROPERTY);
+            long max = DEFAULT_MAX_LOGGED_ERRORS;
+            if (!StringUtils.isBlank(value)) {
+                try {
+                    max = Long.parseLong(value.trim());
+                } catch (NumberFormatException e) {
+                    log.warn(String.format("Invalid value '%s' of %s, using %d",
+                            value, MAX_LOGGED_ERRORS_PROPERTY,
+                            Long.valueOf(DEFAULT_MAX_LOGGED_ERRORS)));
+                }
+            }
+            maxLoggedErrors = Long.valueOf(max);
+        }
+        return maxLoggedErrors.longValue();
+    }
+
+    /**
+     * Writes in the server log one line for each kind of error that occurred
+     * more often than logged.
+     *
+     * @since 5.9.2
+     */
+    protected void logErrorSummary() {
+        if (errorCounts == null) {
+            return;
+        }
+        long max = getMaxLoggedErrors();
+        for (Map.Entry<String, long[]> entry : errorCounts.entrySet()) {
+            long count = entry.getValue()[0];
+            if (count > max) {
+                log.error("CSV file " + csvFileName + ": " + count
+                        + " errors '" + entry.getKey() + "', only the first "
+                        + max + " were logged");
+            }
+        }
+        errorCounts = null;
+    }
+
+    /**
+     * Returns the maximum number of skipped and error lines listed in the
+     * email, the default one when the configured value is invalid.
+     *
+     * @since 5.9.2
+     */
+    protected static int getMailMaxLogs() {
+        String value = Framework.getProperty(MAIL_MAX_LOGS_PROPERTY);
+        if (value == null) {
+            return DEFAULT_MAIL_MAX_LOGS;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn(String.format("Invalid value '%s' of %s, using %d",
+                    value, MAIL_MAX_LOGS_PROPERTY,
+                    Integer.valueOf(DEFAULT_MAIL_MAX_LOGS)));
+            return DEFAULT_MAIL_MAX_LOGS;
+        }
     }
 
     protected void sendMail() throws Exception {
@@ -510,13 +2517,19 @@ public class CSVImporterWork extends AbstractWork {
         OperationContext ctx = new OperationContext(session);
         ctx.setInput(session.getRootDocument());
 
-        CSVImporter csvImporter = Framework.getLocalService(CSVImporter.class);
-        List<CSVImportLog> importLogs = csvImporter.getImportLogs(getId());
-        CSVImportResult importResult = CSVImportResult.fromImportLogs(importLogs);
-        List<CSVImportLog> skippedAndErrorImportLogs = csvImporter.getImportLogs(
-                getId(), Status.SKIPPED, Status.ERROR);
+        // only the first skipped and error lines, all of them being in the
+        // downloadable report
+        CSVImportLogStore store = getLogStore();
+        CSVImportResult importResult = store.getResult();
+        List<CSVImportLog> skippedAndErrorImportLogs = store.getLogs(
+                new Status[] { Status.SKIPPED, Status.ERROR }, 0,
+                Long.MAX_VALUE, 0, getMailMaxLogs());
+        long moreLines = importResult.getSkippedLineCount()
+                + importResult.getErrorLineCount()
+                - skippedAndErrorImportLogs.size();
         ctx.put("importResult", importResult);
         ctx.put("skippedAndErrorImportLogs", skippedAndErrorImportLogs);
+        ctx.put("moreSkippedAndErrorLines", Long.valueOf(moreLines));
         ctx.put("csvFilename", csvFileName);
         ctx.put("startDate", DateFormat.getInstance().format(startDate));
         ctx.put("username", username);
@@ -18,6 +18,7 @@
 package org.nuxeo.ecm.csv;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Map;
 
 import org.nuxeo.common.utils.Path;
@@ -32,7 +33,7 @@ import org.nuxeo.ecm.core.api.PathRef;
  * @since 5.7
  */
 public class DefaultCSVImporterDocumentFactory implements
-        CSVImporterDocumentFactory {
+        CSVImporterBulkDocumentFactory {
 
     private static final long serialVersionUID = 1L;
 
@@ -40,21 +41,93 @@ public class DefaultCSVImporterDocumentFactory implements
     public void createDocument(CoreSession session, String parentPath,
             String name, String type, Map<String, Serializable> values)
             throws ClientException {
-        DocumentModel doc = session.createDocumentModel(parentPath, name, type);
-        for (Map.Entry<String, Serializable> entry : values.entrySet()) {
-            doc.setPropertyValue(entry.getKey(), entry.getValue());
-        }
-        session.createDocument(doc);
+        createDocument(session, parentPath, name, type, values,
+                Collections.<String, Serializable> emptyMap());
     }
 
     @Override
     public void updateDocument(CoreSession session, DocumentRef docRef,
             Map<String, Serializable> values) throws ClientException {
+        updateDocument(session, docRef, values,
+                Collections.<String, Serializable> emptyMap());
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    @Override
+    public DocumentModel createDocument(CoreSession session,
+            String parentPath, String name, String type,
+            Map<String, Serializable> values,
+            Map<String, Serializable> contextData) throws ClientException {
+        DocumentModel doc = session.createDocumentModel(parentPath, name, type);
+        setPropertyValues(doc, values);
+        putContextData(doc, contextData);
+        return session.createDocument(doc);
+    }
+
+    /**
+     * @since 5.9.2
+     */
+    @Override
+    public DocumentModel updateDocument(CoreSession session,
+            DocumentRef docRef, Map<String, Serializable> values,
+            Map<String, Serializable> contextData) throws ClientException {
         DocumentModel doc = session.getDocument(docRef);
+        setPropertyValues(doc, values);
+        putContextData(doc, contextData);
+        return session.saveDocument(doc);
+    }
+
+    /**
+     * Sets the values on a document, reading the typed slots of a
+     * {@link CSVImportRow} without going through its entries.
+     *
+     * @since 5.9.2
+     */
+    protected static void setPropertyValues(DocumentModel doc,
+            Map<String, Serializable> values) throws ClientException {
+        if (values instanceof CSVImportRow) {
+            CSVImportRow row = (CSVImportRow) values;
+            CSVImportColumn[] columns = row.getColumns();
+            for (int i = 0; i < row.size(); i++) {
+                int slot = row.getSlot(i);
+                String xpath = row.getXPath(slot);
+                // the document properties only take objects, so the number
+                // is boxed once, here
+                switch (columns[slot].getKind()) {
+                case INTEGER:
+                    doc.setPropertyValue(xpath,
+                            Integer.valueOf((int) row.getLong(slot)));
+                    break;
+                case LONG:
+                    doc.setPropertyValue(xpath,
+                            Long.valueOf(row.getLong(slot)));
+                    break;
+                case DOUBLE:
+                    doc.setPropertyValue(xpath,
+                            Double.valueOf(row.getDouble(slot)));
+                    break;
+                case BOOLEAN:
+                    doc.setPropertyValue(xpath,
+                            Boolean.valueOf(row.getBoolean(slot)));
+                    break;
+                default:
+                    doc.setPropertyValue(xpath, row.getObject(slot));
+                }
+            }
+            return;
+        }
         for (Map.Entry<String, Serializable> entry : values.entrySet()) {
             doc.setPropertyValue(entry.getKey(), entry.getValue());
         }
-        session.saveDocument(doc);
+    }
+
+    protected static void putContextData(DocumentModel doc,
+            Map<String, Serializable> contextData) {
+        for (Map.Entry<String, Serializable> entry : contextData.entrySet()) {
+            doc.putContextData(entry.getKey(), entry.getValue());
+        }
     }
 
     @Override
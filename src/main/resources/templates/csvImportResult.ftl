@@ -47,6 +47,12 @@
                             ${importResult.errorLineCount}/${importResult.totalLineCount}
                             </td>
                           </tr>
+                          <#if (importResult.unchangedLineCount > 0)>
+                          <tr>
+                            <td style="border:1px solid #eee;color:#777;font-size:13px;white-space:nowrap;width: 35%;">Lines unchanged</td>
+                            <td style="border:1px solid #eee;color:#777;font-size:13px;">${importResult.unchangedLineCount}/${importResult.totalLineCount}</td>
+                          </tr>
+                          </#if>
                         </tbody>
                       </table><br/>
                       <p style="margin:0;font-size:14px;">Skipped and error lines:</p><br/>
@@ -67,6 +73,9 @@
                           </#list>
                         </tbody>
                       </table><br/>
+                      <#if (moreSkippedAndErrorLines > 0)>
+                      <p style="margin:0;font-size:14px;">${moreSkippedAndErrorLines} more skipped and error lines are not listed here. Download the full report from the CSV import dialog, or with the CSV.ImportReport operation.</p><br/>
+                      </#if>
                       <p style="margin:0;">
                         <a style="color:#22aee8;text-decoration:underline;word-wrap:break-word !important;" href="${importFolderUrl}">&#187; See the list of documents in the folder</a>
                       </p>
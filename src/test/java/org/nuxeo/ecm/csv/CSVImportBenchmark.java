@@ -0,0 +1,327 @@
+/*
+ * (C) Copyright 2026 Nuxeo SA (http://nuxeo.com/) and contributors.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     agent
+ */
+
+package org.nuxeo.ecm.csv;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.storage.sql.ra.PoolingRepositoryFactory;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.test.TransactionalFeature;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.runner.Deploy;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.LocalDeploy;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+import com.google.inject.Inject;
+
+/**
+ * End-to-end throughput benchmark of {@link CSVImporterWork} against the
+ * embedded H2 repository.
+ * <p>
+ * Not part of the default test run, launch it explicitly with:
+ *
+ * <pre>
+ * mvn test -Dtest=CSVImportBenchmark -Dnuxeo.csv.benchmark.rows=1000000
+ * </pre>
+ *
+ * Each scenario reports rows/sec, commit latency percentiles and the heap
+ * high-water mark.
+ *
+ * @since 5.9.2
+ */
+@RunWith(FeaturesRunner.class)
+@Features({ TransactionalFeature.class, CoreFeature.class })
+@Deploy({ "org.nuxeo.ecm.csv", "org.nuxeo.runtime.datasource",
+        "org.nuxeo.ecm.platform.types.api", "org.nuxeo.ecm.platform.types.core" })
+@RepositoryConfig(repositoryFactoryClass = PoolingRepositoryFactory.class, cleanup = Granularity.METHOD)
+@LocalDeploy("org.nuxeo.ecm.csv:test-ui-types-contrib.xml")
+public class CSVImportBenchmark {
+
+    private static final Log log = LogFactory.getLog(CSVImportBenchmark.class);
+
+    public static final String ROWS_PROPERTY = "nuxeo.csv.benchmark.rows";
+
+    public static final String BATCH_SIZE_PROPERTY = "nuxeo.csv.benchmark.batchSize";
+
+    protected static final int FOLDER_FANOUT = 100;
+
+    protected static final int BLOB_COUNT = 100;
+
+    protected static final String BLOBS_FOLDER_PROPERTY = "nuxeo.csv.blobs.folder";
+
+    @Inject
+    protected CoreSession session;
+
+    @Inject
+    protected WorkManager workManager;
+
+    protected File workDir;
+
+    protected int rows;
+
+    protected int batchSize;
+
+    @Before
+    public void setUp() throws IOException {
+        workManager.clearCompletedWork(0);
+        rows = Integer.getInteger(ROWS_PROPERTY, 100000).intValue();
+        batchSize = Integer.getInteger(BATCH_SIZE_PROPERTY, 50).intValue();
+        workDir = File.createTempFile("csvbench", "");
+        workDir.delete();
+        workDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(workDir);
+    }
+
+    @Test
+    public void flatCreate() throws Exception {
+        File csv = generateFlat("flat.csv", rows, "Created", false);
+        run("flat create-only", csv, rows);
+    }
+
+    @Test
+    public void nestedCreate() throws Exception {
+        File csv = generateNested("nested.csv", rows);
+        run("nested create-only", csv, rows);
+    }
+
+    @Test
+    public void flatUpdateHeavy() throws Exception {
+        // pre-create 80% of the documents, then measure a full import where
+        // most rows are updates
+        int existing = rows * 8 / 10;
+        File initial = generateFlat("initial.csv", existing, "Initial", false);
+        run(null, initial, existing);
+        File csv = generateFlat("update.csv", rows, "Updated", false);
+        run("flat update-heavy", csv, rows);
+    }
+
+    @Test
+    public void flatCreateWithBlobs() throws Exception {
+        File blobsDir = new File(workDir, "blobs");
+        blobsDir.mkdirs();
+        for (int i = 0; i < BLOB_COUNT; i++) {
+            FileUtils.writeStringToFile(new File(blobsDir, "blob" + i
+                    + ".txt"), "Blob content " + i, "UTF-8");
+        }
+        String previousBlobsFolder = Framework.getProperty(BLOBS_FOLDER_PROPERTY);
+        Framework.getProperties().setProperty(BLOBS_FOLDER_PROPERTY,
+                blobsDir.getAbsolutePath());
+        try {
+            File csv = generateFlat("blobs.csv", rows, "With blob", true);
+            run("flat create-only with blobs", csv, rows);
+        } finally {
+            if (previousBlobsFolder == null) {
+                Framework.getProperties().remove(BLOBS_FOLDER_PROPERTY);
+            } else {
+                Framework.getProperties().setProperty(BLOBS_FOLDER_PROPERTY,
+                        previousBlobsFolder);
+            }
+        }
+    }
+
+    protected File generateFlat(String filename, int count, String title,
+            boolean withBlobs) throws IOException {
+        File file = new File(workDir, filename);
+        CSVWriter writer = new CSVWriter(new FileWriter(file));
+        try {
+            if (withBlobs) {
+                writer.writeNext(new String[] { "name", "type", "dc:title",
+                        "dc:description", "file:content" });
+            } else {
+                writer.writeNext(new String[] { "name", "type", "dc:title",
+                        "dc:description" });
+            }
+            for (int i = 0; i < count; i++) {
+                String name = "doc" + i;
+                if (withBlobs) {
+                    writer.writeNext(new String[] { name, "File",
+                            title + " " + i, "Description of " + name,
+                            "blob" + (i % BLOB_COUNT) + ".txt" });
+                } else {
+                    writer.writeNext(new String[] { name, "File",
+                            title + " " + i, "Description of " + name });
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * Generates a three-level tree, folders listed before their children.
+     */
+    protected File generateNested(String filename, int count)
+            throws IOException {
+        File file = new File(workDir, filename);
+        CSVWriter writer = new CSVWriter(new FileWriter(file));
+        try {
+            writer.writeNext(new String[] { "name", "type", "dc:title" });
+            int written = 0;
+            for (int i = 0; written < count; i++) {
+                String top = "folder" + i;
+                writer.writeNext(new String[] { top, "Folder", top });
+                written++;
+                for (int j = 0; j < FOLDER_FANOUT && written < count; j++) {
+                    String sub = top + "/sub" + j;
+                    writer.writeNext(new String[] { sub, "Folder", sub });
+                    written++;
+                    for (int k = 0; k < FOLDER_FANOUT && written < count; k++) {
+                        String doc = sub + "/doc" + k;
+                        writer.writeNext(new String[] { doc, "File", doc });
+                        written++;
+                    }
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * Runs the import of the given file and reports its figures, unless
+     * {@code scenario} is {@code null}.
+     */
+    protected void run(String scenario, File csv, int expectedRows)
+            throws InterruptedException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().batchSize(
+                batchSize).build();
+        BenchmarkImporterWork work = new BenchmarkImporterWork(
+                session.getRepositoryName(), "/",
+                session.getPrincipal().getName(), csv, csv.getName(), options,
+                expectedRows / batchSize + 2);
+        TransactionHelper.commitOrRollbackTransaction();
+        System.gc();
+        resetHeapPeak();
+
+        long start = System.nanoTime();
+        workManager.schedule(work);
+        workManager.awaitCompletion(1, TimeUnit.DAYS);
+        long elapsed = System.nanoTime() - start;
+        long heapPeak = getHeapPeak();
+        TransactionHelper.startTransaction();
+
+        assertEquals(expectedRows,
+                CSVImportLogStore.open(work.getId()).getResult().getTotalLineCount());
+        if (scenario == null) {
+            return;
+        }
+        long[] latencies = work.getCommitLatencies();
+        Arrays.sort(latencies);
+        log.warn(String.format(
+                "%s: %d rows in %d ms, %.0f rows/s, %d commits, commit latency p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms, heap high-water %d MB",
+                scenario, expectedRows,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), expectedRows
+                        / (elapsed / 1e9), latencies.length,
+                percentile(latencies, 50), percentile(latencies, 95),
+                percentile(latencies, 99), percentile(latencies, 100),
+                heapPeak / (1024 * 1024)));
+    }
+
+    protected static double percentile(long[] sortedNanos, int percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        index = Math.max(0, Math.min(index, sortedNanos.length - 1));
+        return sortedNanos[index] / 1e6;
+    }
+
+    protected static void resetHeapPeak() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    protected static long getHeapPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Import work recording the latency of each transaction commit.
+     */
+    protected static class BenchmarkImporterWork extends CSVImporterWork {
+
+        private static final long serialVersionUID = 1L;
+
+        protected long[] commitLatencies;
+
+        protected int commitCount;
+
+        public BenchmarkImporterWork(String repositoryName, String parentPath,
+                String username, File csvFile, String csvFileName,
+                CSVImporterOptions options, int expectedCommits) {
+            super(repositoryName, parentPath, username, csvFile, csvFileName,
+                    options);
+            commitLatencies = new long[expectedCommits];
+        }
+
+        @Override
+        public void commitOrRollbackTransaction() {
+            long start = System.nanoTime();
+            super.commitOrRollbackTransaction();
+            if (commitCount == commitLatencies.length) {
+                commitLatencies = Arrays.copyOf(commitLatencies,
+                        commitCount * 2);
+            }
+            commitLatencies[commitCount++] = System.nanoTime() - start;
+        }
+
+        public long[] getCommitLatencies() {
+            return Arrays.copyOf(commitLatencies, commitCount);
+        }
+    }
+
+}
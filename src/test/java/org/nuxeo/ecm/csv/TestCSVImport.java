@@ -20,34 +20,59 @@ package org.nuxeo.ecm.csv;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import javax.naming.NamingException;
+import javax.transaction.RollbackException;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.nuxeo.common.utils.FileUtils;
+import org.nuxeo.common.utils.Path;
+import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.ClientException;
+import org.nuxeo.ecm.core.api.CoreInstance;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentSecurityException;
 import org.nuxeo.ecm.core.api.PathRef;
+import org.nuxeo.ecm.core.api.impl.blob.FileBlob;
+import org.nuxeo.ecm.core.event.Event;
+import org.nuxeo.ecm.core.event.EventListener;
 import org.nuxeo.ecm.core.storage.sql.ra.PoolingRepositoryFactory;
 import org.nuxeo.ecm.core.test.CoreFeature;
 import org.nuxeo.ecm.core.test.TransactionalFeature;
 import org.nuxeo.ecm.core.test.annotations.Granularity;
 import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
 import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.test.runner.Deploy;
 import org.nuxeo.runtime.test.runner.Features;
 import org.nuxeo.runtime.test.runner.FeaturesRunner;
 import org.nuxeo.runtime.test.runner.LocalDeploy;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
+import au.com.bytecode.opencsv.CSVReader;
+
 import com.google.inject.Inject;
 
 /**
@@ -59,15 +84,37 @@ import com.google.inject.Inject;
 @Deploy({ "org.nuxeo.ecm.csv", "org.nuxeo.runtime.datasource",
         "org.nuxeo.ecm.platform.types.api", "org.nuxeo.ecm.platform.types.core" })
 @RepositoryConfig(repositoryFactoryClass = PoolingRepositoryFactory.class, cleanup = Granularity.METHOD)
-@LocalDeploy("org.nuxeo.ecm.csv:test-ui-types-contrib.xml")
+@LocalDeploy({ "org.nuxeo.ecm.csv:test-ui-types-contrib.xml",
+        "org.nuxeo.ecm.csv:test-complex-types-contrib.xml",
+        "org.nuxeo.ecm.csv:test-bulk-mode-listener-contrib.xml" })
 public class TestCSVImport {
 
     private static final String DOCS_OK_CSV = "docs_ok.csv";
 
     private static final String DOCS_WITH_FOLDERS_OK_CSV = "docs_with_folders_ok.csv";
 
+    private static final String DOCS_IN_FOLDER_CSV = "docs_in_folder.csv";
+
     private static final String DOCS_NOT_OK_CSV = "docs_not_ok.csv";
 
+    private static final String DOCS_UNORDERED_CSV = "docs_unordered.csv";
+
+    private static final String DOCS_WITH_DUPLICATES_CSV = "docs_with_duplicates.csv";
+
+    private static final String DOCS_CHANGED_CSV = "docs_changed.csv";
+
+    private static final String DOCS_SNAPSHOT_CSV = "docs_snapshot.csv";
+
+    private static final String DOCS_SNAPSHOT_PREVIOUS_CSV = "docs_snapshot_previous.csv";
+
+    private static final String DOCS_SNAPSHOT_CHILDREN_CSV = "docs_snapshot_children.csv";
+
+    private static final String DOCS_COMPLEX_CSV = "docs_complex.csv";
+
+    private static final String DOCS_MIXED_CSV = "docs_mixed.csv";
+
+    private static final String DOCS_TYPED_CSV = "docs_typed.csv";
+
     @Inject
     protected CoreSession session;
 
@@ -220,6 +267,334 @@ public class TestCSVImport {
         assertTrue(session.exists(new PathRef("/mynote2")));
     }
 
+    @Test
+    public void shouldReportResultFromRegistry() throws InterruptedException,
+            ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().updateExisting(
+                false).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_NOT_OK_CSV), DOCS_NOT_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        CSVImportRegistry.Entry entry = CSVImportRegistry.peek(importId);
+        assertTrue(entry.isComplete());
+        CSVImportResult result = csvImporter.getImportResult(importId);
+        assertEquals(5, result.getTotalLineCount());
+        assertEquals(2, result.getSuccessLineCount());
+        assertEquals(0, result.getSkippedLineCount());
+        assertEquals(3, result.getErrorLineCount());
+
+        List<CSVImportLog> importLogs = csvImporter.getLastImportLogs(
+                importId, 2);
+        assertEquals(2, importLogs.size());
+        assertEquals(4, importLogs.get(0).getLine());
+        assertEquals(5, importLogs.get(1).getLine());
+        assertTrue(csvImporter.getImportStatus(importId).isComplete());
+    }
+
+    @Test
+    public void shouldQueryStoredLogs() throws Exception {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().updateExisting(
+                false).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_NOT_OK_CSV), DOCS_NOT_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        CSVImportLogStore store = CSVImportLogStore.open(importId);
+        assertTrue(store.isCompleted());
+        assertEquals(3, store.getCount(CSVImportLog.Status.ERROR));
+        List<CSVImportLog> importLogs = store.getLogs(
+                new CSVImportLog.Status[] { CSVImportLog.Status.ERROR }, 2, 5,
+                0, -1);
+        assertEquals(2, importLogs.size());
+        assertEquals(3, importLogs.get(0).getLine());
+        assertEquals("The type 'NotExistingType' does not exist",
+                importLogs.get(0).getMessage());
+        assertEquals(5, importLogs.get(1).getLine());
+
+        importLogs = store.getLogs(null, 0, Long.MAX_VALUE, 1, 2);
+        assertEquals(2, importLogs.size());
+        assertEquals(2, importLogs.get(0).getLine());
+        assertEquals(3, importLogs.get(1).getLine());
+    }
+
+    @Test
+    public void shouldReadSortedPagesOfUnsortedLogs() throws IOException {
+        String importId = "test:/:csvImport:runs";
+        CSVImportLogStore store = CSVImportLogStore.create(importId);
+        try {
+            // one run per flush, in decreasing line order
+            for (int run = 2; run >= 0; run--) {
+                for (int line = 1; line <= 3; line++) {
+                    store.append(new CSVImportLog(run * 3 + line,
+                            CSVImportLog.Status.SUCCESS, "Imported",
+                            "label.csv.importer.documentCreated"));
+                }
+                store.flush();
+            }
+            List<CSVImportLog> importLogs = store.getLogs(null, 0,
+                    Long.MAX_VALUE, 2, 4);
+            assertEquals(4, importLogs.size());
+            for (int i = 0; i < importLogs.size(); i++) {
+                assertEquals(i + 3, importLogs.get(i).getLine());
+            }
+
+            // the runs are merged
+            store.close(true);
+            importLogs = store.getLogs();
+            assertEquals(9, importLogs.size());
+            for (int i = 0; i < importLogs.size(); i++) {
+                assertEquals(i + 1, importLogs.get(i).getLine());
+            }
+        } finally {
+            CSVImportLogStore.delete(importId);
+        }
+    }
+
+    @Test
+    public void shouldImportThroughOperations() throws Exception {
+        CSVImportOperation importOperation = new CSVImportOperation();
+        importOperation.session = session;
+        importOperation.csvImporter = csvImporter;
+        importOperation.path = "/";
+        TransactionHelper.commitOrRollbackTransaction();
+        Blob result = importOperation.run(new FileBlob(
+                getCSVFile(DOCS_OK_CSV)));
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        assertEquals("application/json", result.getMimeType());
+        String json = result.getString();
+        String importId = json.substring("{\"id\":\"".length(),
+                json.length() - 2);
+        assertTrue(session.exists(new PathRef("/myfile")));
+
+        CSVImportStatusOperation statusOperation = new CSVImportStatusOperation();
+        statusOperation.session = session;
+        statusOperation.csvImporter = csvImporter;
+        statusOperation.importId = importId;
+        json = statusOperation.run().getString();
+        assertTrue(json, json.contains("\"state\":\"COMPLETED\""));
+        assertTrue(json, json.contains("\"successLineCount\":2"));
+
+        CSVImportLogsOperation logsOperation = new CSVImportLogsOperation();
+        logsOperation.session = session;
+        logsOperation.csvImporter = csvImporter;
+        logsOperation.importId = importId;
+        json = logsOperation.run().getString();
+        assertTrue(json, json.contains("\"total\":2"));
+        assertTrue(json, json.contains("\"message\":\"Document created\""));
+
+        // a user who can neither read the root nor started the import
+        CoreSession otherSession = CoreInstance.openCoreSession(
+                session.getRepositoryName(), "bob");
+        try {
+            assertFalse(csvImporter.canReadImport(otherSession, importId));
+            statusOperation.session = otherSession;
+            try {
+                statusOperation.run();
+                fail();
+            } catch (DocumentSecurityException e) {
+                // expected
+            }
+            logsOperation.session = otherSession;
+            try {
+                logsOperation.run();
+                fail();
+            } catch (DocumentSecurityException e) {
+                // expected
+            }
+        } finally {
+            CoreInstance.getInstance().close(otherSession);
+        }
+    }
+
+    @Test
+    public void shouldWriteReport() throws Exception {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().updateExisting(
+                false).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_NOT_OK_CSV), DOCS_NOT_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        Blob report = CSVImportReportOperation.getReport(importId);
+        CSVReader reader = new CSVReader(new InputStreamReader(
+                new GZIPInputStream(report.getStream()), "UTF-8"));
+        try {
+            List<String[]> lines = reader.readAll();
+            // header and the 3 error lines
+            assertEquals(4, lines.size());
+            assertEquals("1", lines.get(1)[0]);
+            assertEquals("ERROR", lines.get(1)[1]);
+            assertEquals("3", lines.get(2)[0]);
+            assertEquals("The type 'NotExistingType' does not exist",
+                    lines.get(2)[2]);
+            assertEquals("5", lines.get(3)[0]);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void shouldPageImportLogs() throws InterruptedException,
+            ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().updateExisting(
+                false).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_NOT_OK_CSV), DOCS_NOT_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        CSVImportLog.Status[] statuses = new CSVImportLog.Status[] {
+                CSVImportLog.Status.SUCCESS, CSVImportLog.Status.ERROR };
+        assertEquals(5, csvImporter.getImportLogCount(importId, statuses));
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId,
+                statuses, 2, 2);
+        assertEquals(2, importLogs.size());
+        assertEquals(3, importLogs.get(0).getLine());
+        assertEquals(4, importLogs.get(1).getLine());
+
+        importLogs = csvImporter.getImportLogs(importId, statuses, 4, 10);
+        assertEquals(1, importLogs.size());
+        assertEquals(5, importLogs.get(0).getLine());
+
+        importLogs = csvImporter.getImportLogs(importId,
+                new CSVImportLog.Status[] { CSVImportLog.Status.ERROR }, 1, 1);
+        assertEquals(1, importLogs.size());
+        assertEquals(3, importLogs.get(0).getLine());
+    }
+
+    @Test
+    public void shouldImportInDistributedChunks() throws InterruptedException,
+            ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().updateExisting(
+                false).distributedChunkSize(64).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_NOT_OK_CSV), DOCS_NOT_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(5, importLogs.size());
+        CSVImportLog.Status[] expectedStatuses = { CSVImportLog.Status.ERROR,
+                CSVImportLog.Status.SUCCESS, CSVImportLog.Status.ERROR,
+                CSVImportLog.Status.SUCCESS, CSVImportLog.Status.ERROR };
+        for (int i = 0; i < expectedStatuses.length; i++) {
+            assertEquals(i + 1, importLogs.get(i).getLine());
+            assertEquals(expectedStatuses[i], importLogs.get(i).getStatus());
+        }
+
+        assertFalse(session.exists(new PathRef("/myfile")));
+        assertTrue(session.exists(new PathRef("/mynote")));
+        assertTrue(session.exists(new PathRef("/mynote2")));
+
+        // the logs of the chunks are counted once merged
+        CSVImportResult importResult = csvImporter.getImportResult(importId);
+        assertEquals(5, importResult.getTotalLineCount());
+        assertEquals(2, importResult.getSuccessLineCount());
+        assertEquals(3, importResult.getErrorLineCount());
+    }
+
+    @Test
+    public void shouldReadRequestsMadeOnOtherNodes() {
+        String importId = "test:/:csvImport:requests";
+        CSVImportControl.clear(importId);
+        try {
+            CSVImportControl.get(importId).pause();
+            // the control of the same import on another node
+            CSVImportControl.remove(importId);
+            CSVImportControl control = CSVImportControl.get(importId);
+            control.startRun(1);
+            assertTrue(control.isPaused());
+            assertFalse(control.isCancelled());
+
+            control.cancel();
+            CSVImportControl.remove(importId);
+            control = CSVImportControl.get(importId);
+            control.startRun(2);
+            assertTrue(control.isCancelled());
+        } finally {
+            CSVImportControl.clear(importId);
+        }
+    }
+
+    /**
+     * Records the maximum number of documents created at the same time.
+     */
+    public static class ConcurrencyDocumentFactory extends
+            DefaultCSVImporterDocumentFactory {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static final AtomicInteger running = new AtomicInteger();
+
+        protected static final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Override
+        public void createDocument(CoreSession session, String parentPath,
+                String name, String type, Map<String, Serializable> values)
+                throws ClientException {
+            int count = running.incrementAndGet();
+            try {
+                int max;
+                while ((max = maxRunning.get()) < count
+                        && !maxRunning.compareAndSet(max, count)) {
+                    // retry
+                }
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.createDocument(session, parentPath, name, type, values);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    @Test
+    public void shouldImportChunksLocally() throws InterruptedException,
+            ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().updateExisting(
+                false).distributedChunkSize(16).localChunks(true).documentModelFactory(
+                new ConcurrencyDocumentFactory()).build();
+        ConcurrencyDocumentFactory.maxRunning.set(0);
+        Framework.getProperties().setProperty(
+                CSVImportChunkExecutor.MAX_CONCURRENT_WRITES_PROPERTY, "1");
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId;
+        try {
+            importId = csvImporter.launchImport(session, "/",
+                    getCSVFile(DOCS_NOT_OK_CSV), DOCS_NOT_OK_CSV, options);
+            workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        } finally {
+            Framework.getProperties().remove(
+                    CSVImportChunkExecutor.MAX_CONCURRENT_WRITES_PROPERTY);
+        }
+        TransactionHelper.startTransaction();
+
+        // one chunk writing at a time
+        assertEquals(1, ConcurrencyDocumentFactory.maxRunning.get());
+
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(5, importLogs.size());
+        assertEquals(2, csvImporter.getImportLogCount(importId,
+                CSVImportLog.Status.SUCCESS));
+        assertEquals(3, csvImporter.getImportLogCount(importId,
+                CSVImportLog.Status.ERROR));
+        assertTrue(session.exists(new PathRef("/mynote")));
+        assertTrue(session.exists(new PathRef("/mynote2")));
+    }
+
     @Test
     public void shouldImportDirectoryStructure() throws InterruptedException,
             ClientException {
@@ -260,4 +635,1035 @@ public class TestCSVImport {
         assertEquals("File", doc.getType());
     }
 
+    @Test
+    public void shouldCreateMissingParents() throws InterruptedException,
+            ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().updateExisting(
+                false).createMissingParents(true).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_WITH_FOLDERS_OK_CSV), DOCS_WITH_FOLDERS_OK_CSV,
+                options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(5, importLogs.size());
+        for (CSVImportLog importLog : importLogs) {
+            assertEquals(CSVImportLog.Status.SUCCESS, importLog.getStatus());
+        }
+
+        DocumentModel doc = session.getDocument(new PathRef("/folder/folder"));
+        assertEquals("Folder", doc.getType());
+        assertEquals("folder", doc.getTitle());
+        assertTrue(session.exists(new PathRef("/folder/folder/doc3")));
+    }
+
+    /**
+     * Records the paths of the created documents.
+     */
+    public static class RecordingDocumentFactory extends
+            DefaultCSVImporterDocumentFactory {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static final List<String> createdPaths = new CopyOnWriteArrayList<String>();
+
+        @Override
+        public void createDocument(CoreSession session, String parentPath,
+                String name, String type, Map<String, Serializable> values)
+                throws ClientException {
+            createdPaths.add(new Path(parentPath).append(name).toString());
+            super.createDocument(session, parentPath, name, type, values);
+        }
+    }
+
+    @Test
+    public void shouldCreateMissingParentsWithFactory()
+            throws InterruptedException, ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().updateExisting(
+                false).createMissingParents(true).documentModelFactory(
+                new RecordingDocumentFactory()).build();
+        RecordingDocumentFactory.createdPaths.clear();
+        TransactionHelper.commitOrRollbackTransaction();
+        csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_WITH_FOLDERS_OK_CSV), DOCS_WITH_FOLDERS_OK_CSV,
+                options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        // the missing folder too
+        assertTrue(RecordingDocumentFactory.createdPaths.contains("/folder/folder"));
+        assertEquals(6, RecordingDocumentFactory.createdPaths.size());
+        DocumentModel doc = session.getDocument(new PathRef("/folder/folder"));
+        assertEquals("folder", doc.getTitle());
+    }
+
+    @Test
+    public void shouldImportSubtreesInSameChunk() throws InterruptedException,
+            ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().updateExisting(
+                false).createMissingParents(true).distributedChunkSize(16).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_WITH_FOLDERS_OK_CSV), DOCS_WITH_FOLDERS_OK_CSV,
+                options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        // parents are never created by another chunk
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(5, importLogs.size());
+        for (int i = 0; i < importLogs.size(); i++) {
+            assertEquals(i + 1, importLogs.get(i).getLine());
+            assertEquals(CSVImportLog.Status.SUCCESS,
+                    importLogs.get(i).getStatus());
+        }
+        assertTrue(session.exists(new PathRef("/folder/subfolder/doc2")));
+        assertTrue(session.exists(new PathRef("/folder/folder/doc3")));
+        assertFalse(CSVImportChunk.getDirectory(importId).exists());
+    }
+
+    @Test
+    public void shouldSpreadLinesOfExistingFoldersOverChunks()
+            throws IOException, ClientException {
+        session.createDocument(session.createDocumentModel("/", "folder",
+                "Folder"));
+        session.save();
+        File dir = CSVImportChunk.getDirectory("test:/:csvImport:partition");
+        try {
+            List<CSVImportChunk> chunks = CSVImportChunk.partition(
+                    getCSVFile(DOCS_IN_FOLDER_CSV), false, 0, 4, dir, session,
+                    "/");
+            // not all in the chunk of the common folder
+            assertEquals(4, chunks.size());
+        } finally {
+            FileUtils.deleteTree(dir);
+        }
+
+        Map<String, Boolean> existingPaths = new HashMap<String, Boolean>();
+        assertEquals("folder/doc1", CSVImportChunk.getChunkKey("folder/doc1",
+                session, "/", existingPaths));
+        // with its missing parent
+        assertEquals("folder/newfolder", CSVImportChunk.getChunkKey(
+                "folder/newfolder/doc9", session, "/", existingPaths));
+        assertEquals("other", CSVImportChunk.getChunkKey("other/doc10",
+                session, "/", existingPaths));
+    }
+
+    @Test
+    public void shouldSortLinesByPathDepth() throws InterruptedException,
+            ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().updateExisting(
+                false).sortByPathDepth(true).sortMaxLinesInMemory(2).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_UNORDERED_CSV), DOCS_UNORDERED_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        // folder lines first, then by depth, in import order
+        List<CSVImportLog> importLogs = csvImporter.getLastImportLogs(
+                importId, 6);
+        assertEquals(6, importLogs.size());
+        assertEquals(5, importLogs.get(0).getLine());
+        assertEquals(2, importLogs.get(1).getLine());
+        assertEquals(3, importLogs.get(2).getLine());
+        assertEquals(1, importLogs.get(3).getLine());
+
+        importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(6, importLogs.size());
+        for (CSVImportLog importLog : importLogs) {
+            assertEquals(CSVImportLog.Status.SUCCESS, importLog.getStatus());
+        }
+        // but stored logs are read in line order
+        for (int i = 0; i < importLogs.size(); i++) {
+            assertEquals(i + 1, importLogs.get(i).getLine());
+        }
+
+        assertTrue(session.exists(new PathRef("/folder/subfolder/doc2")));
+        assertTrue(session.exists(new PathRef("/folder/doc1")));
+        assertTrue(session.exists(new PathRef("/other/doc3")));
+    }
+
+    @Test
+    public void shouldSortLinesOfDistributedChunks()
+            throws InterruptedException, ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().updateExisting(
+                false).sortByPathDepth(true).distributedChunkSize(16).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_UNORDERED_CSV), DOCS_UNORDERED_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        // each subtree is imported by depth by a single chunk
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(6, importLogs.size());
+        for (int i = 0; i < importLogs.size(); i++) {
+            assertEquals(i + 1, importLogs.get(i).getLine());
+            assertEquals(CSVImportLog.Status.SUCCESS,
+                    importLogs.get(i).getStatus());
+        }
+        assertTrue(session.exists(new PathRef("/folder/subfolder/doc2")));
+        assertTrue(session.exists(new PathRef("/other/doc3")));
+    }
+
+    @Test
+    public void shouldSkipDuplicateLines() throws InterruptedException,
+            ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().duplicateLinePolicy(
+                CSVImporterOptions.DuplicateLinePolicy.SKIP).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_WITH_DUPLICATES_CSV), DOCS_WITH_DUPLICATES_CSV,
+                options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(3, importLogs.size());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(0).getStatus());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(1).getStatus());
+        CSVImportLog importLog = importLogs.get(2);
+        assertEquals(3, importLog.getLine());
+        assertEquals(CSVImportLog.Status.SKIPPED, importLog.getStatus());
+        assertEquals("Duplicate document '/mynote' in the CSV file",
+                importLog.getMessage());
+
+        DocumentModel doc = session.getDocument(new PathRef("/mynote"));
+        assertEquals("My Note", doc.getTitle());
+    }
+
+    @Test
+    public void shouldSkipDuplicateLinesOfDistributedChunks()
+            throws InterruptedException, ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().duplicateLinePolicy(
+                CSVImporterOptions.DuplicateLinePolicy.SKIP).distributedChunkSize(
+                16).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_WITH_DUPLICATES_CSV), DOCS_WITH_DUPLICATES_CSV,
+                options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        // both lines of mynote are imported by the same chunk
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(3, importLogs.size());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(0).getStatus());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(1).getStatus());
+        CSVImportLog importLog = importLogs.get(2);
+        assertEquals(3, importLog.getLine());
+        assertEquals(CSVImportLog.Status.SKIPPED, importLog.getStatus());
+
+        DocumentModel doc = session.getDocument(new PathRef("/mynote"));
+        assertEquals("My Note", doc.getTitle());
+    }
+
+    @Test
+    public void shouldSkipUnchangedLines() throws InterruptedException,
+            ClientException {
+        CSVImportDelta.getFile(session.getRepositoryName(), "/", DOCS_OK_CSV).delete();
+        CSVImporterOptions options = new CSVImporterOptions.Builder().deltaImport(
+                true).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_OK_CSV), DOCS_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(2, importLogs.size());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(0).getStatus());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(1).getStatus());
+
+        // same source with the second line changed
+        importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_CHANGED_CSV), DOCS_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        // the unchanged line is only counted
+        importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(1, importLogs.size());
+        CSVImportLog importLog = importLogs.get(0);
+        assertEquals(2, importLog.getLine());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLog.getStatus());
+        assertEquals("Document updated", importLog.getMessage());
+
+        CSVImportResult importResult = csvImporter.getImportResult(importId);
+        assertEquals(2, importResult.getTotalLineCount());
+        assertEquals(1, importResult.getUnchangedLineCount());
+        assertEquals(0, importResult.getSkippedLineCount());
+
+        DocumentModel doc = session.getDocument(new PathRef("/mynote"));
+        assertEquals("My Updated Note", doc.getTitle());
+    }
+
+    @Test
+    public void shouldImportSnapshotDiff() throws InterruptedException,
+            ClientException {
+        TransactionHelper.commitOrRollbackTransaction();
+        csvImporter.launchImport(session, "/", getCSVFile(DOCS_OK_CSV),
+                DOCS_OK_CSV, CSVImporterOptions.DEFAULT_OPTIONS);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+
+        // myfile is unchanged, othernote added and mynote removed
+        CSVImporterOptions options = new CSVImporterOptions.Builder().previousSnapshot(
+                getCSVFile(DOCS_OK_CSV)).removedDocumentPolicy(
+                CSVImporterOptions.RemovedDocumentPolicy.DELETE).build();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_SNAPSHOT_CSV), DOCS_SNAPSHOT_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        assertEquals(0, csvImporter.getImportLogCount(importId,
+                CSVImportLog.Status.SKIPPED));
+        assertEquals(1,
+                csvImporter.getImportResult(importId).getUnchangedLineCount());
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId,
+                CSVImportLog.Status.SUCCESS);
+        assertEquals(2, importLogs.size());
+        // not a line of the imported file
+        assertEquals(0, importLogs.get(0).getLine());
+        assertEquals(
+                "Document '/mynote' removed (line 2 of the previous snapshot)",
+                importLogs.get(0).getMessage());
+        assertEquals(1, importLogs.get(1).getLine());
+        assertEquals("Document created", importLogs.get(1).getMessage());
+        assertEquals(0, csvImporter.getImportLogCount(importId,
+                CSVImportLog.Status.ERROR));
+
+        assertTrue(session.exists(new PathRef("/myfile")));
+        assertTrue(session.exists(new PathRef("/othernote")));
+        assertFalse(session.exists(new PathRef("/mynote")));
+    }
+
+    @Test
+    public void shouldOnlyRemoveDocumentsMissingWithTheirChildren()
+            throws InterruptedException, ClientException {
+        TransactionHelper.commitOrRollbackTransaction();
+        csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_SNAPSHOT_PREVIOUS_CSV),
+                DOCS_SNAPSHOT_PREVIOUS_CSV, CSVImporterOptions.DEFAULT_OPTIONS);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+
+        // folder is only kept for its child, mynote is twice in the previous
+        // snapshot and gone is removed
+        CSVImporterOptions options = new CSVImporterOptions.Builder().previousSnapshot(
+                getCSVFile(DOCS_SNAPSHOT_PREVIOUS_CSV)).removedDocumentPolicy(
+                CSVImporterOptions.RemovedDocumentPolicy.DELETE).build();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_SNAPSHOT_CHILDREN_CSV),
+                DOCS_SNAPSHOT_CHILDREN_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(2, importLogs.size());
+        assertEquals(0, importLogs.get(0).getLine());
+        assertEquals(
+                "Document '/gone' removed (line 5 of the previous snapshot)",
+                importLogs.get(0).getMessage());
+        assertEquals(2, importLogs.get(1).getLine());
+        assertEquals("Document updated", importLogs.get(1).getMessage());
+
+        assertTrue(session.exists(new PathRef("/folder")));
+        assertTrue(session.exists(new PathRef("/folder/mynote")));
+        assertEquals("My Updated Note",
+                session.getDocument(new PathRef("/mynote")).getTitle());
+        assertFalse(session.exists(new PathRef("/gone")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldImportComplexProperties() throws InterruptedException,
+            ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().checkAllowedSubTypes(
+                false).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_COMPLEX_CSV), DOCS_COMPLEX_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(2, importLogs.size());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(0).getStatus());
+        CSVImportLog importLog = importLogs.get(1);
+        assertEquals(2, importLog.getLine());
+        assertEquals(CSVImportLog.Status.ERROR, importLog.getStatus());
+        // with the cause, without its location
+        String message = importLog.getMessage();
+        assertTrue(
+                message,
+                message.startsWith("Unable to convert field 'addr:billingAddress' with value '{\"country\": \"France\"}': Field 'country' does not exist"));
+        assertFalse(message, message.contains("\n"));
+
+        DocumentModel doc = session.getDocument(new PathRef("/contact1"));
+        assertEquals("1 rue de Paris",
+                doc.getPropertyValue("addr:address/street"));
+        assertEquals("Paris", doc.getPropertyValue("addr:address/city"));
+        Map<String, Serializable> billingAddress = (Map<String, Serializable>) doc.getPropertyValue("addr:billingAddress");
+        assertEquals("Lyon", billingAddress.get("city"));
+        assertEquals(Long.valueOf(69001), billingAddress.get("zipCode"));
+        List<Map<String, Serializable>> otherAddresses = (List<Map<String, Serializable>>) doc.getPropertyValue("addr:otherAddresses");
+        assertEquals(1, otherAddresses.size());
+        assertEquals("Boston", otherAddresses.get(0).get("city"));
+        assertEquals(Long.valueOf(2108), otherAddresses.get(0).get("zipCode"));
+        assertFalse(session.exists(new PathRef("/contact2")));
+    }
+
+    @Test
+    public void shouldOnlyConvertColumnsOfTheLineType()
+            throws InterruptedException, ClientException {
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_MIXED_CSV), DOCS_MIXED_CSV,
+                CSVImporterOptions.DEFAULT_OPTIONS);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(2, importLogs.size());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(0).getStatus());
+        // the missing cells of a short line are blank
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(1).getStatus());
+
+        DocumentModel doc = session.getDocument(new PathRef("/myfile"));
+        assertEquals("My File", doc.getTitle());
+        assertEquals("myfile.txt", doc.getPropertyValue("file:filename"));
+        doc = session.getDocument(new PathRef("/mynote"));
+        assertEquals("My Note", doc.getTitle());
+    }
+
+    /**
+     * Records the zip codes read from the primitive slots of the rows.
+     */
+    public static class RowDocumentFactory extends
+            DefaultCSVImporterDocumentFactory implements
+            CSVImporterRowDocumentFactory {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static final List<Long> zipCodes = new CopyOnWriteArrayList<Long>();
+
+        @Override
+        public void createDocument(CoreSession session, String parentPath,
+                String name, String type, Map<String, Serializable> values)
+                throws ClientException {
+            CSVImportRow row = (CSVImportRow) values;
+            int slot = row.getColumnIndex("addr:address/zipCode");
+            if (slot != -1 && row.hasValue(slot)) {
+                zipCodes.add(Long.valueOf(row.getLong(slot)));
+                assertEquals(Long.valueOf(row.getLong(slot)),
+                        row.get("addr:address/zipCode"));
+            }
+            super.createDocument(session, parentPath, name, type, values);
+        }
+    }
+
+    @Test
+    public void shouldReadPrimitiveSlotsOfRows() throws InterruptedException,
+            ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().checkAllowedSubTypes(
+                false).documentModelFactory(new RowDocumentFactory()).build();
+        RowDocumentFactory.zipCodes.clear();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_TYPED_CSV), DOCS_TYPED_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(2, importLogs.size());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(0).getStatus());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(1).getStatus());
+        assertEquals(Arrays.asList(Long.valueOf(69001), Long.valueOf(75001)),
+                RowDocumentFactory.zipCodes);
+
+        DocumentModel doc = session.getDocument(new PathRef("/contact2"));
+        assertEquals("Contact 2", doc.getTitle());
+        assertEquals(Long.valueOf(75001),
+                doc.getPropertyValue("addr:address/zipCode"));
+    }
+
+    /**
+     * Keeps the values given for each document after its creation.
+     */
+    public static class KeepingDocumentFactory extends
+            DefaultCSVImporterDocumentFactory {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static final List<Map<String, Serializable>> keptValues = new CopyOnWriteArrayList<Map<String, Serializable>>();
+
+        @Override
+        public void createDocument(CoreSession session, String parentPath,
+                String name, String type, Map<String, Serializable> values)
+                throws ClientException {
+            keptValues.add(values);
+            super.createDocument(session, parentPath, name, type, values);
+        }
+    }
+
+    @Test
+    public void shouldGiveCopiesOfValuesToFactoriesKeepingThem()
+            throws InterruptedException, ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().checkAllowedSubTypes(
+                false).documentModelFactory(new KeepingDocumentFactory()).build();
+        KeepingDocumentFactory.keptValues.clear();
+        TransactionHelper.commitOrRollbackTransaction();
+        csvImporter.launchImport(session, "/", getCSVFile(DOCS_TYPED_CSV),
+                DOCS_TYPED_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        List<Map<String, Serializable>> keptValues = KeepingDocumentFactory.keptValues;
+        assertEquals(2, keptValues.size());
+        assertFalse(keptValues.get(0) instanceof CSVImportRow);
+        // the values of the first line are not overwritten by the second one
+        assertEquals("Contact 1", keptValues.get(0).get("dc:title"));
+        assertEquals(Long.valueOf(69001),
+                keptValues.get(0).get("addr:address/zipCode"));
+        assertEquals("Contact 2", keptValues.get(1).get("dc:title"));
+        assertEquals(Long.valueOf(75001),
+                keptValues.get(1).get("addr:address/zipCode"));
+    }
+
+    /**
+     * Dooms the transaction creating the document {@code mynote}.
+     */
+    public static class RollbackDocumentFactory extends
+            DefaultCSVImporterDocumentFactory {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void createDocument(CoreSession session, String parentPath,
+                String name, String type, Map<String, Serializable> values)
+                throws ClientException {
+            super.createDocument(session, parentPath, name, type, values);
+            if ("mynote".equals(name)) {
+                TransactionHelper.setTransactionRollbackOnly();
+            }
+        }
+    }
+
+    @Test
+    public void shouldIsolateLinesFailingToCommit()
+            throws InterruptedException, ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().documentModelFactory(
+                new RollbackDocumentFactory()).commitRetries(1).commitRetryDelay(
+                1).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_OK_CSV), DOCS_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        // only the failing line is an error
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(2, importLogs.size());
+        CSVImportLog importLog = importLogs.get(0);
+        assertEquals(1, importLog.getLine());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLog.getStatus());
+        importLog = importLogs.get(1);
+        assertEquals(2, importLog.getLine());
+        assertEquals(CSVImportLog.Status.ERROR, importLog.getStatus());
+        assertEquals("Unable to commit line: transaction marked rollback-only",
+                importLog.getMessage());
+
+        assertTrue(session.exists(new PathRef("/myfile")));
+        assertFalse(session.exists(new PathRef("/mynote")));
+    }
+
+    /**
+     * Makes the commit of the transactions creating the document
+     * {@code mynote} fail, counting its creations.
+     */
+    public static class CommitFailureDocumentFactory extends
+            DefaultCSVImporterDocumentFactory {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static final AtomicInteger attempts = new AtomicInteger();
+
+        @Override
+        public void createDocument(CoreSession session, String parentPath,
+                String name, String type, Map<String, Serializable> values)
+                throws ClientException {
+            super.createDocument(session, parentPath, name, type, values);
+            if (!"mynote".equals(name)) {
+                return;
+            }
+            attempts.incrementAndGet();
+            try {
+                TransactionHelper.lookupTransactionManager().getTransaction().registerSynchronization(
+                        new Synchronization() {
+                            @Override
+                            public void beforeCompletion() {
+                                throw new RuntimeException(
+                                        "mynote commit failure");
+                            }
+
+                            @Override
+                            public void afterCompletion(int status) {
+                            }
+                        });
+            } catch (NamingException | SystemException | RollbackException e) {
+                throw new ClientException(e);
+            }
+        }
+    }
+
+    @Test
+    public void shouldRetryBatchesFailingToCommit()
+            throws InterruptedException, ClientException {
+        CommitFailureDocumentFactory.attempts.set(0);
+        CSVImporterOptions options = new CSVImporterOptions.Builder().documentModelFactory(
+                new CommitFailureDocumentFactory()).commitRetries(1).commitRetryDelay(
+                1).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_OK_CSV), DOCS_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        // batch retried once, then split: mynote retried once alone
+        assertEquals(4, CommitFailureDocumentFactory.attempts.get());
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(2, importLogs.size());
+        CSVImportLog importLog = importLogs.get(0);
+        assertEquals(1, importLog.getLine());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLog.getStatus());
+        importLog = importLogs.get(1);
+        assertEquals(2, importLog.getLine());
+        assertEquals(CSVImportLog.Status.ERROR, importLog.getStatus());
+        assertTrue(importLog.getMessage().startsWith("Unable to commit line: "));
+
+        assertTrue(session.exists(new PathRef("/myfile")));
+        assertFalse(session.exists(new PathRef("/mynote")));
+    }
+
+    @Test
+    public void shouldImportAgainRolledBackLinesOfDuplicateCheck()
+            throws InterruptedException, ClientException {
+        CSVImporterOptions.DuplicateLinePolicy[] policies = {
+                CSVImporterOptions.DuplicateLinePolicy.SKIP,
+                CSVImporterOptions.DuplicateLinePolicy.MERGE };
+        for (CSVImporterOptions.DuplicateLinePolicy policy : policies) {
+            String folderName = policy.name().toLowerCase();
+            session.createDocument(session.createDocumentModel("/",
+                    folderName, "Folder"));
+            session.save();
+            CSVImporterOptions options = new CSVImporterOptions.Builder().documentModelFactory(
+                    new RollbackDocumentFactory()).duplicateLinePolicy(policy).build();
+            TransactionHelper.commitOrRollbackTransaction();
+            String importId = csvImporter.launchImport(session, "/"
+                    + folderName, getCSVFile(DOCS_OK_CSV), DOCS_OK_CSV,
+                    options);
+            workManager.awaitCompletion(10, TimeUnit.SECONDS);
+            TransactionHelper.startTransaction();
+
+            // myfile, rolled back with mynote, is not a duplicate of itself
+            List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+            assertEquals(2, importLogs.size());
+            assertEquals("Document created", importLogs.get(0).getMessage());
+            assertEquals(CSVImportLog.Status.ERROR,
+                    importLogs.get(1).getStatus());
+            assertTrue(session.exists(new PathRef("/" + folderName
+                    + "/myfile")));
+            assertFalse(session.exists(new PathRef("/" + folderName
+                    + "/mynote")));
+        }
+    }
+
+    /**
+     * Fails after creating the document {@code mynote}.
+     */
+    public static class FailingDocumentFactory extends
+            DefaultCSVImporterDocumentFactory {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void createDocument(CoreSession session, String parentPath,
+                String name, String type, Map<String, Serializable> values)
+                throws ClientException {
+            super.createDocument(session, parentPath, name, type, values);
+            if ("mynote".equals(name)) {
+                throw new ClientException("mynote failure");
+            }
+        }
+    }
+
+    @Test
+    public void shouldRollbackFailedLinesAlone() throws InterruptedException,
+            ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().documentModelFactory(
+                new FailingDocumentFactory()).isolateLineFailures(true).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_OK_CSV), DOCS_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(2, importLogs.size());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(0).getStatus());
+        CSVImportLog importLog = importLogs.get(1);
+        assertEquals(2, importLog.getLine());
+        assertEquals(CSVImportLog.Status.ERROR, importLog.getStatus());
+        assertEquals("Unable to create document: mynote failure",
+                importLog.getMessage());
+
+        // the document created before the failure is rolled back
+        assertTrue(session.exists(new PathRef("/myfile")));
+        assertFalse(session.exists(new PathRef("/mynote")));
+    }
+
+    /**
+     * Counts the documents created in bulk mode, and keeps the ids of the
+     * committed batches and of the indexed documents.
+     */
+    public static class BulkModeListener implements EventListener {
+
+        protected static final AtomicInteger bulkCreatedCount = new AtomicInteger();
+
+        protected static final List<String> committedIds = new CopyOnWriteArrayList<String>();
+
+        protected static final List<String> indexedIds = new CopyOnWriteArrayList<String>();
+
+        protected static final AtomicInteger autoIndexingDisabledCount = new AtomicInteger();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void handleEvent(Event event) throws ClientException {
+            if (CSVImporterWork.BATCH_COMMITTED_EVENT.equals(event.getName())) {
+                committedIds.addAll((List<String>) event.getContext().getProperty(
+                        CSVImporterWork.DOCUMENT_IDS_PROPERTY));
+            } else if (CSVImportIndexingWork.INDEX_DOCUMENTS_EVENT.equals(event.getName())) {
+                indexedIds.addAll((List<String>) event.getContext().getProperty(
+                        CSVImporterWork.DOCUMENT_IDS_PROPERTY));
+            } else {
+                if (Boolean.TRUE.equals(event.getContext().getProperty(
+                        CSVImporterWork.BULK_MODE_CONTEXT_DATA))) {
+                    bulkCreatedCount.incrementAndGet();
+                }
+                if (Boolean.TRUE.equals(event.getContext().getProperty(
+                        "disableAutoIndexing"))) {
+                    autoIndexingDisabledCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldImportInBulkMode() throws InterruptedException,
+            ClientException {
+        BulkModeListener.bulkCreatedCount.set(0);
+        BulkModeListener.committedIds.clear();
+        CSVImporterOptions options = new CSVImporterOptions.Builder().bulkMode(
+                true).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_OK_CSV), DOCS_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        assertEquals(2, csvImporter.getImportLogCount(importId,
+                CSVImportLog.Status.SUCCESS));
+        assertEquals(2, BulkModeListener.bulkCreatedCount.get());
+        assertEquals(Arrays.asList(
+                session.getDocument(new PathRef("/myfile")).getId(),
+                session.getDocument(new PathRef("/mynote")).getId()),
+                BulkModeListener.committedIds);
+    }
+
+    @Test
+    public void shouldDeferIndexing() throws InterruptedException,
+            ClientException {
+        BulkModeListener.indexedIds.clear();
+        BulkModeListener.autoIndexingDisabledCount.set(0);
+        CSVImporterOptions options = new CSVImporterOptions.Builder().deferredIndexing(
+                true).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_OK_CSV), DOCS_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        assertEquals(2, csvImporter.getImportLogCount(importId,
+                CSVImportLog.Status.SUCCESS));
+        // handed over at once after the import
+        assertEquals(Arrays.asList(
+                session.getDocument(new PathRef("/myfile")).getId(),
+                session.getDocument(new PathRef("/mynote")).getId()),
+                BulkModeListener.indexedIds);
+        // still indexed one by one without a configured bulk indexer
+        assertEquals(0, BulkModeListener.autoIndexingDisabledCount.get());
+    }
+
+    @Test
+    public void shouldDisableAutoIndexingWhenConfigured()
+            throws InterruptedException, ClientException {
+        BulkModeListener.autoIndexingDisabledCount.set(0);
+        CSVImporterOptions options = new CSVImporterOptions.Builder().deferredIndexing(
+                true).build();
+        Framework.getProperties().setProperty(
+                CSVImporterWork.DEFERRED_INDEXING_CONTEXT_DATA_PROPERTY,
+                "disableAutoIndexing");
+        TransactionHelper.commitOrRollbackTransaction();
+        try {
+            csvImporter.launchImport(session, "/", getCSVFile(DOCS_OK_CSV),
+                    DOCS_OK_CSV, options);
+            workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        } finally {
+            Framework.getProperties().remove(
+                    CSVImporterWork.DEFERRED_INDEXING_CONTEXT_DATA_PROPERTY);
+        }
+        TransactionHelper.startTransaction();
+
+        assertEquals(2, BulkModeListener.autoIndexingDisabledCount.get());
+    }
+
+    @Test
+    public void shouldThrottleImport() throws InterruptedException,
+            ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().maxLinesPerSecond(
+                4).maxConcurrentTransactions(1).commitLatencyThreshold(10000).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        long start = System.currentTimeMillis();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_OK_CSV), DOCS_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        long elapsed = System.currentTimeMillis() - start;
+        TransactionHelper.startTransaction();
+
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(2, importLogs.size());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(0).getStatus());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(1).getStatus());
+        // the second line waits for its slot
+        assertTrue(elapsed >= 250);
+        assertTrue(session.exists(new PathRef("/myfile")));
+        assertTrue(session.exists(new PathRef("/mynote")));
+    }
+
+    @Test
+    public void shouldThrottleEachRunWithItsOptions()
+            throws InterruptedException, ClientException {
+        CSVImporterOptions options = new CSVImporterOptions.Builder().maxConcurrentTransactions(
+                1).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_OK_CSV), DOCS_OK_CSV, options);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        CSVImportThrottle throttle = CSVImportControl.peek(importId).getThrottle(
+                options);
+        assertTrue(throttle.isEnabled());
+        // its transaction slots are all released
+        assertEquals(1, throttle.transactionPermits.availablePermits());
+
+        // same file so same import, without limits
+        csvImporter.launchImport(session, "/", getCSVFile(DOCS_OK_CSV),
+                DOCS_OK_CSV, CSVImporterOptions.DEFAULT_OPTIONS);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        throttle = CSVImportControl.peek(importId).getThrottle(
+                CSVImporterOptions.DEFAULT_OPTIONS);
+        assertFalse(throttle.isEnabled());
+    }
+
+    /**
+     * Blocks the creation of the document {@code myfile} until released.
+     */
+    public static class BlockingDocumentFactory extends
+            DefaultCSVImporterDocumentFactory {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static CountDownLatch started;
+
+        protected static CountDownLatch released;
+
+        protected static void reset() {
+            started = new CountDownLatch(1);
+            released = new CountDownLatch(1);
+        }
+
+        @Override
+        public void createDocument(CoreSession session, String parentPath,
+                String name, String type, Map<String, Serializable> values)
+                throws ClientException {
+            if ("myfile".equals(name)) {
+                started.countDown();
+                try {
+                    released.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.createDocument(session, parentPath, name, type, values);
+        }
+    }
+
+    /**
+     * Launches an import of {@link #DOCS_OK_CSV} blocked while creating its
+     * first document.
+     */
+    protected String launchBlockedImport() throws InterruptedException {
+        BlockingDocumentFactory.reset();
+        CSVImporterOptions options = new CSVImporterOptions.Builder().documentModelFactory(
+                new BlockingDocumentFactory()).batchSize(1).build();
+        TransactionHelper.commitOrRollbackTransaction();
+        String importId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_OK_CSV), DOCS_OK_CSV, options);
+        assertTrue(BlockingDocumentFactory.started.await(10, TimeUnit.SECONDS));
+        return importId;
+    }
+
+    @Test
+    public void shouldPauseAndResumeImport() throws InterruptedException,
+            ClientException {
+        String importId = launchBlockedImport();
+        assertTrue(csvImporter.pauseImport(importId));
+        BlockingDocumentFactory.released.countDown();
+        // the paused import frees its thread
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        assertTrue(csvImporter.getImportStatus(importId).isPaused());
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(1, importLogs.size());
+        assertEquals(1, importLogs.get(0).getLine());
+        assertTrue(session.exists(new PathRef("/myfile")));
+        assertFalse(session.exists(new PathRef("/mynote")));
+        // already paused
+        assertFalse(csvImporter.pauseImport(importId));
+
+        TransactionHelper.commitOrRollbackTransaction();
+        assertTrue(csvImporter.resumeImport(importId));
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        // the next work goes on from the second line
+        assertTrue(csvImporter.getImportStatus(importId).isComplete());
+        importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(2, importLogs.size());
+        assertEquals(1, importLogs.get(0).getLine());
+        assertEquals(2, importLogs.get(1).getLine());
+        assertEquals(2, csvImporter.getImportResult(importId).getTotalLineCount());
+        assertTrue(session.exists(new PathRef("/mynote")));
+    }
+
+    @Test
+    public void shouldCancelPausedImport() throws InterruptedException,
+            ClientException {
+        String importId = launchBlockedImport();
+        assertTrue(csvImporter.pauseImport(importId));
+        BlockingDocumentFactory.released.countDown();
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        assertTrue(csvImporter.getImportStatus(importId).isPaused());
+
+        assertTrue(csvImporter.cancelImport(importId));
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        assertTrue(csvImporter.getImportStatus(importId).isCancelled());
+        assertEquals(1, csvImporter.getImportLogs(importId).size());
+        assertTrue(session.exists(new PathRef("/myfile")));
+        assertFalse(session.exists(new PathRef("/mynote")));
+        // not resumable once cancelled
+        assertFalse(csvImporter.resumeImport(importId));
+    }
+
+    @Test
+    public void shouldImportAgainCancelledImport()
+            throws InterruptedException, ClientException {
+        String importId = launchBlockedImport();
+        assertTrue(csvImporter.cancelImport(importId));
+        BlockingDocumentFactory.released.countDown();
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        assertTrue(csvImporter.getImportStatus(importId).isCancelled());
+
+        // same file so same id, the cancellation is forgotten
+        CSVImporterOptions options = new CSVImporterOptions.Builder().updateExisting(
+                true).build();
+        String newImportId = csvImporter.launchImport(session, "/",
+                getCSVFile(DOCS_OK_CSV), DOCS_OK_CSV, options);
+        assertEquals(importId, newImportId);
+        workManager.awaitCompletion(10, TimeUnit.SECONDS);
+        TransactionHelper.startTransaction();
+
+        assertTrue(csvImporter.getImportStatus(importId).isComplete());
+        List<CSVImportLog> importLogs = csvImporter.getImportLogs(importId);
+        assertEquals(2, importLogs.size());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(0).getStatus());
+        assertEquals(CSVImportLog.Status.SUCCESS, importLogs.get(1).getStatus());
+        assertTrue(session.exists(new PathRef("/mynote")));
+    }
+
+    @Test
+    public void shouldQueuePendingImportsPerLane()
+            throws InterruptedException, ClientException {
+        Framework.getProperties().setProperty(
+                CSVImportScheduler.SMALL_IMPORT_SLOTS_PROPERTY, "1");
+        try {
+            // the first import holds the only slot until released
+            String firstId = launchBlockedImport();
+            String secondId = csvImporter.launchImport(session, "/",
+                    getCSVFile(DOCS_NOT_OK_CSV), DOCS_NOT_OK_CSV,
+                    CSVImporterOptions.DEFAULT_OPTIONS);
+
+            CSVImportStatus status = csvImporter.getImportStatus(secondId);
+            assertTrue(status.isScheduled());
+            assertEquals(1, status.getPositionInQueue());
+            assertEquals(1, status.getQueueSize());
+
+            BlockingDocumentFactory.released.countDown();
+            workManager.awaitCompletion(10, TimeUnit.SECONDS);
+            TransactionHelper.startTransaction();
+
+            assertTrue(csvImporter.getImportStatus(firstId).isComplete());
+            assertTrue(csvImporter.getImportStatus(secondId).isComplete());
+        } finally {
+            Framework.getProperties().remove(
+                    CSVImportScheduler.SMALL_IMPORT_SLOTS_PROPERTY);
+        }
+    }
+
+    @Test
+    public void shouldPauseScheduledImport() throws InterruptedException,
+            ClientException {
+        Framework.getProperties().setProperty(
+                CSVImportScheduler.SMALL_IMPORT_SLOTS_PROPERTY, "1");
+        try {
+            String firstId = launchBlockedImport();
+            String secondId = csvImporter.launchImport(session, "/",
+                    getCSVFile(DOCS_NOT_OK_CSV), DOCS_NOT_OK_CSV,
+                    CSVImporterOptions.DEFAULT_OPTIONS);
+            assertTrue(csvImporter.pauseImport(secondId));
+            assertTrue(csvImporter.getImportStatus(secondId).isPaused());
+
+            // held back once the slot is free
+            BlockingDocumentFactory.released.countDown();
+            workManager.awaitCompletion(10, TimeUnit.SECONDS);
+            assertTrue(csvImporter.getImportStatus(firstId).isComplete());
+            assertTrue(csvImporter.getImportStatus(secondId).isPaused());
+            assertEquals(0, csvImporter.getImportLogs(secondId).size());
+
+            assertTrue(csvImporter.resumeImport(secondId));
+            workManager.awaitCompletion(10, TimeUnit.SECONDS);
+            TransactionHelper.startTransaction();
+
+            assertTrue(csvImporter.getImportStatus(secondId).isComplete());
+        } finally {
+            Framework.getProperties().remove(
+                    CSVImportScheduler.SMALL_IMPORT_SLOTS_PROPERTY);
+        }
+    }
+
 }